@@ -0,0 +1,54 @@
+package ru.shishmakov;
+
+import java.util.Random;
+
+/**
+ * Generator of the deterministic HTML pages those look like the articles of the real sites:
+ * the head with scripts and styles, navigation, paragraphs of the mixed russian and english text
+ * with entities and links.
+ */
+public final class HtmlFixtures {
+
+    private static final String[] WORDS = {
+            "the", "crawler", "counts", "popular", "words", "on", "site", "and", "it", "is", "fast", "enough",
+            "мы", "считаем", "слова", "на", "страницах", "сайта", "он", "быстрый", "поисковый", "робот",
+            "Wikipedia", "Москва", "HTTP", "«цитата»", "(скобки)", "end.", "question?", "list,", "colon:"
+    };
+
+    private HtmlFixtures() {
+    }
+
+    /**
+     * @param size approximate length of the page in chars
+     * @param seed seed of the content
+     */
+    public static String page(int size, long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder html = new StringBuilder(size + 1024)
+                .append("<!DOCTYPE html>\n<html lang=\"ru\"><head><meta charset=\"utf-8\"><title>Page ").append(seed)
+                .append("</title>\n<style>body { font: 14px sans-serif } p > a { color: #333 }</style>\n")
+                .append("<script>var words = ['not', 'counted']; if (a < b && b > c) { run(); }</script>\n")
+                .append("</head>\n<body><div class=\"nav\"><ul>");
+        for (int i = 0; i < 10; i++) {
+            html.append("<li><a href=\"/section/").append(i).append("\">Раздел ").append(i).append("</a></li>");
+        }
+        html.append("</ul></div>\n<div class=\"content\"><!-- article -->\n");
+        while (html.length() < size) {
+            html.append("<p>");
+            for (int i = 0, count = 20 + random.nextInt(40); i < count; i++) {
+                if (random.nextInt(25) == 0) {
+                    html.append("<a href=\"/article/").append(random.nextInt(10_000))
+                            .append("?ref=page#top\">").append(WORDS[random.nextInt(WORDS.length)]).append("</a> ");
+                } else if (random.nextInt(40) == 0) {
+                    html.append("&nbsp;&laquo;").append(WORDS[random.nextInt(WORDS.length)]).append("&raquo; ");
+                } else {
+                    html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+            }
+            html.append("</p>\n");
+        }
+        return html.append("</div>\n<footer>&copy; Crawler, <a href=\"mailto:crawler@example.com\">mail</a></footer>")
+                .append("</body></html>\n")
+                .toString();
+    }
+}
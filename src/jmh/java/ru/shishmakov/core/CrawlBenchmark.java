@@ -0,0 +1,142 @@
+package ru.shishmakov.core;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.fetch.Fetcher;
+import ru.shishmakov.site.SyntheticSite;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end crawl of the {@link SyntheticSite} by {@link RatingController#startCrawler(String, int)}.
+ * <p>
+ * Reports pages per second, percentiles of the fetch latency, peak heap and the correctness of the top words
+ * against the ground truth of the site. Arguments are {@code key=value} pairs, e.g.
+ * {@code pages=5000 fanOut=8 pageSize=16384 vocabulary=50000 zipf=1.0 latencyMs=5 slowRate=0.01
+ * slowLatencyMs=200 errorRate=0.01 depth=4}; properties of the crawler are given by {@code -Dkey=value},
+ * e.g. {@code -Dcrawl.engine=VIRTUAL} to compare the engines.
+ */
+public final class CrawlBenchmark {
+
+    private CrawlBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final String[] pair = arg.split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+        final int depth = Integer.parseInt(options.getOrDefault("depth", "4"));
+        final SyntheticSite.Builder builder = SyntheticSite.builder()
+                .pages(Integer.parseInt(options.getOrDefault("pages", "5000")))
+                .fanOut(Integer.parseInt(options.getOrDefault("fanOut", "8")))
+                .pageSize(Integer.parseInt(options.getOrDefault("pageSize", "16384")))
+                .vocabulary(Integer.parseInt(options.getOrDefault("vocabulary", "50000")),
+                        Double.parseDouble(options.getOrDefault("zipf", "1.0")))
+                .latencyMs(Long.parseLong(options.getOrDefault("latencyMs", "5")))
+                .slow(Double.parseDouble(options.getOrDefault("slowRate", "0.01")),
+                        Long.parseLong(options.getOrDefault("slowLatencyMs", "200")))
+                .errorRate(Double.parseDouble(options.getOrDefault("errorRate", "0.01")));
+        // the loopback site should not be limited unless it is asked explicitly
+        setIfAbsent("rps", "100000");
+        setIfAbsent("host.rps", "100000");
+        setIfAbsent("rate.limiter", "TOKEN_BUCKET");
+        setIfAbsent("rate.burst", "1000");
+
+        final FetchLatency latency = new FetchLatency();
+        try (SyntheticSite site = builder.build().start();
+             AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.register(AppConfig.class);
+            context.getBeanFactory().addBeanPostProcessor(latency);
+            context.refresh();
+
+            System.gc();
+            final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                    heapPools.add(pool);
+                }
+            }
+            final long start = System.nanoTime();
+            context.getBean(RatingController.class).startCrawler(site.getSeedUri(), depth);
+            final long elapsed = System.nanoTime() - start;
+            long peakHeap = 0;
+            for (MemoryPoolMXBean pool : heapPools) peakHeap += pool.getPeakUsage().getUsed();
+
+            final int limit = context.getBean(CrawlerConfig.class).topRating();
+            final List<Word> actual = TopWords.select(context.getBean(WordCounter.class), limit,
+                    ForkJoinPool.commonPool());
+            final List<Word> expected = expectedTop(site.expectedCounts(depth), limit);
+            final Set<Word> matched = new HashSet<>(actual);
+            matched.retainAll(expected);
+
+            final double seconds = elapsed / 1e9;
+            System.out.printf("site:        %d pages, %.1f MiB%n", site.getPageRequests(),
+                    site.getSiteBytes() / 1024.0 / 1024.0);
+            System.out.printf("elapsed:     %.3f s%n", seconds);
+            System.out.printf("throughput:  %.1f pages/s%n", site.getPageRequests() / seconds);
+            System.out.printf("fetch:       p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    latency.percentileMs(0.5), latency.percentileMs(0.99), latency.percentileMs(1.0));
+            System.out.printf("peak heap:   %.1f MiB%n", peakHeap / 1024.0 / 1024.0);
+            System.out.printf("top %d:     %s, matched %d of %d%n", limit,
+                    expected.equals(actual) ? "exact" : "DIFFERENT", matched.size(), expected.size());
+        }
+    }
+
+    private static List<Word> expectedTop(Map<String, Long> counts, int limit) {
+        final List<Word> words = new ArrayList<>(counts.size());
+        counts.forEach((word, quantity) -> words.add(new Word(word, quantity)));
+        words.sort(null);
+        return words.subList(0, Math.min(limit, words.size()));
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) System.setProperty(key, value);
+    }
+
+    /**
+     * Wraps the fetcher to record the time from the request till the loaded body
+     */
+    private static final class FetchLatency implements BeanPostProcessor {
+        private long[] latencies = new long[1 << 16];
+        private int size;
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof Fetcher)) return bean;
+            final Fetcher fetcher = (Fetcher) bean;
+            return (Fetcher) uri -> {
+                final long start = System.nanoTime();
+                return fetcher.fetch(uri).whenComplete((page, error) -> record(System.nanoTime() - start));
+            };
+        }
+
+        private synchronized void record(long nanos) {
+            if (size == latencies.length) latencies = Arrays.copyOf(latencies, size << 1);
+            latencies[size++] = nanos;
+        }
+
+        private synchronized double percentileMs(double percentile) {
+            if (size == 0) return 0;
+            final long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            final int index = Math.min(size - 1, (int) Math.ceil(percentile * size) - 1);
+            return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
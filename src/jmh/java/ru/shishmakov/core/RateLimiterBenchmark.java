@@ -0,0 +1,54 @@
+package ru.shishmakov.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.config.AppConfig;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the rate limiter on the task when the rate is not exceeded
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+    private static final Callable<Integer> TASK = () -> 1;
+
+    @Param({"RING", "TOKEN_BUCKET"})
+    private RateLimiterType rateLimiterType;
+
+    private AnnotationConfigApplicationContext context;
+    private RateLimiter rateLimiter;
+
+    @Setup
+    public void setUp() {
+        // the rate is unreachable, so the cost of the limiter itself is measured
+        System.setProperty("rps", String.valueOf(Integer.MAX_VALUE / 2));
+        System.setProperty("rate.burst", String.valueOf(Integer.MAX_VALUE / 2));
+        System.setProperty("rate.limiter", rateLimiterType.name());
+        context = new AnnotationConfigApplicationContext(AppConfig.class);
+        rateLimiter = context.getBean(RateLimiter.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Integer acquireAccessThreads1() throws Exception {
+        return rateLimiter.acquireAccess(TASK);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Integer acquireAccessThreads4() throws Exception {
+        return rateLimiter.acquireAccess(TASK);
+    }
+}
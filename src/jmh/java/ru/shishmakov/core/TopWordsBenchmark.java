@@ -0,0 +1,65 @@
+package ru.shishmakov.core;
+
+import org.openjdk.jmh.annotations.*;
+import ru.shishmakov.count.CounterType;
+import ru.shishmakov.count.DictionaryWordCounter;
+import ru.shishmakov.count.StripedWordCounter;
+import ru.shishmakov.count.WordCounter;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection of the top words over the counter of the given vocabulary
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class TopWordsBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    private int terms;
+
+    @Param({"100"})
+    private int limit;
+
+    @Param({"STRIPED", "DICTIONARY"})
+    private CounterType counterType;
+
+    private WordCounter counter;
+    private ForkJoinPool pool;
+    private ForkJoinPool singleThreadPool;
+
+    @Setup
+    public void setUp() {
+        counter = counterType == CounterType.DICTIONARY ? new DictionaryWordCounter(64) : new StripedWordCounter(64);
+        final Random random = new Random(1);
+        for (int i = 0; i < terms; i++) {
+            // most of the words are rare like in the real texts
+            counter.add(Integer.toString(i, 36), 1 + (long) Math.pow(1_000, random.nextDouble()));
+        }
+        pool = new ForkJoinPool();
+        singleThreadPool = new ForkJoinPool(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        singleThreadPool.shutdown();
+    }
+
+    @Benchmark
+    public List<Word> select() {
+        return TopWords.select(counter, limit, pool);
+    }
+
+    @Benchmark
+    public List<Word> selectSequential() {
+        return TopWords.select(counter, limit, singleThreadPool);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.shishmakov.count;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merge of the page histograms into the shared counter by the concurrent workers
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WordCounterBenchmark {
+    private static final int VOCABULARY = 50_000;
+    private static final int PAGES = 64;
+    private static final int WORDS_PER_PAGE = 2_000;
+
+    @Param({"STRIPED", "DICTIONARY"})
+    private CounterType counterType;
+
+    @Param({"64"})
+    private int stripes;
+
+    private WordCounter counter;
+
+    @Setup
+    public void setUp() {
+        counter = counterType == CounterType.DICTIONARY
+                ? new DictionaryWordCounter(stripes)
+                : new StripedWordCounter(stripes);
+    }
+
+    @State(Scope.Thread)
+    public static class Pages {
+        private final WordHistogram[] histograms = new WordHistogram[PAGES];
+        private int next;
+
+        @Setup
+        public void setUp() {
+            final Random random = new Random(Thread.currentThread().threadId());
+            for (int p = 0; p < PAGES; p++) {
+                histograms[p] = new WordHistogram();
+                for (int i = 0; i < WORDS_PER_PAGE; i++) {
+                    // rank of the word is distributed close to the Zipf's law
+                    final int rank = (int) Math.pow(VOCABULARY, random.nextDouble());
+                    histograms[p].add("word" + rank, 1L);
+                }
+            }
+        }
+
+        WordHistogram next() {
+            return histograms[next++ & (PAGES - 1)];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void mergeThreads1(Pages pages) {
+        counter.addAll(pages.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void mergeThreads4(Pages pages) {
+        counter.addAll(pages.next());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void mergeThreadsMax(Pages pages) {
+        counter.addAll(pages.next());
+    }
+}
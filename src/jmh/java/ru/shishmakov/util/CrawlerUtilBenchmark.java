@@ -0,0 +1,103 @@
+package ru.shishmakov.util;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.HtmlFixtures;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.parse.DomContentExtractor;
+import ru.shishmakov.parse.PageHandler;
+import ru.shishmakov.parse.StreamingContentExtractor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Text and links of the single page
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CrawlerUtilBenchmark {
+    private static final String BASE_URI = "https://example.com/article";
+
+    @Param({"16384", "262144"})
+    private int pageSize;
+
+    private AnnotationConfigApplicationContext context;
+    private CrawlerUtil crawlerUtil;
+    private DomContentExtractor domExtractor;
+    private StreamingContentExtractor streamExtractor;
+    private Document document;
+    private String[] links;
+    private Page page;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(AppConfig.class);
+        crawlerUtil = context.getBean(CrawlerUtil.class);
+        domExtractor = context.getAutowireCapableBeanFactory().createBean(DomContentExtractor.class);
+        streamExtractor = context.getAutowireCapableBeanFactory().createBean(StreamingContentExtractor.class);
+
+        final String html = HtmlFixtures.page(pageSize, 1);
+        document = Jsoup.parse(html, BASE_URI);
+        links = crawlerUtil.getStreamHrefLinks(document).toArray(String[]::new);
+        page = new Page(BASE_URI, 200, "text/html; charset=utf-8", "UTF-8", html.getBytes(UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<String> getText() {
+        return crawlerUtil.getText(document);
+    }
+
+    @Benchmark
+    public void simplifyUri(Blackhole blackhole) {
+        for (String link : links) {
+            blackhole.consume(crawlerUtil.simplifyUri(link));
+        }
+    }
+
+    @Benchmark
+    public List<String> getStreamHrefLinks() {
+        return crawlerUtil.getStreamHrefLinks(document).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void extractDom(Blackhole blackhole) throws IOException {
+        domExtractor.extract(page, BASE_URI, handler(blackhole));
+    }
+
+    @Benchmark
+    public void extractStream(Blackhole blackhole) throws IOException {
+        streamExtractor.extract(page, BASE_URI, handler(blackhole));
+    }
+
+    private static PageHandler handler(Blackhole blackhole) {
+        return new PageHandler() {
+            @Override
+            public void text(CharSequence text) {
+                blackhole.consume(text);
+            }
+
+            @Override
+            public void link(String uri) {
+                blackhole.consume(uri);
+            }
+        };
+    }
+}
@@ -1,21 +1,35 @@
 package ru.shishmakov;
 
+import org.aeonbits.owner.ConfigFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.config.SharedConfig;
+import ru.shishmakov.core.BatchController;
+import ru.shishmakov.core.DaemonController;
 import ru.shishmakov.core.RatingController;
+import ru.shishmakov.export.FrequencyDiff;
+import ru.shishmakov.export.FrequencyTable;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
-import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * @author Dmitriy Shishmakov on 12.05.17
  */
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String RESUME = "--resume";
+    private static final String REPLAY = "--replay";
+    private static final String BATCH = "--batch";
+    private static final String DAEMON = "--daemon";
+    private static final String DIFF = "--diff";
 
     public static void main(String[] args) {
         logger.info("Start http-crawler process");
@@ -27,15 +41,66 @@ public class Main {
         logger.info("End http-crawler process");
     }
 
-    private static void process(String[] args) throws MalformedURLException, URISyntaxException {
-        String uri = StringUtils.trimToEmpty(args[0]);
-        int depth = Integer.valueOf(args[1]);
-        logger.debug("Incoming parameters uri: {}, depth: {}", uri, depth);
-
+    /**
+     * Arguments are {@code uri depth} of the new crawl, {@code --resume} to continue the interrupted one,
+     * {@code --replay} to count words of the archived pages offline, {@code --batch seedFile resultFile}
+     * to crawl the sites of the seed file, {@code --daemon} to serve the crawl jobs over HTTP or
+     * {@code --diff before after [limit]} to compare the exported words of two runs
+     */
+    private static void process(String[] args) throws IOException, URISyntaxException, InterruptedException {
+        final String mode = StringUtils.trimToEmpty(args[0]);
+        if (DIFF.equals(mode)) {
+            logger.debug("Incoming parameters: {}, before: {}, after: {}", DIFF, args[1], args[2]);
+            diff(Paths.get(args[1]), Paths.get(args[2]), args.length > 3
+                    ? Integer.parseInt(args[3])
+                    : ConfigFactory.create(CrawlerConfig.class, System.getProperties()).topRating());
+            return;
+        }
         try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
-            context.register(AppConfig.class);
+            // every site of the batch or the daemon has its own context of the site beans
+            context.register(BATCH.equals(mode) || DAEMON.equals(mode) ? SharedConfig.class : AppConfig.class);
             context.refresh();
+            if (DAEMON.equals(mode)) {
+                logger.debug("Incoming parameters: {}", DAEMON);
+                final DaemonController daemon = context.getBean(DaemonController.class);
+                daemon.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "daemon-stop"));
+                daemon.await();
+                return;
+            }
+            if (BATCH.equals(mode)) {
+                logger.debug("Incoming parameters: {}, seeds: {}, results: {}", BATCH, args[1], args[2]);
+                context.getBean(BatchController.class).crawl(Paths.get(args[1]), Paths.get(args[2]));
+                return;
+            }
+            if (RESUME.equals(mode)) {
+                logger.debug("Incoming parameters: {}", RESUME);
+                context.getBean(RatingController.class).resumeCrawler();
+                return;
+            }
+            if (REPLAY.equals(mode)) {
+                logger.debug("Incoming parameters: {}", REPLAY);
+                context.getBean(RatingController.class).replayArchive();
+                return;
+            }
+            String uri = StringUtils.trimToEmpty(args[0]);
+            int depth = Integer.valueOf(args[1]);
+            logger.debug("Incoming parameters uri: {}, depth: {}", uri, depth);
             context.getBean(RatingController.class).startCrawler(uri, depth);
         }
     }
+
+    /**
+     * Print the most rising and falling words of the later run
+     */
+    private static void diff(Path before, Path after, int limit) throws IOException {
+        try (FrequencyTable beforeTable = FrequencyTable.open(before);
+             FrequencyTable afterTable = FrequencyTable.open(after)) {
+            logger.info("Compare {} with {}", beforeTable, afterTable);
+            final FrequencyDiff diff = FrequencyDiff.compare(beforeTable, afterTable, limit);
+            logger.info("Words: {}", diff);
+            logger.info("Rising {}\n{}", diff.getRising().size(), diff.getRising());
+            logger.info("Falling {}\n{}", diff.getFalling().size(), diff.getFalling());
+        }
+    }
 }
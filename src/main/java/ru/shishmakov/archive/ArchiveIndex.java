@@ -0,0 +1,116 @@
+package ru.shishmakov.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Index of the archive segment: entries {@code uri hash, offset, length} of the fixed width sorted by the hash,
+ * so the memory-mapped file is searched in place by the binary search without loading
+ */
+public final class ArchiveIndex implements Closeable {
+    private static final int MAGIC = 0x43524958;
+    private static final int HEADER_BYTES = 8;
+    private static final int ENTRY_BYTES = 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    private ArchiveIndex(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Unknown format of index");
+        this.size = buffer.getInt(4);
+        if ((long) HEADER_BYTES + (long) size * ENTRY_BYTES > buffer.capacity()) throw new IOException("Index is truncated");
+    }
+
+    public static ArchiveIndex open(Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, READ);
+        try {
+            return new ArchiveIndex(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sort the entries by the hash and write them; the file appears under its name atomically
+     */
+    static void write(Path file, long[] hashes, long[] offsets, int[] lengths, int size) throws IOException {
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(i -> hashes[i]));
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(size);
+            for (int i : order) {
+                out.writeLong(hashes[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return position of the first entry with the hash or {@code -1} if there is none; entries with the same
+     * hash are adjacent
+     */
+    public int find(long hash) {
+        int low = 0;
+        int high = size - 1;
+        int found = -1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final long value = hash(middle);
+            if (value < hash) {
+                low = middle + 1;
+            } else {
+                if (value == hash) found = middle;
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    public long hash(int position) {
+        return buffer.getLong(HEADER_BYTES + position * ENTRY_BYTES);
+    }
+
+    /**
+     * @return offset of the frame in the segment
+     */
+    public long offset(int position) {
+        return buffer.getLong(HEADER_BYTES + position * ENTRY_BYTES + 8);
+    }
+
+    /**
+     * @return length of the compressed record
+     */
+    public int length(int position) {
+        return buffer.getInt(HEADER_BYTES + position * ENTRY_BYTES + 16);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
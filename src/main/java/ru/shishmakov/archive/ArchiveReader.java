@@ -0,0 +1,270 @@
+package ru.shishmakov.archive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reader of the archive written by {@link ArchiveWriter}.
+ * <p>
+ * Segment is the header {@code magic, version} and frames {@code length, uri hash, record}. The segment
+ * is {@link #scan(RecordHandler) scanned} sequentially at the speed of the disk, the single page is
+ * {@link #get(String) found} by the memory-mapped index. The index of the segment torn by the crash
+ * is rebuilt from its frames.
+ */
+public final class ArchiveReader implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final int FRAME_HEADER_BYTES = 12;
+    private static final int MAGIC = 0x43524152;
+    private static final int VERSION = 1;
+    private static final int MAX_RECORD_BYTES = 256 << 20;
+    private static final Pattern SEGMENT = Pattern.compile("segment-(\\d+)\\.arc");
+
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<ArchiveIndex> indexes = new ArrayList<>();
+    private final List<Path> segments;
+
+    private ArchiveReader(List<Path> segments) {
+        this.segments = segments;
+    }
+
+    public static ArchiveReader open(Path dir) throws IOException {
+        return open(listSegments(dir));
+    }
+
+    /**
+     * @param segments segments of the archive in the order of their numbers
+     */
+    static ArchiveReader open(List<Path> segments) throws IOException {
+        final ArchiveReader reader = new ArchiveReader(segments);
+        try {
+            for (Path segment : reader.segments) {
+                final Path index = indexFile(segment);
+                if (!Files.exists(index)) rebuildIndex(segment, index);
+                reader.indexes.add(ArchiveIndex.open(index));
+                reader.channels.add(FileChannel.open(segment, READ));
+            }
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of records in the archive
+     */
+    public long size() {
+        long size = 0;
+        for (ArchiveIndex index : indexes) size += index.size();
+        return size;
+    }
+
+    public List<Path> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Pass compressed records of all segments in the order of the append; {@link ArchiveRecord#decode(byte[])}
+     * is left to the handler, so it could be done in parallel
+     *
+     * @return number of records
+     */
+    public long scan(RecordHandler handler) throws IOException, InterruptedException {
+        long records = 0;
+        for (Path segment : segments) {
+            records += scanSegment(segment, (hash, offset, record) -> handler.handle(record));
+        }
+        return records;
+    }
+
+    /**
+     * @param uri URI of the request
+     * @return the latest record of the URI or {@code null} if it is not archived
+     */
+    public ArchiveRecord get(String uri) throws IOException {
+        final byte[] record = find(uri);
+        return record == null ? null : ArchiveRecord.decode(record);
+    }
+
+    /**
+     * @param uri URI of the request
+     * @return the latest compressed record of the URI or {@code null} if it is not archived
+     */
+    byte[] find(String uri) throws IOException {
+        final long hash = ArchiveRecord.hash(uri);
+        for (int i = indexes.size() - 1; i >= 0; i--) {
+            final ArchiveIndex index = indexes.get(i);
+            byte[] found = null;
+            for (int position = index.find(hash); position >= 0 && position < index.size()
+                    && index.hash(position) == hash; position++) {
+                final byte[] record = read(channels.get(i), index, position);
+                if (uri.equals(ArchiveRecord.uri(record))) found = record;
+            }
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Closeable closeable : concat()) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) throw error;
+    }
+
+    /**
+     * Consumer of the compressed records
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(byte[] record) throws InterruptedException;
+    }
+
+    static long writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        return 8;
+    }
+
+    static void writeFrame(DataOutputStream out, long hash, byte[] record) throws IOException {
+        out.writeInt(record.length);
+        out.writeLong(hash);
+        out.write(record);
+    }
+
+    static Path segmentFile(Path dir, int segment) {
+        return dir.resolve(String.format("segment-%06d.arc", segment));
+    }
+
+    static Path indexFile(Path dir, int segment) {
+        return dir.resolve(String.format("segment-%06d.idx", segment));
+    }
+
+    static Path indexFile(Path segment) {
+        return indexFile(segment.getParent(), segmentNumber(segment));
+    }
+
+    static int segmentNumber(Path segment) {
+        final Matcher matcher = SEGMENT.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) throw new IllegalArgumentException("Not a segment of archive: " + segment);
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * @return segments of the archive in the order of their numbers
+     */
+    static List<Path> listSegments(Path dir) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return segments;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                if (SEGMENT.matcher(file.getFileName().toString()).matches()) segments.add(file);
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+        return segments;
+    }
+
+    private static byte[] read(FileChannel channel, ArchiveIndex index, int position) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(index.length(position));
+        final long offset = index.offset(position) + FRAME_HEADER_BYTES;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) throw new EOFException("Segment is truncated");
+        }
+        return buffer.array();
+    }
+
+    private static void rebuildIndex(Path segment, Path index) throws IOException {
+        final long[][] hashes = {new long[1024]};
+        final long[][] offsets = {new long[1024]};
+        final int[][] lengths = {new int[1024]};
+        final int[] size = {0};
+        try {
+            scanSegment(segment, (hash, offset, record) -> {
+                if (size[0] == hashes[0].length) {
+                    hashes[0] = Arrays.copyOf(hashes[0], size[0] * 2);
+                    offsets[0] = Arrays.copyOf(offsets[0], size[0] * 2);
+                    lengths[0] = Arrays.copyOf(lengths[0], size[0] * 2);
+                }
+                hashes[0][size[0]] = hash;
+                offsets[0][size[0]] = offset;
+                lengths[0][size[0]++] = record.length;
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Rebuild of index is interrupted: " + index, e);
+        }
+        ArchiveIndex.write(index, hashes[0], offsets[0], lengths[0], size[0]);
+        logger.warn("Index of segment {} is rebuilt; records: {}", segment, size[0]);
+    }
+
+    /**
+     * @return number of frames; the torn frame at the end of the segment is ignored
+     */
+    private static long scanSegment(Path segment, FrameVisitor visitor) throws IOException, InterruptedException {
+        long frames = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 20))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Unknown format of segment: " + segment);
+            long offset = 8;
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return frames;
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    logger.warn("Segment {} is damaged after {} records", segment, frames);
+                    return frames;
+                }
+                final long hash = in.readLong();
+                final byte[] record = new byte[length];
+                in.readFully(record);
+                visitor.visit(hash, offset, record);
+                offset += FRAME_HEADER_BYTES + length;
+                frames++;
+            }
+        } catch (EOFException e) {
+            logger.warn("Segment {} is torn after {} records", segment, frames);
+            return frames;
+        }
+    }
+
+    private List<Closeable> concat() {
+        final List<Closeable> closeables = new ArrayList<>(indexes);
+        closeables.addAll(channels);
+        return closeables;
+    }
+
+    @FunctionalInterface
+    private interface FrameVisitor {
+        void visit(long hash, long offset, byte[] record) throws InterruptedException;
+    }
+}
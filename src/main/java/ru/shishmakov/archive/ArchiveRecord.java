@@ -0,0 +1,120 @@
+package ru.shishmakov.archive;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.Hashing;
+import ru.shishmakov.fetch.Page;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Fetched page stored in the archive.
+ * <p>
+ * Every record is the separate gzip member, so it is decompressed independently of the others,
+ * in parallel or by the offset from the {@link ArchiveIndex index}.
+ */
+public final class ArchiveRecord {
+    private final String uri;
+    private final long fetchedAt;
+    private final Page page;
+
+    private ArchiveRecord(String uri, long fetchedAt, Page page) {
+        this.uri = uri;
+        this.fetchedAt = fetchedAt;
+        this.page = page;
+    }
+
+    /**
+     * @return URI of the request
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return time of the fetch in milliseconds since the epoch
+     */
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public Page getPage() {
+        return page;
+    }
+
+    /**
+     * @param compressed record as it is written by {@link #encode(String, Page)}
+     */
+    public static ArchiveRecord decode(byte[] compressed) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed),
+                Math.max(512, compressed.length)))) {
+            final String uri = in.readUTF();
+            final long fetchedAt = in.readLong();
+            final String pageUri = in.readUTF();
+            final int status = in.readInt();
+            final String contentType = readNullable(in);
+            final String charset = readNullable(in);
+            final String etag = readNullable(in);
+            final String lastModified = readNullable(in);
+            final byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new ArchiveRecord(uri, fetchedAt,
+                    new Page(pageUri, status, contentType, charset, body, etag, lastModified));
+        }
+    }
+
+    /**
+     * @return URI of the request without the decompression of the page
+     */
+    static String uri(byte[] compressed) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed), 512))) {
+            return in.readUTF();
+        }
+    }
+
+    static long hash(String uri) {
+        return Hashing.murmur3_128().hashString(uri, UTF_8).asLong();
+    }
+
+    static byte[] encode(String uri, Page page) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(page.getBody().length / 3 + 256);
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(buffer, 8192))) {
+            out.writeUTF(uri);
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(page.getUri());
+            out.writeInt(page.getStatus());
+            writeNullable(out, page.getContentType());
+            writeNullable(out, page.getCharset());
+            writeNullable(out, page.getEtag());
+            writeNullable(out, page.getLastModified());
+            out.writeInt(page.getBody().length);
+            out.write(page.getBody());
+        }
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("uri", uri)
+                .add("fetchedAt", fetchedAt)
+                .add("page", page)
+                .toString();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
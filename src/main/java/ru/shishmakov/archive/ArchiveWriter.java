@@ -0,0 +1,206 @@
+package ru.shishmakov.archive;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.fetch.Page;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming archive of the fetched pages in the directory {@code archive.dir}, so the crawl could be
+ * {@link ArchiveReader replayed} offline with the other settings of the parse.
+ * <p>
+ * Pages are appended to the segment file up to {@code archive.segmentMb}; the {@link ArchiveIndex index}
+ * of the segment is written when the segment is closed. Records are compressed by the caller thread,
+ * the lock covers the append of the ready bytes only.
+ * <p>
+ * The segments of the previous crawl stay until the new archive is {@link #finish() finished}: the page
+ * not modified since the previous crawl, e.g. answered {@code 304 Not Modified} to the page cache, has its
+ * record copied from them, so the archive has every page of the recrawl. The number of the first segment of
+ * the unfinished crawl is kept in the file {@code first-segment}.
+ */
+public class ArchiveWriter {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = ArchiveWriter.class.getSimpleName();
+    private static final String FIRST_SEGMENT = "first-segment";
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+
+    private Path dir;
+    private long segmentBytes;
+    private volatile ArchiveReader previous;
+    private int firstSegment;
+    private int segment;
+    private DataOutputStream out;
+    private long position;
+    private long[] hashes = new long[1024];
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int entries;
+    private long records;
+    private long copied;
+    private long missing;
+    private long bytes;
+
+    @PostConstruct
+    public void setUp() {
+        final String value = StringUtils.trimToEmpty(crawlerConfig.archiveDir());
+        if (value.isEmpty()) return;
+        this.dir = Paths.get(value);
+        this.segmentBytes = crawlerConfig.archiveSegmentMb() * (1L << 20);
+        logger.info("{} started; dir: {}", NAME, dir.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public synchronized void tearDown() {
+        // the crawl is not completed, the segments of the previous crawl stay
+        try {
+            if (out != null) closeSegment();
+        } catch (IOException e) {
+            logger.error("{} error on close segment: {}", NAME, segment, e);
+        } finally {
+            closePrevious();
+        }
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Open the new segment after the segments of the previous crawl; the resumed crawl keeps its first segment
+     */
+    public synchronized void start(boolean resume) throws IOException {
+        if (!isEnabled()) return;
+        Files.createDirectories(dir);
+        final List<Path> segments = ArchiveReader.listSegments(dir);
+        final int last = segments.isEmpty() ? 0 : ArchiveReader.segmentNumber(segments.get(segments.size() - 1));
+        final Path marker = dir.resolve(FIRST_SEGMENT);
+        if (!resume) {
+            this.firstSegment = last + 1;
+            Files.writeString(marker, String.valueOf(firstSegment));
+        } else if (Files.exists(marker)) {
+            this.firstSegment = Integer.parseInt(Files.readString(marker).trim());
+        } else {
+            // the finished crawl is resumed, all segments are its own
+            this.firstSegment = 1;
+        }
+        final List<Path> previousSegments = new ArrayList<>();
+        for (Path file : segments) {
+            if (ArchiveReader.segmentNumber(file) < firstSegment) previousSegments.add(file);
+        }
+        if (!previousSegments.isEmpty()) this.previous = ArchiveReader.open(previousSegments);
+        this.segment = last;
+        openSegment();
+    }
+
+    /**
+     * Append the fetched page; it is ignored if the archive is not started
+     *
+     * @param uri       URI of the request
+     * @param unchanged {@code true} if the page is not changed since the previous crawl, so its record is copied
+     *                  from the previous segments instead of the compression of the page
+     */
+    public void append(String uri, Page page, boolean unchanged) throws IOException {
+        if (!isEnabled()) return;
+        final ArchiveReader reader = previous;
+        final byte[] copy = unchanged && reader != null ? reader.find(uri) : null;
+        if (copy == null && page.isNotModified()) {
+            logger.debug("{} page not modified is not archived by the previous crawl: {}", NAME, uri);
+            synchronized (this) {
+                missing++;
+            }
+            return;
+        }
+        final byte[] record = copy == null ? ArchiveRecord.encode(uri, page) : copy;
+        final long hash = ArchiveRecord.hash(uri);
+        synchronized (this) {
+            if (out == null) return;
+            if (entries > 0 && position + ArchiveReader.FRAME_HEADER_BYTES + record.length > segmentBytes) {
+                closeSegment();
+                openSegment();
+            }
+            if (entries == hashes.length) {
+                hashes = Arrays.copyOf(hashes, entries * 2);
+                offsets = Arrays.copyOf(offsets, entries * 2);
+                lengths = Arrays.copyOf(lengths, entries * 2);
+            }
+            hashes[entries] = hash;
+            offsets[entries] = position;
+            lengths[entries++] = record.length;
+            ArchiveReader.writeFrame(out, hash, record);
+            position += ArchiveReader.FRAME_HEADER_BYTES + record.length;
+            records++;
+            if (copy != null) copied++;
+            bytes += record.length;
+        }
+    }
+
+    /**
+     * Close the current segment and write its index; the segments of the previous crawl are dropped after that
+     */
+    public synchronized void finish() {
+        if (out == null) return;
+        try {
+            closeSegment();
+            closePrevious();
+            for (Path file : ArchiveReader.listSegments(dir)) {
+                if (ArchiveReader.segmentNumber(file) < firstSegment) deleteSegment(file);
+            }
+            Files.deleteIfExists(dir.resolve(FIRST_SEGMENT));
+            logger.info("{} archived {} pages, copied: {}, missing: {}; {} compressed bytes in {} segments",
+                    NAME, records, copied, missing, bytes, segment - firstSegment + 1);
+        } catch (IOException e) {
+            logger.error("{} error on close segment: {}", NAME, segment, e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segment++;
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(ArchiveReader.segmentFile(dir, segment)), 1 << 16));
+        this.position = ArchiveReader.writeHeader(out);
+        this.entries = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        try {
+            out.close();
+        } finally {
+            out = null;
+        }
+        ArchiveIndex.write(ArchiveReader.indexFile(dir, segment), hashes, offsets, lengths, entries);
+    }
+
+    private void closePrevious() {
+        final ArchiveReader reader = previous;
+        previous = null;
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            logger.error("{} error on close previous segments", NAME, e);
+        }
+    }
+
+    private static void deleteSegment(Path file) throws IOException {
+        Files.deleteIfExists(ArchiveReader.indexFile(file));
+        Files.delete(file);
+    }
+}
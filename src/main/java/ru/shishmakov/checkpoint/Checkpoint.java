@@ -0,0 +1,107 @@
+package ru.shishmakov.checkpoint;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * State of the interrupted crawl restored from the checkpoint directory; visited URLs and word counts are
+ * restored directly into their beans, the rest is kept here
+ */
+public final class Checkpoint {
+    private final Map<String, PendingUri> pending = new LinkedHashMap<>();
+    private String seedUri;
+    private int depth;
+    private long pages;
+
+    public String getSeedUri() {
+        return seedUri;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return number of pages completed before the checkpoint
+     */
+    public long getPages() {
+        return pages;
+    }
+
+    /**
+     * @return URLs claimed but not completed, in the order of their claims
+     */
+    public Collection<PendingUri> getPending() {
+        return Collections.unmodifiableCollection(pending.values());
+    }
+
+    void seed(String seedUri, int depth) {
+        this.seedUri = seedUri;
+        this.depth = depth;
+    }
+
+    void claim(String uri, int level, long fingerprint) {
+        pending.put(uri, new PendingUri(uri, level, fingerprint));
+    }
+
+    void complete(String uri) {
+        pending.remove(uri);
+    }
+
+    void setPages(long pages) {
+        this.pages = pages;
+    }
+
+    void incrementPages() {
+        pages++;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("seedUri", seedUri)
+                .add("depth", depth)
+                .add("pages", pages)
+                .add("pending", pending.size())
+                .toString();
+    }
+
+    /**
+     * URL claimed in the visited set and waiting for the fetch
+     */
+    public static final class PendingUri {
+        private final String uri;
+        private final int level;
+        private final long fingerprint;
+
+        PendingUri(String uri, int level, long fingerprint) {
+            this.uri = uri;
+            this.level = level;
+            this.fingerprint = fingerprint;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("uri", uri)
+                    .add("level", level)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package ru.shishmakov.checkpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.frontier.FrontierItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only log of the crawl events since the last snapshot.
+ * <p>
+ * Every record is {@code length, crc32, payload}; the replay stops at the first torn or damaged record,
+ * so the tail written in time of the crash is dropped.
+ */
+class CheckpointLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int MAGIC = 0x43524C47;
+    private static final int VERSION = 2;
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+    private static final byte SEED = 'S';
+    private static final byte PAGE = 'P';
+
+    private final Path file;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private boolean closed;
+
+    /**
+     * @param fingerprint settings of the words those the logged counts depend on
+     */
+    CheckpointLog(Path file, long fingerprint) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, CREATE_NEW, WRITE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fingerprint);
+    }
+
+    /**
+     * Record the start of the crawl and the claim of its seed
+     */
+    void appendSeed(String seedUri, int depth, FrontierItem seed) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        final DataOutputStream payload = new DataOutputStream(buffer);
+        payload.writeByte(SEED);
+        writeString(payload, seedUri);
+        payload.writeInt(depth);
+        writeItem(payload, seed);
+        append(buffer);
+    }
+
+    /**
+     * Record the completed page with its words and the links claimed from it
+     */
+    void appendPage(FrontierItem item, WordHistogram histogram, List<FrontierItem> claimed) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024 + histogram.size() * 16);
+        final DataOutputStream payload = new DataOutputStream(buffer);
+        payload.writeByte(PAGE);
+        writeString(payload, item.getUri());
+        payload.writeInt(histogram.size());
+        final IOException[] error = new IOException[1];
+        histogram.forEach((word, count) -> {
+            try {
+                writeString(payload, word);
+                payload.writeLong(count);
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) throw error[0];
+        payload.writeInt(claimed.size());
+        for (FrontierItem link : claimed) writeItem(payload, link);
+        append(buffer);
+    }
+
+    /**
+     * Push the buffered records to the file
+     *
+     * @param force {@code true} to wait until the records reach the device
+     */
+    synchronized void flush(boolean force) throws IOException {
+        if (closed) return;
+        out.flush();
+        if (force) channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        try {
+            flush(true);
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    /**
+     * Apply records of the log to the restored state
+     *
+     * @return number of applied records
+     */
+    static long replay(Path file, long fingerprint, Checkpoint state, LongConsumer visited,
+                       ObjLongConsumer<String> words) throws IOException {
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Unknown format of log: " + file);
+            checkFingerprint(file, fingerprint, in.readLong());
+            final CRC32 crc = new CRC32();
+            while (true) {
+                final byte[] payload = readRecord(in, crc);
+                if (payload == null) return records;
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), state, visited, words);
+                records++;
+            }
+        } catch (EOFException e) {
+            logger.warn("Log {} is torn after {} records; the tail is dropped", file, records);
+            return records;
+        }
+    }
+
+    /**
+     * The counts of the checkpoint are not mixed with the words of the other tokenizer or normalization
+     */
+    static void checkFingerprint(Path file, long expected, long actual) {
+        checkState(expected == actual, "checkpoint %s is written with the other settings of the words", file);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_BYTES) throw new IOException("Invalid length of string: " + length);
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void append(ByteArrayOutputStream payload) throws IOException {
+        final byte[] bytes = payload.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        synchronized (this) {
+            if (closed) throw new IOException("Log is closed: " + file);
+            out.writeInt(bytes.length);
+            out.writeInt((int) crc.getValue());
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return payload of the next record or {@code null} at the end of the valid records
+     */
+    private static byte[] readRecord(DataInputStream in, CRC32 crc) throws IOException {
+        final int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        final int checksum = in.readInt();
+        if (length <= 0 || length > MAX_RECORD_BYTES) {
+            logger.warn("Invalid length of record: {}; the tail is dropped", length);
+            return null;
+        }
+        final byte[] payload = new byte[length];
+        in.readFully(payload);
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            logger.warn("Invalid checksum of record; the tail is dropped");
+            return null;
+        }
+        return payload;
+    }
+
+    private static void apply(DataInputStream payload, Checkpoint state, LongConsumer visited,
+                              ObjLongConsumer<String> words) throws IOException {
+        final byte type = payload.readByte();
+        switch (type) {
+            case SEED:
+                state.seed(readString(payload), payload.readInt());
+                readItem(payload, state, visited);
+                break;
+            case PAGE:
+                state.complete(readString(payload));
+                state.incrementPages();
+                for (int i = payload.readInt(); i > 0; i--) words.accept(readString(payload), payload.readLong());
+                for (int i = payload.readInt(); i > 0; i--) readItem(payload, state, visited);
+                break;
+            default:
+                throw new IOException("Unknown type of record: " + type);
+        }
+    }
+
+    private static void writeItem(DataOutput out, FrontierItem item) throws IOException {
+        writeString(out, item.getUri());
+        out.writeInt(item.getLevel());
+        out.writeLong(item.getFingerprint());
+    }
+
+    private static void readItem(DataInput in, Checkpoint state, LongConsumer visited) throws IOException {
+        final String uri = readString(in);
+        final int level = in.readInt();
+        final long fingerprint = in.readLong();
+        visited.accept(fingerprint);
+        state.claim(uri, level, fingerprint);
+    }
+}
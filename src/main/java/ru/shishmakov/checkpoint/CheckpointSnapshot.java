@@ -0,0 +1,119 @@
+package ru.shishmakov.checkpoint;
+
+import ru.shishmakov.frontier.FrontierItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Compacted state of the crawl at the start of the log with the same sequence number.
+ * <p>
+ * The state is copied in memory during the short pause of the crawl and written to the file after it;
+ * the file appears under its final name atomically, so the reader never sees the partial snapshot.
+ */
+class CheckpointSnapshot {
+    private static final int MAGIC = 0x4352534E;
+    private static final int VERSION = 2;
+
+    private final String seedUri;
+    private final int depth;
+    private final long pages;
+    private final List<FrontierItem> pending;
+    private long[] visited = new long[16];
+    private int visitedSize;
+    private String[] words = new String[16];
+    private long[] counts = new long[16];
+    private int wordsSize;
+
+    CheckpointSnapshot(String seedUri, int depth, long pages, List<FrontierItem> pending) {
+        this.seedUri = seedUri;
+        this.depth = depth;
+        this.pages = pages;
+        this.pending = pending;
+    }
+
+    void addVisited(long fingerprint) {
+        if (visitedSize == visited.length) visited = Arrays.copyOf(visited, visitedSize * 2);
+        visited[visitedSize++] = fingerprint;
+    }
+
+    void addWord(String word, long count) {
+        if (wordsSize == words.length) {
+            words = Arrays.copyOf(words, wordsSize * 2);
+            counts = Arrays.copyOf(counts, wordsSize * 2);
+        }
+        words[wordsSize] = word;
+        counts[wordsSize++] = count;
+    }
+
+    /**
+     * @param fingerprint settings of the words those the counts depend on
+     */
+    void writeTo(Path file, long fingerprint) throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        final CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16), new CRC32());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            CheckpointLog.writeString(out, seedUri);
+            out.writeInt(depth);
+            out.writeLong(pages);
+            out.writeInt(visitedSize);
+            for (int i = 0; i < visitedSize; i++) out.writeLong(visited[i]);
+            out.writeInt(wordsSize);
+            for (int i = 0; i < wordsSize; i++) {
+                CheckpointLog.writeString(out, words[i]);
+                out.writeLong(counts[i]);
+            }
+            out.writeInt(pending.size());
+            for (FrontierItem item : pending) {
+                CheckpointLog.writeString(out, item.getUri());
+                out.writeInt(item.getLevel());
+                out.writeLong(item.getFingerprint());
+            }
+            out.writeLong(checked.getChecksum().getValue());
+        }
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    /**
+     * Apply the snapshot to the restored state; the checksum is verified at the end of the file
+     */
+    static void readFrom(Path file, long fingerprint, Checkpoint state, LongConsumer visited,
+                         ObjLongConsumer<String> words) throws IOException {
+        final CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16), new CRC32());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown format of snapshot: " + file);
+            }
+            CheckpointLog.checkFingerprint(file, fingerprint, in.readLong());
+            state.seed(CheckpointLog.readString(in), in.readInt());
+            state.setPages(in.readLong());
+            for (int i = in.readInt(); i > 0; i--) visited.accept(in.readLong());
+            for (int i = in.readInt(); i > 0; i--) words.accept(CheckpointLog.readString(in), in.readLong());
+            for (int i = in.readInt(); i > 0; i--) {
+                state.claim(CheckpointLog.readString(in), in.readInt(), in.readLong());
+            }
+            final long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) throw new IOException("Invalid checksum of snapshot: " + file);
+        }
+    }
+}
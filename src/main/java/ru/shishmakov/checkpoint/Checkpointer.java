@@ -0,0 +1,292 @@
+package ru.shishmakov.checkpoint;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.frontier.FrontierItem;
+import ru.shishmakov.frontier.UrlFingerprintSet;
+import ru.shishmakov.frontier.UrlFrontier;
+import ru.shishmakov.recrawl.PageCache;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.shishmakov.util.Threads.STOP_TIMEOUT_SEC;
+
+/**
+ * Periodic checkpoints of the crawl to the directory {@code checkpoint.dir}, so the crashed crawl could be resumed.
+ * <p>
+ * Every completed page is appended to the log with its words and claimed links; the background worker flushes
+ * the log and periodically replaces it by the compacted snapshot of the visited URLs, word counts and pending URLs.
+ * Workers commit the page under the shared lock, the snapshot copies the state under the exclusive one, therefore
+ * the crawl pauses only for the in-memory copy.
+ */
+public class Checkpointer {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = Checkpointer.class.getSimpleName();
+    private static final Pattern FILE = Pattern.compile("(log|snapshot)-(\\d+)\\.bin");
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+    @Inject
+    private UrlFingerprintSet visitedUri;
+    @Inject
+    private WordCounter wordCounter;
+
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private Path dir;
+    private long fingerprint;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> flushTask;
+    private ScheduledFuture<?> snapshotTask;
+    private volatile CheckpointLog log;
+    private UrlFrontier frontier;
+    private String seedUri;
+    private int depth;
+    private long sequence;
+    private long pages;
+
+    @PostConstruct
+    public void setUp() {
+        final String value = StringUtils.trimToEmpty(crawlerConfig.checkpointDir());
+        if (value.isEmpty()) return;
+        this.dir = Paths.get(value);
+        this.fingerprint = PageCache.fingerprint(crawlerConfig);
+        this.executor = Executors.newSingleThreadScheduledExecutor(BasicThreadFactory.builder()
+                .namingPattern("checkpoint-worker %d")
+                .daemon(true)
+                .build());
+        logger.info("{} started; dir: {}", NAME, dir.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void tearDown() {
+        if (executor == null) return;
+        logger.info("{} stopping ...", NAME);
+        MoreExecutors.shutdownAndAwaitTermination(executor, STOP_TIMEOUT_SEC, SECONDS);
+        closeLog();
+        logger.info("{} stopped", NAME);
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * @return the lock held by workers while they apply the page to the counters and the frontier
+     */
+    public Lock commitLock() {
+        return commitLock.readLock();
+    }
+
+    /**
+     * Drop the previous checkpoints and record the start of the new crawl; the seed should be claimed
+     * but not enqueued yet
+     */
+    public void start(String seedUri, int depth, UrlFrontier frontier, FrontierItem seed) throws IOException {
+        if (!isEnabled()) return;
+        Files.createDirectories(dir);
+        for (Path file : listFiles().values()) Files.delete(file);
+        this.frontier = frontier;
+        this.seedUri = seedUri;
+        this.depth = depth;
+        this.sequence = 1;
+        this.log = new CheckpointLog(file("log", sequence), fingerprint);
+        log.appendSeed(seedUri, depth, seed);
+        schedule();
+    }
+
+    /**
+     * Restore the visited URLs and word counts of the interrupted crawl; the checkpoint written with the other
+     * settings of the words is rejected
+     *
+     * @return the rest of the state
+     */
+    public Checkpoint load() throws IOException {
+        checkState(isEnabled(), "checkpoint.dir is not set");
+        final StopWatch watch = StopWatch.createStarted();
+        final NavigableMap<Long, Path> files = latestFiles(listFiles());
+        checkState(!files.isEmpty(), "there is no checkpoint in %s", dir.toAbsolutePath());
+        final Checkpoint state = new Checkpoint();
+        long records = 0;
+        for (Path file : files.values()) {
+            if (file.getFileName().toString().startsWith("snapshot")) {
+                CheckpointSnapshot.readFrom(file, fingerprint, state, visitedUri::addIfAbsent, wordCounter::add);
+            } else {
+                records += CheckpointLog.replay(file, fingerprint, state, visitedUri::addIfAbsent, wordCounter::add);
+            }
+        }
+        checkState(state.getSeedUri() != null, "there is no seed in %s", dir.toAbsolutePath());
+        this.sequence = files.lastKey() / 2;
+        this.seedUri = state.getSeedUri();
+        this.depth = state.getDepth();
+        this.pages = state.getPages();
+        watch.stop();
+        logger.info("{} loaded {} from {} files and {} log records; elapsed: {} ms",
+                NAME, state, files.size(), records, watch.getTime());
+        return state;
+    }
+
+    /**
+     * Continue the loaded crawl; its pending URLs should be restored in the frontier already
+     */
+    public void resume(UrlFrontier frontier) throws IOException {
+        checkState(seedUri != null, "checkpoint is not loaded");
+        this.frontier = frontier;
+        snapshot();
+        schedule();
+    }
+
+    /**
+     * Record the completed page; the caller should hold the {@link #commitLock() commit lock}
+     *
+     * @param histogram words of the page; empty if the page is failed
+     * @param claimed   links claimed from the page but not enqueued yet
+     */
+    public void complete(FrontierItem item, WordHistogram histogram, List<FrontierItem> claimed) {
+        final CheckpointLog current = log;
+        if (current == null) return;
+        try {
+            current.appendPage(item, histogram, claimed);
+        } catch (IOException e) {
+            logger.error("{} error on append page: {}", NAME, item.getUri(), e);
+        }
+    }
+
+    /**
+     * Write the final snapshot of the completed crawl
+     */
+    public synchronized void finish() {
+        if (log == null) return;
+        flushTask.cancel(false);
+        snapshotTask.cancel(false);
+        try {
+            snapshot();
+        } catch (IOException e) {
+            logger.error("{} error on final snapshot", NAME, e);
+        }
+        closeLog();
+        this.log = null;
+        this.frontier = null;
+    }
+
+    private void schedule() {
+        final long flushMs = crawlerConfig.checkpointFlushMs();
+        final long intervalSec = crawlerConfig.checkpointIntervalSec();
+        this.flushTask = executor.scheduleWithFixedDelay(this::flush, flushMs, flushMs, MILLISECONDS);
+        this.snapshotTask = executor.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (Exception e) {
+                logger.error("{} error on snapshot", NAME, e);
+            }
+        }, intervalSec, intervalSec, SECONDS);
+    }
+
+    private void flush() {
+        final CheckpointLog current = log;
+        if (current == null) return;
+        try {
+            current.flush(true);
+        } catch (IOException e) {
+            logger.error("{} error on flush log: {}", NAME, current, e);
+        }
+    }
+
+    /**
+     * Rotate the log and write the state at the start of the new one; the previous files are dropped after that
+     */
+    private synchronized void snapshot() throws IOException {
+        if (frontier == null) return;
+        final StopWatch pause = StopWatch.createStarted();
+        final CheckpointSnapshot snapshot;
+        final long next;
+        commitLock.writeLock().lock();
+        try {
+            closeLog();
+            next = sequence + 1;
+            this.log = new CheckpointLog(file("log", next), fingerprint);
+            this.sequence = next;
+            snapshot = new CheckpointSnapshot(seedUri, depth, pages + frontier.getCompleted(), frontier.pending());
+            visitedUri.forEach(snapshot::addVisited);
+            wordCounter.forEach(snapshot::addWord);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        pause.stop();
+
+        final StopWatch watch = StopWatch.createStarted();
+        snapshot.writeTo(file("snapshot", next), fingerprint);
+        for (Path file : listFiles().headMap(next * 2, false).values()) Files.delete(file);
+        watch.stop();
+        logger.info("{} snapshot {} is written; pause: {} ms, elapsed: {} ms", NAME, next, pause.getTime(), watch.getTime());
+    }
+
+    private void closeLog() {
+        final CheckpointLog current = log;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException e) {
+            logger.error("{} error on close log: {}", NAME, current, e);
+        }
+    }
+
+    private Path file(String kind, long sequence) {
+        return dir.resolve(String.format("%s-%06d.bin", kind, sequence));
+    }
+
+    /**
+     * @return the latest snapshot and the logs after it; the older files are left by the crash in time of cleanup
+     */
+    private static NavigableMap<Long, Path> latestFiles(NavigableMap<Long, Path> files) {
+        for (Long order : files.descendingKeySet()) {
+            if (order % 2 == 0) return files.tailMap(order, true);
+        }
+        return files;
+    }
+
+    /**
+     * @return files of the checkpoint in the order of replay: snapshot {@code N} precedes log {@code N}
+     */
+    private NavigableMap<Long, Path> listFiles() throws IOException {
+        final NavigableMap<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(dir)) return files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                final Matcher matcher = FILE.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+                final long order = Long.parseLong(matcher.group(2)) * 2 + ("log".equals(matcher.group(1)) ? 1 : 0);
+                files.put(order, file);
+            }
+        }
+        return files;
+    }
+}
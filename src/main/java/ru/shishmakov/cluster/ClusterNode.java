@@ -0,0 +1,463 @@
+package ru.shishmakov.cluster;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.cluster.ClusterProtocol.ForwardedLink;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.frontier.FrontierPartition;
+import ru.shishmakov.frontier.UrlFingerprintSet;
+import ru.shishmakov.frontier.UrlFrontier;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.shishmakov.util.Threads.STOP_TIMEOUT_SEC;
+
+/**
+ * Node of the distributed crawl of {@code cluster.nodes}: the URL space is split between the nodes by the hash of
+ * the URL, every node claims and fetches its own URLs and forwards the others to their owners by batches of
+ * {@code cluster.batchSize} links.
+ * <p>
+ * The first node is the coordinator: it keeps the barrier of the levels, so the breadth-first order holds for
+ * the whole cluster, and receives the words counted by the other nodes every {@code cluster.pushInterval} ms,
+ * therefore its word counter is the global one. Every node is started with the same seed and depth; the rate limits
+ * are the limits of the node.
+ */
+public class ClusterNode implements FrontierPartition {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = ClusterNode.class.getSimpleName();
+    private static final int COORDINATOR = 0;
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+    @Inject
+    private WordCounter wordCounter;
+    @Inject
+    private CrawlMetrics crawlMetrics;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Integer, Long> received = new HashMap<>();
+    private final Set<Socket> accepted = ConcurrentHashMap.newKeySet();
+    private final AtomicLong receivedLinks = new AtomicLong();
+    private final Object wordsLock = new Object();
+    private final Object pushLock = new Object();
+    private List<InetSocketAddress> addresses;
+    private int self;
+    private int batchSize;
+    private boolean enabled;
+    private volatile UrlFrontier frontier;
+    private LevelCoordinator coordinator;
+    private PeerLink[] peers;
+    private LinkBatch[] batches;
+    private AtomicLongArray sent;
+    private WordHistogram pendingWords = new WordHistogram();
+    private ServerSocket server;
+    private ExecutorService readers;
+    private ScheduledExecutorService pusher;
+    private int openedLevel;
+    private long expectedLinks;
+    private boolean finished;
+    private Throwable failure;
+
+    @PostConstruct
+    public void setUp() {
+        final List<InetSocketAddress> nodes = new ArrayList<>();
+        for (String node : crawlerConfig.clusterNodes()) {
+            if (StringUtils.isBlank(node)) continue;
+            final HostAndPort address = HostAndPort.fromString(node.trim());
+            checkArgument(address.hasPort(), "port of node is not set: %s", node);
+            nodes.add(new InetSocketAddress(address.getHost(), address.getPort()));
+        }
+        if (nodes.isEmpty()) return;
+        this.addresses = nodes;
+        this.self = crawlerConfig.clusterNode();
+        checkArgument(self >= 0 && self < nodes.size(), "node should be in [0, %s): %s", nodes.size(), self);
+        this.batchSize = crawlerConfig.clusterBatchSize();
+        checkArgument(batchSize > 0, "batch size should be positive: %s", batchSize);
+        this.enabled = true;
+        this.coordinator = isCoordinator() ? new LevelCoordinator(nodes.size()) : null;
+        this.peers = new PeerLink[nodes.size()];
+        this.batches = new LinkBatch[nodes.size()];
+        for (int i = 0; i < batches.length; i++) batches[i] = new LinkBatch(i);
+        this.sent = new AtomicLongArray(nodes.size());
+        this.readers = Executors.newCachedThreadPool(BasicThreadFactory.builder()
+                .namingPattern("cluster-reader %d")
+                .daemon(true)
+                .build());
+        this.pusher = Executors.newSingleThreadScheduledExecutor(BasicThreadFactory.builder()
+                .namingPattern("cluster-pusher %d")
+                .daemon(true)
+                .build());
+        logger.info("{} started; node: {} of {}, address: {}, coordinator: {}",
+                NAME, self, nodes.size(), nodes.get(self), isCoordinator());
+    }
+
+    @PreDestroy
+    public void tearDown() {
+        if (!enabled) return;
+        logger.info("{} stopping ...", NAME);
+        leave();
+        MoreExecutors.shutdownAndAwaitTermination(pusher, STOP_TIMEOUT_SEC, SECONDS);
+        MoreExecutors.shutdownAndAwaitTermination(readers, STOP_TIMEOUT_SEC, SECONDS);
+        logger.info("{} stopped", NAME);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return {@code true} if the word counter of this node is the global one
+     */
+    public boolean isCoordinator() {
+        return !enabled || self == COORDINATOR;
+    }
+
+    /**
+     * @param key simplified form of the URL
+     * @return {@code true} if the URL is claimed and fetched by this node
+     */
+    public boolean isLocal(CharSequence key) {
+        return !enabled || isLocal(UrlFingerprintSet.fingerprint(key));
+    }
+
+    @Override
+    public boolean isLocal(long fingerprint) {
+        return owner(fingerprint) == self;
+    }
+
+    /**
+     * Listen to the other nodes and connect to them; the forwarded links are put in the frontier
+     */
+    public void join(UrlFrontier frontier) throws IOException, InterruptedException {
+        checkState(enabled, "cluster.nodes is not set");
+        checkState(this.frontier == null, "node has joined already");
+        this.frontier = frontier;
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(addresses.get(self));
+        readers.execute(this::accept);
+        for (int node = 0; node < addresses.size(); node++) {
+            if (node == self) continue;
+            peers[node] = PeerLink.connect(node, addresses.get(node), self, crawlerConfig.clusterJoinTimeoutMs());
+        }
+        if (!isCoordinator()) {
+            final long interval = crawlerConfig.clusterPushIntervalMs();
+            pusher.scheduleWithFixedDelay(this::pushWordsSafely, interval, interval, MILLISECONDS);
+        }
+        logger.info("{} joined; nodes: {}", NAME, addresses);
+    }
+
+    /**
+     * Close the connections of the completed crawl
+     */
+    public void leave() {
+        if (pusher != null) pusher.shutdownNow();
+        if (peers != null) {
+            for (PeerLink peer : peers) closeQuietly(peer);
+        }
+        closeQuietly(server);
+        for (Socket socket : accepted) closeQuietly(socket);
+    }
+
+    @Override
+    public void forward(String uri, int level, long fingerprint) {
+        final int owner = owner(fingerprint);
+        try {
+            batches[owner].add(level, new ForwardedLink(uri, fingerprint));
+        } catch (IOException e) {
+            fail(e);
+            throw new UncheckedIOException(e);
+        }
+        sent.incrementAndGet(owner);
+        crawlMetrics.increment(Counter.LINKS_FORWARDED);
+    }
+
+    /**
+     * Keep the words of the page until the next push to the coordinator
+     */
+    public void count(WordHistogram histogram) {
+        if (isCoordinator() || histogram.isEmpty()) return;
+        synchronized (wordsLock) {
+            histogram.forEach(pendingWords::add);
+        }
+    }
+
+    @Override
+    public boolean awaitLevel(int level, int queued) throws InterruptedException {
+        final long[] counts = new long[addresses.size()];
+        try {
+            for (LinkBatch batch : batches) batch.flush();
+            for (int node = 0; node < counts.length; node++) counts[node] = sent.getAndSet(node, 0);
+            if (isCoordinator()) {
+                done(self, level, queued, counts);
+            } else {
+                // the last words of the level should reach the coordinator before the report
+                synchronized (pushLock) {
+                    pushWords();
+                    peers[COORDINATOR].send(ClusterProtocol.done(self, level, queued, counts));
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw new UncheckedIOException(e);
+        }
+        lock.lockInterruptibly();
+        try {
+            while (failure == null && !finished && openedLevel <= level) changed.await();
+            while (failure == null && !finished && received.getOrDefault(level + 1, 0L) < expectedLinks) {
+                changed.await();
+            }
+            if (failure != null) throw new IllegalStateException("Cluster is failed", failure);
+            if (finished) return false;
+            received.remove(level);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("node", self)
+                .add("nodes", addresses == null ? 1 : addresses.size())
+                .add("forwarded", crawlMetrics.get(Counter.LINKS_FORWARDED))
+                .add("received", receivedLinks.get())
+                .toString();
+    }
+
+    private int owner(long fingerprint) {
+        return (int) Long.remainderUnsigned(fingerprint, addresses.size());
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                accepted.add(socket);
+                readers.execute(() -> read(socket));
+            } catch (SocketException e) {
+                logger.debug("{} stopped to listen", NAME);
+                return;
+            } catch (IOException e) {
+                logger.error("{} error on accept connection", NAME, e);
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        int node = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16))) {
+            checkState(in.readByte() == ClusterProtocol.HELLO, "greeting is expected");
+            node = in.readInt();
+            logger.debug("{} accepted node: {}", NAME, node);
+            while (true) {
+                final byte type = in.readByte();
+                switch (type) {
+                    case ClusterProtocol.LINKS:
+                        receiveLinks(in);
+                        break;
+                    case ClusterProtocol.WORDS:
+                        wordCounter.addAll(ClusterProtocol.readWords(in));
+                        break;
+                    case ClusterProtocol.DONE:
+                        done(in.readInt(), in.readInt(), in.readLong(), ClusterProtocol.readLongs(in));
+                        break;
+                    case ClusterProtocol.OPEN:
+                        open(in.readInt(), in.readLong());
+                        break;
+                    case ClusterProtocol.FINISH:
+                        finish();
+                        break;
+                    default:
+                        throw new IOException("Unknown type of message: " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // nodes leave one by one after the finish; only the loss of the coordinator stops the others
+            if (isFinished() || !(isCoordinator() || node == COORDINATOR)) {
+                logger.debug("{} node {} is disconnected", NAME, node);
+                return;
+            }
+            fail(new IOException("Node " + node + " is disconnected", e));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            accepted.remove(socket);
+        }
+    }
+
+    private void receiveLinks(DataInputStream in) throws IOException {
+        final int level = in.readInt();
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            frontier.accept(ClusterProtocol.readString(in), level, in.readLong());
+        }
+        receivedLinks.addAndGet(count);
+        lock.lock();
+        try {
+            received.merge(level, (long) count, Long::sum);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The coordinator records the level completed by the node and opens the next one after all nodes
+     */
+    private void done(int node, int level, long queued, long[] counts) throws IOException {
+        checkState(coordinator != null, "node %s is not the coordinator", self);
+        final long[] decision = coordinator.done(node, level, queued, counts);
+        if (decision == null) return;
+        if (decision == LevelCoordinator.FINISH) {
+            logger.info("{} level {} is completed by all nodes; crawl is finished", NAME, level);
+            for (PeerLink peer : peers) if (peer != null) peer.send(ClusterProtocol.finish());
+            finish();
+            return;
+        }
+        logger.info("{} level {} is completed by all nodes; open level {}, forwarded links: {}",
+                NAME, level, level + 1, decision);
+        for (int i = 0; i < peers.length; i++) {
+            if (i == self) open(level + 1, decision[i]);
+            else peers[i].send(ClusterProtocol.open(level + 1, decision[i]));
+        }
+    }
+
+    private void open(int level, long expected) {
+        lock.lock();
+        try {
+            this.openedLevel = level;
+            this.expectedLinks = expected;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish() {
+        lock.lock();
+        try {
+            this.finished = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFinished() {
+        lock.lock();
+        try {
+            return finished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(Throwable e) {
+        logger.error("{} error of node: {}", NAME, self, e);
+        lock.lock();
+        try {
+            if (failure == null) failure = e;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void pushWords() throws IOException {
+        synchronized (pushLock) {
+            final WordHistogram words;
+            synchronized (wordsLock) {
+                if (pendingWords.isEmpty()) return;
+                words = pendingWords;
+                pendingWords = new WordHistogram();
+            }
+            peers[COORDINATOR].send(ClusterProtocol.words(words));
+        }
+    }
+
+    private void pushWordsSafely() {
+        try {
+            pushWords();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.debug("{} error on close: {}", NAME, closeable, e);
+        }
+    }
+
+    /**
+     * Links of one level waiting to be forwarded to the node
+     */
+    private final class LinkBatch {
+        private final int node;
+        private List<ForwardedLink> links = new ArrayList<>();
+        private int level;
+
+        private LinkBatch(int node) {
+            this.node = node;
+        }
+
+        synchronized void add(int level, ForwardedLink link) throws IOException {
+            if (!links.isEmpty() && level != this.level) flush();
+            this.level = level;
+            links.add(link);
+            if (links.size() >= batchSize) flush();
+        }
+
+        synchronized void flush() throws IOException {
+            if (links.isEmpty()) return;
+            peers[node].send(ClusterProtocol.links(level, links));
+            links = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.shishmakov.cluster;
+
+import ru.shishmakov.count.WordHistogram;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Messages of the nodes of the distributed crawl.
+ * <p>
+ * Every connection starts with {@link #HELLO} of the sender; every message is the type byte and its fields:
+ * <pre>
+ * HELLO  node
+ * LINKS  level, count, (uri, fingerprint) * count
+ * WORDS  count, (word, count) * count
+ * DONE   node, level, queued, nodes, sent * nodes
+ * OPEN   level, expected
+ * FINISH
+ * </pre>
+ * Messages of one connection are handled in order, so the words and links of the node always reach
+ * the coordinator before the completion of its level.
+ */
+final class ClusterProtocol {
+    static final byte HELLO = 'H';
+    /**
+     * Links forwarded to the owner node
+     */
+    static final byte LINKS = 'L';
+    /**
+     * Words counted by the node since the previous push; sent to the coordinator only
+     */
+    static final byte WORDS = 'W';
+    /**
+     * Level completed by the node with the numbers of links forwarded to every node; sent to the coordinator only
+     */
+    static final byte DONE = 'D';
+    /**
+     * Next level opened by the coordinator with the number of links the node should receive before the start
+     */
+    static final byte OPEN = 'O';
+    static final byte FINISH = 'F';
+
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    private ClusterProtocol() {
+    }
+
+    /**
+     * Message written to the output of the connection
+     */
+    @FunctionalInterface
+    interface Message {
+        void write(DataOutput out) throws IOException;
+    }
+
+    static Message hello(int node) {
+        return out -> {
+            out.writeByte(HELLO);
+            out.writeInt(node);
+        };
+    }
+
+    static Message links(int level, List<ForwardedLink> links) {
+        return out -> {
+            out.writeByte(LINKS);
+            out.writeInt(level);
+            out.writeInt(links.size());
+            for (ForwardedLink link : links) {
+                writeString(out, link.uri);
+                out.writeLong(link.fingerprint);
+            }
+        };
+    }
+
+    static Message words(WordHistogram histogram) {
+        return out -> {
+            out.writeByte(WORDS);
+            out.writeInt(histogram.size());
+            final IOException[] error = new IOException[1];
+            histogram.forEach((word, count) -> {
+                try {
+                    writeString(out, word);
+                    out.writeLong(count);
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) throw error[0];
+        };
+    }
+
+    static Message done(int node, int level, long queued, long[] sent) {
+        return out -> {
+            out.writeByte(DONE);
+            out.writeInt(node);
+            out.writeInt(level);
+            out.writeLong(queued);
+            out.writeInt(sent.length);
+            for (long count : sent) out.writeLong(count);
+        };
+    }
+
+    static Message open(int level, long expected) {
+        return out -> {
+            out.writeByte(OPEN);
+            out.writeInt(level);
+            out.writeLong(expected);
+        };
+    }
+
+    static Message finish() {
+        return out -> out.writeByte(FINISH);
+    }
+
+    static WordHistogram readWords(DataInput in) throws IOException {
+        final int size = in.readInt();
+        final WordHistogram histogram = new WordHistogram(size);
+        for (int i = 0; i < size; i++) histogram.add(readString(in), in.readLong());
+        return histogram;
+    }
+
+    static long[] readLongs(DataInput in) throws IOException {
+        final long[] values = new long[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readLong();
+        return values;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) throw new IOException("Invalid length of string: " + length);
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * URL claimed by the owner node
+     */
+    static final class ForwardedLink {
+        final String uri;
+        final long fingerprint;
+
+        ForwardedLink(String uri, long fingerprint) {
+            this.uri = uri;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
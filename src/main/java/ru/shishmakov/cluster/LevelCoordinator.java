@@ -0,0 +1,62 @@
+package ru.shishmakov.cluster;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Barrier of the levels of the distributed crawl kept by the coordinator.
+ * <p>
+ * The level is completed when every node reports it; then the next level is opened with the number of links
+ * every node should receive from the others, or the crawl is finished if no node has the links to fetch.
+ */
+final class LevelCoordinator {
+    /**
+     * Decision of the completed level to finish the crawl
+     */
+    static final long[] FINISH = new long[0];
+
+    private final int nodes;
+    private final boolean[] reported;
+    private final long[] expected;
+    private int level;
+    private int reports;
+    private long queued;
+
+    LevelCoordinator(int nodes) {
+        checkArgument(nodes > 0, "nodes should be positive: %s", nodes);
+        this.nodes = nodes;
+        this.reported = new boolean[nodes];
+        this.expected = new long[nodes];
+    }
+
+    /**
+     * Record the level completed by the node
+     *
+     * @param queued number of links queued on the next level of the node
+     * @param sent   numbers of links forwarded by the node to every node
+     * @return {@code null} while the other nodes are on the level, {@link #FINISH} or the numbers of links every node
+     * should receive on the next level
+     */
+    synchronized long[] done(int node, int level, long queued, long[] sent) {
+        checkArgument(node >= 0 && node < nodes, "unknown node: %s", node);
+        checkArgument(sent.length == nodes, "invalid number of nodes: %s", sent.length);
+        checkState(level == this.level, "node %s completed level %s, expected %s", node, level, this.level);
+        checkState(!reported[node], "node %s completed level %s twice", node, level);
+        reported[node] = true;
+        reports++;
+        this.queued += queued;
+        for (int i = 0; i < nodes; i++) expected[i] += sent[i];
+        if (reports < nodes) return null;
+
+        final long links = this.queued + Arrays.stream(expected).sum();
+        final long[] decision = links == 0 ? FINISH : expected.clone();
+        Arrays.fill(reported, false);
+        Arrays.fill(expected, 0);
+        this.reports = 0;
+        this.queued = 0;
+        this.level++;
+        return decision;
+    }
+}
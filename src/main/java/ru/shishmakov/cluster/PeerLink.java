@@ -0,0 +1,65 @@
+package ru.shishmakov.cluster;
+
+import ru.shishmakov.cluster.ClusterProtocol.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outgoing connection to the other node; messages of the concurrent senders are written one by one
+ */
+final class PeerLink implements Closeable {
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final long RETRY_DELAY_MS = 100;
+
+    private final int node;
+    private final Socket socket;
+    private final DataOutputStream out;
+
+    private PeerLink(int node, Socket socket) throws IOException {
+        this.node = node;
+        this.socket = socket;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    /**
+     * Connect to the node, retrying until it starts to listen or the timeout elapses
+     *
+     * @param self index of this node sent as the greeting
+     */
+    static PeerLink connect(int node, InetSocketAddress address, int self, long timeoutMs)
+            throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            final Socket socket = new Socket();
+            try {
+                socket.connect(address, CONNECT_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+                final PeerLink link = new PeerLink(node, socket);
+                link.send(ClusterProtocol.hello(self));
+                return link;
+            } catch (IOException e) {
+                socket.close();
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("Node " + node + " is not available: " + address, e);
+                }
+                TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    synchronized void send(Message message) throws IOException {
+        message.write(out);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -2,7 +2,13 @@ package ru.shishmakov.config;
 
 import org.aeonbits.owner.Config;
 import org.aeonbits.owner.Config.Sources;
+import ru.shishmakov.core.CrawlEngineType;
+import ru.shishmakov.core.RateLimiterType;
+import ru.shishmakov.count.CounterType;
+import ru.shishmakov.parse.ParseMode;
+import ru.shishmakov.text.NormalizationMode;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -25,13 +31,280 @@ public interface CrawlerConfig extends Config {
 
     @DefaultValue("20")
     @Key("rps")
-    int requestPerSecond();
+    double requestPerSecond();
+
+    @DefaultValue("RING")
+    @Key("rate.limiter")
+    RateLimiterType rateLimiterType();
+
+    @DefaultValue("1")
+    @Key("rate.burst")
+    int rateBurst();
+
+    @DefaultValue("20")
+    @Key("host.rps")
+    double hostRequestPerSecond();
+
+    @DefaultValue("")
+    @Key("crawl.hosts")
+    Set<String> allowedHosts();
+
+    @DefaultValue("256")
+    @Key("crawl.maxPending")
+    int maxPendingPages();
+
+    @DefaultValue("FORK_JOIN")
+    @Key("crawl.engine")
+    CrawlEngineType crawlEngineType();
+
+    /**
+     * Number of sites of the batch or the jobs of the daemon crawled at once
+     */
+    @DefaultValue("8")
+    @Key("batch.parallelism")
+    int batchParallelism();
+
+    /**
+     * Address of the HTTP job API of the daemon; the API has no authentication, so it is bound to the loopback
+     * by default, {@code 0.0.0.0} exposes it on every interface
+     */
+    @DefaultValue("127.0.0.1")
+    @Key("daemon.host")
+    String daemonHost();
+
+    /**
+     * Port of the HTTP job API of the daemon; {@code 0} is any free port
+     */
+    @DefaultValue("8080")
+    @Key("daemon.port")
+    int daemonPort();
+
+    /**
+     * Number of the finished jobs of the daemon whose counted words are kept for the queries
+     */
+    @DefaultValue("16")
+    @Key("daemon.retainedJobs")
+    int daemonRetainedJobs();
+
+    @DefaultValue("2")
+    @Key("schedule.threads")
+    int schedulerThreads();
+
+    @DefaultValue("true")
+    @Key("robots.enabled")
+    boolean robotsEnabled();
+
+    @DefaultValue("http-crawler-word-counter")
+    @Key("robots.agent")
+    String robotsAgent();
+
+    @DefaultValue("30000")
+    @Key("robots.maxCrawlDelay")
+    long robotsMaxCrawlDelayMs();
+
+    @DefaultValue("DOM")
+    @Key("parse.mode")
+    ParseMode parseMode();
+
+    /**
+     * Normalization of the counted words; {@code STEM} merges the forms of the Russian and English words
+     */
+    @DefaultValue("LOWER_CASE")
+    @Key("term.normalization")
+    NormalizationMode termNormalization();
+
+    /**
+     * Number of the recent forms and their stems cached by each platform thread; {@code 0} disables the cache
+     */
+    @DefaultValue("4096")
+    @Key("term.cacheSize")
+    int termCacheSize();
+
+    @DefaultValue("STRIPED")
+    @Key("counter.type")
+    CounterType counterType();
+
+    @DefaultValue("64")
+    @Key("counter.stripes")
+    int counterStripes();
+
+    @DefaultValue("65536")
+    @Key("visited.capacity")
+    int visitedCapacity();
+
+    @DefaultValue("0.7")
+    @Key("visited.loadFactor")
+    double visitedLoadFactor();
+
+    @DefaultValue("2")
+    @Key("visited.growth")
+    int visitedGrowthFactor();
+
+    @DefaultValue("false")
+    @Key("visited.offHeap")
+    boolean visitedOffHeap();
+
+    /**
+     * Directory of the page cache for the next crawl of the same site; the empty value disables it
+     */
+    @DefaultValue("")
+    @Key("cache.dir")
+    String pageCacheDir();
+
+    /**
+     * Directory of the archive of fetched pages; the empty value disables it
+     */
+    @DefaultValue("")
+    @Key("archive.dir")
+    String archiveDir();
+
+    @DefaultValue("256")
+    @Key("archive.segmentMb")
+    int archiveSegmentMb();
+
+    /**
+     * Directory of the sorted table of all counted words written at the end of the crawl; the empty value
+     * disables it
+     */
+    @DefaultValue("")
+    @Key("export.dir")
+    String exportDir();
+
+    /**
+     * Directory of checkpoints; the empty value disables them
+     */
+    @DefaultValue("")
+    @Key("checkpoint.dir")
+    String checkpointDir();
+
+    @DefaultValue("60")
+    @Key("checkpoint.interval")
+    int checkpointIntervalSec();
+
+    @DefaultValue("1000")
+    @Key("checkpoint.flush")
+    int checkpointFlushMs();
+
+    /**
+     * Skip words of the pages those are near duplicates of the counted ones
+     */
+    @DefaultValue("false")
+    @Key("dedup.enabled")
+    boolean dedupEnabled();
+
+    /**
+     * Max number of different bits of SimHash of the near duplicates
+     */
+    @DefaultValue("3")
+    @Key("dedup.maxDistance")
+    int dedupMaxDistance();
+
+    /**
+     * Number of bands of the index; it should be greater than {@code dedup.maxDistance}
+     */
+    @DefaultValue("4")
+    @Key("dedup.bands")
+    int dedupBands();
+
+    /**
+     * Pages with fewer distinct words are never taken as near duplicates
+     */
+    @DefaultValue("32")
+    @Key("dedup.minWords")
+    int dedupMinWords();
+
+    @DefaultValue("false")
+    @Key("dedup.skipLinks")
+    boolean dedupSkipLinks();
+
+    /**
+     * Addresses {@code host:port} of the nodes of the distributed crawl; the first one is the coordinator.
+     * The empty value is the crawl of the single node
+     */
+    @DefaultValue("")
+    @Key("cluster.nodes")
+    List<String> clusterNodes();
+
+    /**
+     * Index of this node in {@code cluster.nodes}
+     */
+    @DefaultValue("0")
+    @Key("cluster.node")
+    int clusterNode();
+
+    /**
+     * Number of links forwarded to the other node by one message
+     */
+    @DefaultValue("256")
+    @Key("cluster.batchSize")
+    int clusterBatchSize();
+
+    /**
+     * Interval of the pushes of the counted words to the coordinator
+     */
+    @DefaultValue("1000")
+    @Key("cluster.pushInterval")
+    int clusterPushIntervalMs();
+
+    @DefaultValue("30000")
+    @Key("cluster.joinTimeout")
+    int clusterJoinTimeoutMs();
 
     @DefaultValue("100")
     @Key("top.count")
     int topRating();
 
+    /**
+     * Interval of the snapshots of the top words while the crawl is running; {@code 0} disables them
+     */
+    @DefaultValue("5000")
+    @Key("top.liveInterval")
+    long topLiveIntervalMs();
+
     @DefaultValue("3000")
     @Key("request.timeout")
     int requestTimeoutMs();
+
+    @DefaultValue("64")
+    @Key("fetch.maxInFlight")
+    int maxInFlightRequests();
+
+    @DefaultValue("8")
+    @Key("fetch.maxConnectionsPerHost")
+    int maxConnectionsPerHost();
+
+    @DefaultValue("Mozilla/5.0 (compatible; http-crawler-word-counter/0.1)")
+    @Key("fetch.userAgent")
+    String userAgent();
+
+    /**
+     * Extensions of the links those are never fetched
+     */
+    @DefaultValue("pdf, doc, docx, xls, xlsx, ppt, pptx, odt, ods, rtf, epub, zip, gz, tgz, bz2, xz, 7z, rar, tar, " +
+            "jar, war, exe, msi, dmg, iso, apk, deb, rpm, bin, jpg, jpeg, png, gif, bmp, svg, webp, ico, tif, tiff, " +
+            "mp3, mp4, m4a, avi, mov, mkv, webm, wav, ogg, flac, css, js, json, woff, woff2, ttf, eot")
+    @Key("fetch.skipExtensions")
+    Set<String> skipExtensions();
+
+    /**
+     * Media types of the responses those are read and parsed
+     */
+    @DefaultValue("text/html, application/xhtml+xml, text/xml, application/xml, text/plain")
+    @Key("fetch.contentTypes")
+    Set<String> contentTypes();
+
+    /**
+     * Limit of the body; the longer response is aborted
+     */
+    @DefaultValue("4096")
+    @Key("fetch.maxBodyKb")
+    int maxBodyKb();
+
+    @DefaultValue("2")
+    @Key("fetch.negativeThreshold")
+    int negativeThreshold();
+
+    @DefaultValue("10000")
+    @Key("fetch.negativeCacheSize")
+    int negativeCacheSize();
 }
@@ -0,0 +1,129 @@
+package ru.shishmakov.config;
+
+import org.aeonbits.owner.ConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.shishmakov.core.BatchController;
+import ru.shishmakov.core.DaemonController;
+import ru.shishmakov.core.PageParser;
+import ru.shishmakov.core.RateAccessController;
+import ru.shishmakov.core.RateLimiter;
+import ru.shishmakov.core.TokenBucketRateLimiter;
+import ru.shishmakov.fetch.ContentFilter;
+import ru.shishmakov.fetch.Fetcher;
+import ru.shishmakov.fetch.HttpFetcher;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.parse.ContentExtractor;
+import ru.shishmakov.parse.DomContentExtractor;
+import ru.shishmakov.parse.StreamingContentExtractor;
+import ru.shishmakov.schedule.HostScheduler;
+import ru.shishmakov.schedule.RobotsTxtCache;
+import ru.shishmakov.text.TermNormalizer;
+import ru.shishmakov.text.WordTokenizer;
+import ru.shishmakov.util.CrawlerUtil;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+/**
+ * Beans shared by the crawls of all sites: the configuration, the rate limits, the fetcher and the pools.
+ * The context of the batch is the parent of the {@link SiteConfig site} contexts.
+ */
+@Configuration
+public class SharedConfig {
+
+    @Bean
+    public RateLimiter rateLimiter() {
+        CrawlerConfig config = crawlerConfig();
+        switch (config.rateLimiterType()) {
+            case TOKEN_BUCKET:
+                return new TokenBucketRateLimiter(config.requestPerSecond(), config.rateBurst());
+            case RING:
+            default:
+                return new RateAccessController();
+        }
+    }
+
+    @Bean
+    public Fetcher fetcher() {
+        return new HttpFetcher();
+    }
+
+    @Bean
+    public ContentFilter contentFilter() {
+        return new ContentFilter();
+    }
+
+    @Bean
+    public RobotsTxtCache robotsTxtCache() {
+        return new RobotsTxtCache();
+    }
+
+    @Bean
+    public HostScheduler hostScheduler() {
+        return new HostScheduler();
+    }
+
+    @Bean
+    public CrawlMetrics crawlMetrics() {
+        return new CrawlMetrics();
+    }
+
+    /**
+     * Pool of the parse tasks and the selection of the top words
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool parsePool() {
+        return new ForkJoinPool();
+    }
+
+    @Bean
+    public PageParser pageParser() {
+        return new PageParser();
+    }
+
+    @Bean
+    public BatchController batchController() {
+        return new BatchController();
+    }
+
+    @Bean
+    public DaemonController daemonController() {
+        return new DaemonController();
+    }
+
+    @Bean
+    public CrawlerConfig crawlerConfig() {
+        // -Dkey=value overrides the value of the properties file
+        return ConfigFactory.create(CrawlerConfig.class, System.getProperties());
+    }
+
+    @Bean
+    public WordTokenizer wordTokenizer() {
+        CrawlerConfig config = crawlerConfig();
+        return new WordTokenizer(Pattern.compile(config.illegalCharactersPattern()),
+                config.minAcceptableCountSymbols(), config.acceptableWords());
+    }
+
+    @Bean
+    public TermNormalizer termNormalizer() {
+        CrawlerConfig config = crawlerConfig();
+        return new TermNormalizer(config.termNormalization(), config.termCacheSize(), config.acceptableWords());
+    }
+
+    @Bean
+    public ContentExtractor contentExtractor() {
+        switch (crawlerConfig().parseMode()) {
+            case STREAM:
+                return new StreamingContentExtractor();
+            case DOM:
+            default:
+                return new DomContentExtractor();
+        }
+    }
+
+    @Bean
+    public CrawlerUtil crawlerUtil() {
+        return new CrawlerUtil();
+    }
+}
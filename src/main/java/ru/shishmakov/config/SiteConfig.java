@@ -0,0 +1,107 @@
+package ru.shishmakov.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import ru.shishmakov.archive.ArchiveWriter;
+import ru.shishmakov.checkpoint.Checkpointer;
+import ru.shishmakov.cluster.ClusterNode;
+import ru.shishmakov.core.CrawlEngine;
+import ru.shishmakov.core.CrawlerCounter;
+import ru.shishmakov.core.ForkJoinCrawlEngine;
+import ru.shishmakov.core.LiveTopWords;
+import ru.shishmakov.core.RatingController;
+import ru.shishmakov.core.VirtualThreadCrawlEngine;
+import ru.shishmakov.count.DictionaryWordCounter;
+import ru.shishmakov.count.StripedWordCounter;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.dedup.NearDuplicateIndex;
+import ru.shishmakov.frontier.UrlFingerprintSet;
+import ru.shishmakov.recrawl.PageCache;
+
+import javax.inject.Inject;
+import java.util.function.ObjLongConsumer;
+
+import static org.springframework.beans.factory.config.BeanDefinition.SCOPE_PROTOTYPE;
+
+/**
+ * Beans of the crawl of one site: the visited URLs, the counted words and the state of the crawl.
+ * Beans of the {@link SharedConfig} are taken from the same or the parent context.
+ */
+@Configuration
+public class SiteConfig {
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+
+    @Bean(name = "wordCounter")
+    public WordCounter wordCounter() {
+        final LiveTopWords liveTop = liveTopWords();
+        final ObjLongConsumer<String> listener = liveTop.isEnabled() ? liveTop::offer : null;
+        switch (crawlerConfig.counterType()) {
+            case DICTIONARY:
+                return new DictionaryWordCounter(crawlerConfig.counterStripes(), listener);
+            case STRIPED:
+            default:
+                return new StripedWordCounter(crawlerConfig.counterStripes(), listener);
+        }
+    }
+
+    @Bean
+    public LiveTopWords liveTopWords() {
+        return new LiveTopWords(crawlerConfig.topRating(), crawlerConfig.topLiveIntervalMs());
+    }
+
+    @Bean(name = "visitedUri")
+    public UrlFingerprintSet visitedUri() {
+        return new UrlFingerprintSet(crawlerConfig.visitedCapacity(), crawlerConfig.visitedLoadFactor(),
+                crawlerConfig.visitedGrowthFactor(), crawlerConfig.visitedOffHeap());
+    }
+
+    @Bean
+    public CrawlEngine crawlEngine() {
+        switch (crawlerConfig.crawlEngineType()) {
+            case VIRTUAL:
+                return new VirtualThreadCrawlEngine();
+            case FORK_JOIN:
+            default:
+                return new ForkJoinCrawlEngine();
+        }
+    }
+
+    @Bean
+    public Checkpointer checkpointer() {
+        return new Checkpointer();
+    }
+
+    @Bean
+    public PageCache pageCache() {
+        return new PageCache();
+    }
+
+    @Bean
+    public ArchiveWriter archiveWriter() {
+        return new ArchiveWriter();
+    }
+
+    @Bean
+    public NearDuplicateIndex nearDuplicateIndex() {
+        return new NearDuplicateIndex();
+    }
+
+    @Bean
+    public ClusterNode clusterNode() {
+        return new ClusterNode();
+    }
+
+    @Bean
+    public RatingController ratingController() {
+        return new RatingController();
+    }
+
+    @Bean
+    @Scope(SCOPE_PROTOTYPE)
+    public CrawlerCounter crawlerCounter() {
+        return new CrawlerCounter();
+    }
+}
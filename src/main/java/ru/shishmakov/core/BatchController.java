@@ -0,0 +1,167 @@
+package ru.shishmakov.core;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import ru.shishmakov.config.CrawlerConfig;
+
+import javax.inject.Inject;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.shishmakov.util.Threads.STOP_TIMEOUT_SEC;
+
+/**
+ * Crawl of the sites of the seed file in one JVM: {@code batch.parallelism} sites are crawled at once.
+ * <p>
+ * Every site has its own {@link SiteCrawl context} of the site beans with the visited URLs and the counted words;
+ * the fetcher, the rate limits, the host scheduler and the pools are shared by the parent context. The archive
+ * and the page cache of the site are kept in its own subdirectory of {@code archive.dir} and {@code cache.dir}.
+ */
+public class BatchController {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = BatchController.class.getSimpleName();
+
+    @Inject
+    private ApplicationContext sharedContext;
+    @Inject
+    private CrawlerConfig crawlerConfig;
+
+    /**
+     * Crawl the sites of the seed file; every line is {@code uri depth}, blank lines and lines starting
+     * with {@code #} are skipped; the uri should not be repeated, it names the directory of the site.
+     * <p>
+     * The result of the site is appended to the result file as soon as its crawl is completed: the line of
+     * {@code uri, depth, visited pages, top words} separated by tabs, where every word is {@code word:count};
+     * the failed crawl has {@code -1} visited pages and no words.
+     *
+     * @return number of the completed crawls
+     */
+    public int crawl(Path seedFile, Path resultFile) throws IOException, InterruptedException {
+        SiteCrawl.checkSupported(crawlerConfig);
+        final int parallelism = crawlerConfig.batchParallelism();
+        checkArgument(parallelism > 0, "parallelism should be positive: %s", parallelism);
+        final List<Seed> seeds = readSeeds(seedFile);
+        logger.info("{} started; sites: {}, parallelism: {}", NAME, seeds.size(), parallelism);
+        final StopWatch watch = StopWatch.createStarted();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, BasicThreadFactory.builder()
+                .namingPattern("batch-worker %d")
+                .daemon(true)
+                .build());
+        try (BufferedWriter results = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8)) {
+            final List<Future<Boolean>> crawls = new ArrayList<>(seeds.size());
+            for (Seed seed : seeds) crawls.add(executor.submit(() -> crawl(seed, results)));
+            int completed = 0;
+            for (Future<Boolean> crawl : crawls) {
+                try {
+                    if (crawl.get()) completed++;
+                } catch (ExecutionException e) {
+                    logger.error("{} error of crawl", NAME, e.getCause());
+                }
+            }
+            watch.stop();
+            logger.info("{} is completed; sites: {}, failed: {}, elapsed: {} ms",
+                    NAME, seeds.size(), seeds.size() - completed, watch.getTime());
+            return completed;
+        } finally {
+            MoreExecutors.shutdownAndAwaitTermination(executor, STOP_TIMEOUT_SEC, SECONDS);
+        }
+    }
+
+    private boolean crawl(Seed seed, Writer results) throws IOException {
+        try (SiteCrawl site = new SiteCrawl(sharedContext, seed.name())) {
+            site.start(seed.uri, seed.depth);
+            write(results, seed, site.getVisited(), site.getTopWords(crawlerConfig.topRating()));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write(results, seed, -1, new ArrayList<>());
+            return false;
+        } catch (Exception e) {
+            logger.error("{} error on crawl of site: {}", NAME, seed, e);
+            write(results, seed, -1, new ArrayList<>());
+            return false;
+        }
+    }
+
+    private static void write(Writer results, Seed seed, int visited, List<Word> top) throws IOException {
+        final StringBuilder line = new StringBuilder(seed.uri).append('\t').append(seed.depth)
+                .append('\t').append(visited).append('\t');
+        for (int i = 0; i < top.size(); i++) {
+            if (i > 0) line.append(' ');
+            line.append(top.get(i).getWord()).append(':').append(top.get(i).getQuantity());
+        }
+        line.append('\n');
+        synchronized (results) {
+            results.write(line.toString());
+            results.flush();
+        }
+    }
+
+    static List<Seed> readSeeds(Path seedFile) throws IOException {
+        final List<Seed> seeds = new ArrayList<>();
+        final Set<String> uris = new HashSet<>();
+        final List<String> lines = Files.readAllLines(seedFile, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            final String[] fields = line.split("\\s+");
+            checkArgument(fields.length == 2, "line %s should be 'uri depth': %s", i + 1, line);
+            checkArgument(uris.add(fields[0]), "line %s should not repeat the uri: %s", i + 1, line);
+            seeds.add(new Seed(fields[0], Integer.parseInt(fields[1])));
+        }
+        return seeds;
+    }
+
+    static final class Seed {
+        private final String uri;
+        private final int depth;
+
+        Seed(String uri, int depth) {
+            this.uri = uri;
+            this.depth = depth;
+        }
+
+        /**
+         * The name does not depend on the line of the seed, so the next batch finds the archive and the page cache
+         * of the site in the same directory.
+         *
+         * @return name of the directory of the site, e.g. {@code example.com-5d41402a}
+         */
+        String name() {
+            final String host = Objects.toString(URI.create(uri).getHost(), "site");
+            return host.replaceAll("[^A-Za-z0-9.-]", "_") + '-' + Hashing.murmur3_32().hashString(uri, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("uri", uri)
+                    .add("depth", depth)
+                    .toString();
+        }
+    }
+}
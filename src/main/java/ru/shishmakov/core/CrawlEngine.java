@@ -0,0 +1,32 @@
+package ru.shishmakov.core;
+
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.frontier.FrontierItem;
+import ru.shishmakov.frontier.UrlFrontier;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Drives the crawl: takes items from the frontier, fetches their pages with the politeness of
+ * the host scheduler and runs the tasks those parse the pages and complete the items
+ */
+public interface CrawlEngine {
+
+    /**
+     * Crawl until the frontier is drained
+     *
+     * @param tasks builds the task of the fetched page or of the failed request
+     * @throws InterruptedException if the crawl is interrupted; items without the task stay uncompleted
+     */
+    void crawl(UrlFrontier frontier, TaskFactory tasks) throws InterruptedException;
+
+    @FunctionalInterface
+    interface TaskFactory {
+
+        /**
+         * @param page  fetched content or {@code null} if the request is failed
+         * @param error cause of the failed request
+         */
+        ForkJoinTask<?> build(FrontierItem item, Page page, Throwable error);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.shishmakov.core;
+
+/**
+ * Implementations of {@link CrawlEngine} selectable by configuration
+ */
+public enum CrawlEngineType {
+    /**
+     * Asynchronous fetches on the pool of the fetcher, parsing on the fork-join pool: {@link ForkJoinCrawlEngine}
+     */
+    FORK_JOIN,
+    /**
+     * One virtual thread per page for the blocking fetch and the parsing: {@link VirtualThreadCrawlEngine}
+     */
+    VIRTUAL
+}
@@ -0,0 +1,145 @@
+package ru.shishmakov.core;
+
+import com.google.common.base.MoreObjects;
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Crawl job of the {@link DaemonController}: the counted words of the site are kept after the crawl
+ * until the job is released
+ */
+class CrawlJob {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED;
+
+        boolean isFinished() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+
+    private final int id;
+    private final String uri;
+    private final int depth;
+    private final StopWatch watch = new StopWatch();
+    private volatile State state = State.QUEUED;
+    private volatile SiteCrawl site;
+    private volatile String error;
+
+    CrawlJob(int id, String uri, int depth) {
+        this.id = id;
+        this.uri = uri;
+        this.depth = depth;
+    }
+
+    void run(ApplicationContext sharedContext) {
+        watch.start();
+        state = State.RUNNING;
+        try {
+            site = new SiteCrawl(sharedContext, name());
+            site.start(uri, depth);
+            state = State.COMPLETED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail("interrupted");
+        } catch (Exception e) {
+            logger.error("Error on crawl of job: {}", this, e);
+            fail(String.valueOf(e.getMessage()));
+        } finally {
+            watch.stop();
+        }
+    }
+
+    /**
+     * Release the counted words of the job
+     */
+    void close() {
+        final SiteCrawl current = site;
+        site = null;
+        if (current != null) current.close();
+    }
+
+    String name() {
+        return name(uri);
+    }
+
+    /**
+     * The jobs of the same host share the directory, so the next job finds the page cache of the previous one
+     *
+     * @return name of the directory of the site, e.g. {@code example.com} or {@code example.com_8080}
+     */
+    static String name(String uri) {
+        final URI site = URI.create(uri);
+        final String host = Objects.toString(site.getHost(), "site") + (site.getPort() < 0 ? "" : ":" + site.getPort());
+        return host.replaceAll("[^A-Za-z0-9.-]", "_");
+    }
+
+    int getId() {
+        return id;
+    }
+
+    String getUri() {
+        return uri;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    long getElapsedMs() {
+        return watch.getTime();
+    }
+
+    int getVisited() {
+        final SiteCrawl current = site;
+        return current == null ? 0 : current.getVisited();
+    }
+
+    int getDistinctWords() {
+        final SiteCrawl current = site;
+        return current == null ? 0 : current.getDistinctWords();
+    }
+
+    long count(String word) {
+        final SiteCrawl current = site;
+        return current == null ? 0 : current.count(word);
+    }
+
+    List<Word> getTopWords(int limit) {
+        final SiteCrawl current = site;
+        return current == null ? new ArrayList<>() : current.getTopWords(limit);
+    }
+
+    private void fail(String message) {
+        error = message;
+        state = State.FAILED;
+        close();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("uri", uri)
+                .add("depth", depth)
+                .add("state", state)
+                .toString();
+    }
+}
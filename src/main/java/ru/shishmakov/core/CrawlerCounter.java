@@ -3,13 +3,23 @@ package ru.shishmakov.core;
 import com.google.common.base.MoreObjects;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
-import org.apache.commons.lang3.tuple.Pair;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.archive.ArchiveWriter;
+import ru.shishmakov.checkpoint.Checkpointer;
+import ru.shishmakov.cluster.ClusterNode;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.dedup.NearDuplicateIndex;
+import ru.shishmakov.fetch.ContentFilter;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.fetch.RejectedContentException;
+import ru.shishmakov.frontier.FrontierItem;
+import ru.shishmakov.frontier.UrlFrontier;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.metrics.Phase;
+import ru.shishmakov.recrawl.PageCache;
 import ru.shishmakov.util.CrawlerUtil;
 
 import javax.inject.Inject;
@@ -17,66 +27,75 @@ import java.lang.invoke.MethodHandles;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
-import static org.apache.commons.lang3.StringUtils.lowerCase;
 
 /**
- * Parse content and fork tasks for next URLs
+ * Parse the fetched page, count its words and offer the next URLs to the frontier
  *
  * @author <a href="mailto:d.shishmakov@corp.nekki.ru">Shishmakov Dmitriy</a>
  */
-public abstract class CrawlerCounter extends RecursiveAction {
+public class CrawlerCounter extends RecursiveAction {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     private static final AtomicInteger generator = new AtomicInteger(1);
     private static final String NAME = CrawlerCounter.class.getSimpleName();
     private final int number = generator.getAndIncrement();
     @Inject
-    private Set<String> visitedUri;
-    @Inject
-    private ConcurrentMap<String, Long> wordCounter;
+    private WordCounter wordCounter;
     @Inject
-    private RateAccessController accessController;
+    private PageParser pageParser;
     @Inject
     private CrawlerUtil crawlerUtil;
     @Inject
-    private CrawlerConfig crawlerConfig;
+    private CrawlMetrics crawlMetrics;
+    @Inject
+    private Checkpointer checkpointer;
+    @Inject
+    private PageCache pageCache;
+    @Inject
+    private ArchiveWriter archiveWriter;
+    @Inject
+    private ContentFilter contentFilter;
+    @Inject
+    private NearDuplicateIndex nearDuplicateIndex;
+    @Inject
+    private ClusterNode clusterNode;
 
 
-    private String baseUri;
-    private String uri;
-    private int depth;
+    private UrlFrontier frontier;
+    private FrontierItem item;
+    private String seedHost;
+    private Page page;
+    private Throwable error;
 
-    public void setUri(String uri) {
-        this.uri = uri;
+    public void setFrontier(UrlFrontier frontier) {
+        this.frontier = frontier;
     }
 
-    public void setBaseUri(String baseUri) {
-        this.baseUri = baseUri;
+    public void setItem(FrontierItem item) {
+        this.item = item;
     }
 
-    public void setDepth(int depth) {
-        this.depth = depth;
+    public void setSeedHost(String seedHost) {
+        this.seedHost = seedHost;
     }
 
     /**
-     * Create next task for async processing new URL
-     *
-     * @return prototype object {@link CrawlerCounter}
+     * @param page  fetched content or {@code null} if the request is failed
+     * @param error cause of the failed request
      */
-    public abstract CrawlerCounter forkTask();
+    public void setResult(Page page, Throwable error) {
+        this.page = page;
+        this.error = error;
+    }
 
     /**
      * <pre>
@@ -94,16 +113,36 @@ public abstract class CrawlerCounter extends RecursiveAction {
      *    }
      * }
      * </pre>
+     * The loop itself is driven by {@link RatingController} on top of {@link UrlFrontier}; the task covers
+     * the single page after its content is fetched.
      */
     @Override
     protected void compute() {
         final StopWatch watch = StopWatch.createStarted();
-        logger.info("{}: {} starting task [uri: {}, depth: {}] ...", NAME, number, uri, depth);
+        logger.info("{}: {} starting task [uri: {}, level: {}] ...", NAME, number, item.getUri(), item.getLevel());
+        final WordHistogram histogram = new WordHistogram();
+        final List<String> links = new ArrayList<>();
         try {
-            parseLink();
-        } catch (Exception e) {
-            logger.error("{}: {} error request on uri: {}", NAME, number, uri, e);
+            if (error != null) throw error;
+            final boolean replayed = pageCache.replay(item.getUri(), page, histogram, links);
+            if (!replayed) pageParser.parse(item.getUri(), page, histogram, links);
+            archiveWriter.append(item.getUri(), page, replayed);
+            pageCache.put(item.getUri(), page, histogram, links);
+            crawlMetrics.add(Counter.LINKS_DISCOVERED, links.size());
+            if (nearDuplicateIndex.isDuplicate(item.getUri(), histogram)) {
+                histogram.clear();
+                if (nearDuplicateIndex.isSkipLinks()) links.clear();
+            }
+        } catch (RejectedContentException e) {
+            logger.info("{}: {} rejected uri: {}; {}", NAME, number, item.getUri(), e.getMessage());
+            histogram.clear();
+            links.clear();
+        } catch (Throwable e) {
+            logger.error("{}: {} error request on uri: {}", NAME, number, item.getUri(), e);
+            histogram.clear();
+            links.clear();
         }
+        commit(histogram, links);
         watch.stop();
         logger.info("{}: {} end; elapsed: {} ms", NAME, number, watch.getTime());
     }
@@ -112,83 +151,72 @@ public abstract class CrawlerCounter extends RecursiveAction {
     public String toString() {
         return MoreObjects.toStringHelper(this)
                 .add("number", number)
-                .add("baseUri", baseUri)
-                .add("uri", uri)
-                .add("depth", depth)
+                .add("item", item)
                 .toString();
     }
 
-    private void parseLink() throws Exception {
-        Callable<Document> task = buildRequestTask();
-        Document doc = accessController.acquireAccess(task);
-        countElementWords(doc.body());
-        if (visitedUri.isEmpty()) visitedUri.add(crawlerUtil.simplifyUri(uri)); // root of requests
-
-        if (depth - 1 > 0) {
-            tryParseNextLinks(crawlerUtil.getStreamHrefLinks(doc));
+    /**
+     * Apply the parsed page to the counters and the frontier as the single step of the checkpoint
+     */
+    private void commit(WordHistogram histogram, List<String> links) {
+        final Lock lock = checkpointer.commitLock();
+        lock.lock();
+        try {
+            if (!histogram.isEmpty()) {
+                final long countStart = System.nanoTime();
+                wordCounter.addAll(histogram);
+                clusterNode.count(histogram);
+                crawlMetrics.latency(Phase.COUNT).recordSince(countStart);
+            }
+            final List<FrontierItem> claimed = claimNextLinks(links);
+            checkpointer.complete(item, histogram, claimed);
+            claimed.forEach(frontier::enqueue);
+        } catch (RuntimeException e) {
+            logger.error("{}: {} error commit uri: {}", NAME, number, item.getUri(), e);
+        } finally {
+            frontier.complete(item);
+            lock.unlock();
         }
     }
 
-    private void countElementWords(Element element) {
-        if (Objects.isNull(element)) {
-            logger.warn("{}: {} skips uri: {}; site has no element", NAME, number, uri);
-            return;
+    /**
+     * @return links claimed in the frontier but not enqueued yet
+     */
+    private List<FrontierItem> claimNextLinks(List<String> links) {
+        if (item.getLevel() >= frontier.getMaxLevel()) {
+            crawlMetrics.add(Counter.LINKS_FILTERED, links.size());
+            return Collections.emptyList();
         }
-        List<String> textList = crawlerUtil.getText(element);
-        textList.forEach(t -> wordCounter.merge(lowerCase(t), 1L, (old, inc) -> old + inc));
-    }
-
-    private void tryParseNextLinks(Stream<String> links) {
-        final List<CrawlerCounter> nextCrawlers = links
-                .map(uri -> Pair.of(uri, crawlerUtil.simplifyUri(uri)))
-                .filter(isLegalBaseHost())
+        final int nextLevel = item.getLevel() + 1;
+        final List<FrontierItem> claimed = links.stream()
+                .map(StringUtils::trimToNull)
+                .filter(Objects::nonNull)
                 .filter(isNotEmail())
-                .filter(isNotVisitedUri())
-                .map(p -> {
+                .filter(isLegalBaseHost())
+                .filter(contentFilter::isFetchable)
+                .map(uri -> {
                     try {
-                        URI obj = new URI(p.getKey());
-                        CrawlerCounter nextCrawler = forkTask();
-                        nextCrawler.setUri(obj.normalize().toString());
-                        nextCrawler.setBaseUri(crawlerUtil.getBaseUri(obj));
-                        nextCrawler.setDepth(depth - 1);
-                        return nextCrawler;
+                        return frontier.claim(new URI(uri).normalize().toString(), crawlerUtil.simplifyUri(uri), nextLevel);
                     } catch (URISyntaxException e) {
-                        logger.error("{}: {} error define new task with uri: {}", NAME, number, p.getKey());
+                        logger.error("{}: {} error define new task with uri: {}", NAME, number, uri);
+                        return null;
                     }
-                    return null;
                 })
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
-        invokeAll(nextCrawlers);
-    }
-
-    private Callable<Document> buildRequestTask() {
-        return () -> {
-            URL url = new URL(uri);
-            Document doc = Jsoup.parse(url, crawlerConfig.requestTimeoutMs());
-            doc.setBaseUri(baseUri);
-            return doc;
-        };
-    }
-
-    private Predicate<Pair<String, String>> isNotVisitedUri() {
-        return p -> {
-            if (visitedUri.contains(p.getValue())) return false;
-            else {
-                visitedUri.add(p.getValue());
-                return true;
-            }
-        };
+        crawlMetrics.add(Counter.LINKS_ENQUEUED, claimed.size());
+        crawlMetrics.add(Counter.LINKS_FILTERED, links.size() - claimed.size());
+        return claimed;
     }
 
-    private Predicate<Pair<String, String>> isNotEmail() {
-        return p -> !StringUtils.contains(p.getKey(), '@');
+    private Predicate<String> isNotEmail() {
+        return uri -> !StringUtils.contains(uri, '@');
     }
 
-    private Predicate<Pair<String, String>> isLegalBaseHost() {
-        return p -> {
+    private Predicate<String> isLegalBaseHost() {
+        return uri -> {
             try {
-                return equalsIgnoreCase(new URL(baseUri).getHost(), new URL(p.getKey()).getHost());
+                return crawlerUtil.isLegalHost(seedHost, CrawlerUtil.toUrl(uri).getHost());
             } catch (MalformedURLException e) {
                 logger.error("Error on define host of uri", e);
                 return false;
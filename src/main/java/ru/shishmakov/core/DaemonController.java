@@ -0,0 +1,291 @@
+package ru.shishmakov.core;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.text.TermNormalizer;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.shishmakov.util.Threads.STOP_TIMEOUT_SEC;
+
+/**
+ * Long-running crawl service with the HTTP job API. The shared context stays warm between the jobs, every job
+ * crawls the site by its own {@link SiteCrawl context}; {@code batch.parallelism} jobs are crawled at once.
+ * <ul>
+ * <li>{@code POST /jobs?uri=&depth=} submits the job</li>
+ * <li>{@code GET /jobs} and {@code GET /jobs/{id}} report the progress of the jobs</li>
+ * <li>{@code GET /jobs/{id}/top?count=} returns the top words counted so far</li>
+ * <li>{@code GET /jobs/{id}/words/{word}} returns the frequency of the word counted so far</li>
+ * <li>{@code DELETE /jobs/{id}} releases the counted words of the finished job</li>
+ * </ul>
+ * The counted words of the last {@code daemon.retainedJobs} finished jobs are kept for the queries. The jobs of
+ * the same site share its directories of the archive, the page cache and the export, so the job is rejected while
+ * the other job of the site is not finished.
+ */
+public class DaemonController {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = DaemonController.class.getSimpleName();
+    private static final String JOBS = "/jobs";
+    private static final int HTTP_THREADS = 4;
+
+    private final NavigableMap<Integer, CrawlJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicInteger jobIds = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    @Inject
+    private ApplicationContext sharedContext;
+    @Inject
+    private CrawlerConfig crawlerConfig;
+    @Inject
+    private TermNormalizer termNormalizer;
+
+    private HttpServer server;
+    private ExecutorService httpExecutor;
+    private ExecutorService jobExecutor;
+
+    /**
+     * @return address of the HTTP server
+     */
+    public InetSocketAddress start() throws IOException {
+        checkState(started.compareAndSet(false, true), "%s is already started", NAME);
+        SiteCrawl.checkSupported(crawlerConfig);
+        final int parallelism = crawlerConfig.batchParallelism();
+        checkArgument(parallelism > 0, "parallelism should be positive: %s", parallelism);
+        jobExecutor = Executors.newFixedThreadPool(parallelism, BasicThreadFactory.builder()
+                .namingPattern("daemon-job %d")
+                .daemon(true)
+                .build());
+        httpExecutor = Executors.newFixedThreadPool(HTTP_THREADS, BasicThreadFactory.builder()
+                .namingPattern("daemon-http %d")
+                .daemon(true)
+                .build());
+        server = HttpServer.create(new InetSocketAddress(crawlerConfig.daemonHost(), crawlerConfig.daemonPort()), 0);
+        server.createContext(JOBS, this::handle);
+        server.setExecutor(httpExecutor);
+        server.start();
+        logger.info("{} started on: {}, parallelism: {}", NAME, server.getAddress(), parallelism);
+        return server.getAddress();
+    }
+
+    /**
+     * Wait until the daemon is stopped
+     */
+    public void await() throws InterruptedException {
+        stopped.await();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!started.get() || stopped.getCount() == 0) return;
+        synchronized (stopped) {
+            if (stopped.getCount() == 0) return;
+            logger.info("{} stopping...", NAME);
+            server.stop(0);
+            MoreExecutors.shutdownAndAwaitTermination(httpExecutor, STOP_TIMEOUT_SEC, SECONDS);
+            MoreExecutors.shutdownAndAwaitTermination(jobExecutor, STOP_TIMEOUT_SEC, SECONDS);
+            jobs.values().forEach(CrawlJob::close);
+            jobs.clear();
+            stopped.countDown();
+            logger.info("{} stopped", NAME);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final String method = exchange.getRequestMethod();
+            final String[] path = StringUtils.split(exchange.getRequestURI().getPath(), '/');
+            if (path.length == 1 && "POST".equals(method)) {
+                final CrawlJob job = submit(params(exchange));
+                exchange.getResponseHeaders().set("Location", JOBS + '/' + job.getId());
+                respond(exchange, 201, status(job));
+            } else if (path.length == 1 && "GET".equals(method)) {
+                final StringBuilder body = new StringBuilder("[");
+                for (CrawlJob job : jobs.values()) body.append(body.length() > 1 ? "," : "").append(status(job));
+                respond(exchange, 200, body.append(']').toString());
+            } else if (path.length == 2 && "GET".equals(method)) {
+                respond(exchange, 200, status(job(path[1])));
+            } else if (path.length == 2 && "DELETE".equals(method)) {
+                release(job(path[1]));
+                respond(exchange, 204, null);
+            } else if (path.length == 3 && "top".equals(path[2]) && "GET".equals(method)) {
+                final String count = params(exchange).get("count");
+                final int limit = count == null ? crawlerConfig.topRating() : Integer.parseInt(count);
+                checkArgument(limit > 0, "count should be positive: %s", limit);
+                respond(exchange, 200, words(job(path[1]).getTopWords(limit)));
+            } else if (path.length == 4 && "words".equals(path[2]) && "GET".equals(method)) {
+                final String word = termNormalizer.normalize(path[3]);
+                respond(exchange, 200, "{\"word\":" + quote(word) + ",\"count\":" + job(path[1]).count(word) + '}');
+            } else {
+                respond(exchange, 404, error("unknown resource: " + method + ' ' + exchange.getRequestURI()));
+            }
+        } catch (NoSuchElementException e) {
+            respond(exchange, 404, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            respond(exchange, 409, error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("{} error on request: {}", NAME, exchange.getRequestURI(), e);
+            respond(exchange, 500, error(String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private CrawlJob submit(Map<String, String> params) {
+        final String uri = StringUtils.trimToEmpty(params.get("uri"));
+        checkArgument(StringUtils.isNotBlank(uri), "uri is required");
+        URI.create(uri);
+        final int depth = Integer.parseInt(Objects.toString(params.get("depth"), "1"));
+        checkArgument(depth > 0, "depth should be positive: %s", depth);
+        final CrawlJob job;
+        synchronized (jobs) {
+            final CrawlJob other = active(uri);
+            checkState(other == null, "site is crawled by the unfinished job: %s", other);
+            job = new CrawlJob(jobIds.incrementAndGet(), uri, depth);
+            jobs.put(job.getId(), job);
+        }
+        jobExecutor.execute(() -> {
+            job.run(sharedContext);
+            logger.info("{} job is finished: {}, elapsed: {} ms", NAME, job, job.getElapsedMs());
+            evictFinished();
+        });
+        logger.info("{} job is submitted: {}", NAME, job);
+        return job;
+    }
+
+    /**
+     * @return queued or running job of the site of the URI; the jobs of the site share its directories
+     */
+    private CrawlJob active(String uri) {
+        final String name = CrawlJob.name(uri);
+        for (CrawlJob job : jobs.values()) {
+            if (!job.getState().isFinished() && name.equals(job.name())) return job;
+        }
+        return null;
+    }
+
+    private void release(CrawlJob job) {
+        checkState(job.getState().isFinished(), "job %s is not finished", job.getId());
+        if (jobs.remove(job.getId(), job)) job.close();
+    }
+
+    /**
+     * Release the oldest finished jobs over the retained ones
+     */
+    private void evictFinished() {
+        int finished = 0;
+        for (CrawlJob job : jobs.descendingMap().values()) {
+            if (job.getState().isFinished() && ++finished > crawlerConfig.daemonRetainedJobs()) {
+                if (jobs.remove(job.getId(), job)) job.close();
+            }
+        }
+    }
+
+    private CrawlJob job(String id) {
+        final CrawlJob job = jobs.get(Integer.parseInt(id));
+        if (job == null) throw new NoSuchElementException("unknown job: " + id);
+        return job;
+    }
+
+    private static String status(CrawlJob job) {
+        return "{\"id\":" + job.getId() +
+                ",\"uri\":" + quote(job.getUri()) +
+                ",\"depth\":" + job.getDepth() +
+                ",\"state\":" + quote(job.getState().name()) +
+                ",\"visited\":" + job.getVisited() +
+                ",\"words\":" + job.getDistinctWords() +
+                ",\"elapsed\":" + job.getElapsedMs() +
+                ",\"error\":" + quote(job.getError()) + '}';
+    }
+
+    private static String words(List<Word> top) {
+        final StringBuilder body = new StringBuilder("[");
+        for (Word word : top) {
+            if (body.length() > 1) body.append(',');
+            body.append("{\"word\":").append(quote(word.getWord()))
+                    .append(",\"count\":").append(word.getQuantity()).append('}');
+        }
+        return body.append(']').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + '}';
+    }
+
+    private static String quote(String value) {
+        if (value == null) return "null";
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * @return parameters of the query and the form body
+     */
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        final Map<String, String> params = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), params);
+        parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), params);
+        return params;
+    }
+
+    private static void parse(String form, Map<String, String> params) {
+        for (String pair : StringUtils.split(StringUtils.defaultString(form), '&')) {
+            final int eq = pair.indexOf('=');
+            final String key = eq < 0 ? pair : pair.substring(0, eq);
+            final String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.shishmakov.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.fetch.Fetcher;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.frontier.FrontierItem;
+import ru.shishmakov.frontier.UrlFrontier;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.recrawl.PageCache;
+import ru.shishmakov.schedule.HostScheduler;
+
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link CrawlEngine} of asynchronous fetches: the fetcher loads pages on its own pool, the shared fork-join pool
+ * parses the fetched pages only, so its workers never block on I/O
+ */
+public class ForkJoinCrawlEngine implements CrawlEngine {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    @Inject
+    private HostScheduler hostScheduler;
+    @Inject
+    private Fetcher fetcher;
+    @Inject
+    private PageCache pageCache;
+    @Inject
+    private CrawlMetrics crawlMetrics;
+    @Inject
+    private ForkJoinPool parsePool;
+
+    @Override
+    public void crawl(UrlFrontier frontier, TaskFactory tasks) throws InterruptedException {
+        // the frontier is finished only after every task has completed its item
+        FrontierItem item;
+        while ((item = frontier.take()) != null) {
+            final FrontierItem next = item;
+            try {
+                hostScheduler.schedule(next.getUri(), () -> fetch(next.getUri()))
+                        .whenComplete((page, error) -> parsePool.execute(tasks.build(next, page, error)));
+            } catch (RuntimeException e) {
+                logger.error("Error on schedule uri: {}", next.getUri(), e);
+                parsePool.execute(tasks.build(next, null, e));
+            }
+        }
+    }
+
+    private CompletableFuture<Page> fetch(String uri) {
+        final long start = System.nanoTime();
+        return fetcher.fetch(pageCache.request(uri))
+                .whenComplete((page, error) -> crawlMetrics.recordFetch(start, page, error));
+    }
+}
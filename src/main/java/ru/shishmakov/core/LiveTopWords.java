@@ -0,0 +1,156 @@
+package ru.shishmakov.core;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.shishmakov.util.Threads.STOP_TIMEOUT_SEC;
+
+/**
+ * Top words maintained while the crawl is running.
+ * <p>
+ * The counter offers the new count of every updated word. Counts only grow, so the bounded ranking stays exact:
+ * the word enters it as soon as its count beats the last member. Once the ranking is full the count of its last
+ * member is the threshold, and the offers below it return by one volatile read without the lock; until then
+ * every word is the member.
+ * The snapshot of the ranking is published every {@code top.liveInterval} ms of the crawl without any scan
+ * of the counter.
+ */
+public class LiveTopWords {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final int limit;
+    private final long intervalMs;
+    private final Object lock = new Object();
+    private final TreeSet<Word> ranking = new TreeSet<>();
+    private final Map<String, Word> members = new HashMap<>();
+    private volatile long threshold;
+    private volatile List<Word> snapshot = Collections.emptyList();
+    private long version;
+    private long publishedVersion;
+    private ScheduledExecutorService publisher;
+
+    /**
+     * @param limit      max size of the ranking
+     * @param intervalMs interval of the snapshots; {@code 0} disables the ranking
+     */
+    public LiveTopWords(int limit, long intervalMs) {
+        checkArgument(limit >= 0, "limit should be not negative: %s", limit);
+        checkArgument(intervalMs >= 0, "interval should be not negative: %s", intervalMs);
+        this.limit = limit;
+        this.intervalMs = intervalMs;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isEnabled() {
+        return intervalMs > 0 && limit > 0;
+    }
+
+    /**
+     * Offer the new count of the word; the counts of the same word are expected in order
+     */
+    public void offer(String word, long count) {
+        if (count < threshold) return;
+        synchronized (lock) {
+            final Word current = members.get(word);
+            if (current != null && current.getQuantity() >= count) return;
+            final Word candidate = new Word(word, count);
+            if (current != null) {
+                ranking.remove(current);
+            } else if (members.size() >= limit) {
+                final Word last = ranking.last();
+                if (candidate.compareTo(last) >= 0) return;
+                ranking.pollLast();
+                members.remove(last.getWord());
+            }
+            ranking.add(candidate);
+            members.put(word, candidate);
+            if (members.size() >= limit) threshold = ranking.last().getQuantity();
+            version++;
+        }
+    }
+
+    /**
+     * @return the current ranking in descending order
+     */
+    public List<Word> current() {
+        synchronized (lock) {
+            return new ArrayList<>(ranking);
+        }
+    }
+
+    /**
+     * @return the last published ranking in descending order
+     */
+    public List<Word> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Start to publish the snapshots
+     */
+    public void start() {
+        if (!isEnabled()) return;
+        synchronized (lock) {
+            if (publisher != null) return;
+            publisher = new ScheduledThreadPoolExecutor(1, BasicThreadFactory.builder()
+                    .namingPattern("live-top %d")
+                    .daemon(true)
+                    .build());
+            publisher.scheduleWithFixedDelay(() -> publish(true), intervalMs, intervalMs, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop to publish and publish the final snapshot
+     */
+    public void stop() {
+        final ScheduledExecutorService current;
+        synchronized (lock) {
+            current = publisher;
+            publisher = null;
+        }
+        if (current == null) return;
+        MoreExecutors.shutdownAndAwaitTermination(current, STOP_TIMEOUT_SEC, SECONDS);
+        // the final top words are printed by the crawl
+        publish(false);
+    }
+
+    private void publish(boolean print) {
+        final List<Word> top;
+        synchronized (lock) {
+            if (version == publishedVersion) return;
+            publishedVersion = version;
+            top = Collections.unmodifiableList(new ArrayList<>(ranking));
+        }
+        snapshot = top;
+        if (print) logger.info("Live TOP {}, size: {}\n{}", limit, top.size(), top);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("limit", limit)
+                .add("intervalMs", intervalMs)
+                .add("threshold", threshold)
+                .toString();
+    }
+}
@@ -0,0 +1,66 @@
+package ru.shishmakov.core;
+
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.metrics.Phase;
+import ru.shishmakov.parse.ContentExtractor;
+import ru.shishmakov.parse.PageHandler;
+import ru.shishmakov.text.TermNormalizer;
+import ru.shishmakov.text.TokenConsumer;
+import ru.shishmakov.text.WordTokenizer;
+import ru.shishmakov.util.CrawlerUtil;
+
+import javax.inject.Inject;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Extract words and links of the page; it is shared by the crawl and the replay of the archive
+ */
+public class PageParser {
+
+    @Inject
+    private ContentExtractor contentExtractor;
+    @Inject
+    private WordTokenizer wordTokenizer;
+    @Inject
+    private TermNormalizer termNormalizer;
+    @Inject
+    private CrawlerUtil crawlerUtil;
+    @Inject
+    private CrawlMetrics crawlMetrics;
+
+    /**
+     * @param uri       URI of the request; relative links are resolved against it
+     * @param histogram words of the page normalized by {@link TermNormalizer}
+     * @param links     absolute links of the page as is
+     */
+    public void parse(String uri, Page page, WordHistogram histogram, List<String> links) throws Exception {
+        final String baseUri = crawlerUtil.getBaseUri(new URI(uri));
+        final long[] tokenizeNanos = new long[1];
+        final long parseStart = System.nanoTime();
+        contentExtractor.extract(page, baseUri, new PageHandler() {
+            private final TokenConsumer counter = buildTokenCounter(histogram);
+
+            @Override
+            public void text(CharSequence text) {
+                final long start = System.nanoTime();
+                wordTokenizer.tokenize(text, counter);
+                tokenizeNanos[0] += System.nanoTime() - start;
+            }
+
+            @Override
+            public void link(String link) {
+                links.add(link);
+            }
+        });
+        crawlMetrics.latency(Phase.PARSE).record(System.nanoTime() - parseStart - tokenizeNanos[0]);
+        crawlMetrics.latency(Phase.TOKENIZE).record(tokenizeNanos[0]);
+    }
+
+    private TokenConsumer buildTokenCounter(WordHistogram histogram) {
+        final TokenConsumer adder = (buffer, offset, length) -> histogram.add(buffer, offset, length, 1L);
+        return (buffer, offset, length) -> termNormalizer.normalize(buffer, offset, length, adder);
+    }
+}
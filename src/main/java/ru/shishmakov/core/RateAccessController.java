@@ -21,7 +21,7 @@ import static ru.shishmakov.util.Threads.sleepInterrupted;
 /**
  * @author Dmitriy Shishmakov on 10.05.17
  */
-public class RateAccessController {
+public class RateAccessController implements RateLimiter {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     private static final int DEFAULT_RING_CAPACITY = 60;
@@ -40,7 +40,7 @@ public class RateAccessController {
     public void setUp() {
         logger.info("{} starting ...", NAME);
         this.executor = buildExecutorService();
-        this.ring = buildRingSemaphores(crawlerConfig.requestPerSecond());
+        this.ring = buildRingSemaphores(permitsPerSecond());
         executor.execute(() -> {
             logger.info("{} started", Thread.currentThread().getName());
             try {
@@ -72,11 +72,17 @@ public class RateAccessController {
         }
     }
 
-    public <T> T acquireAccess(Callable<T> task) throws Exception {
-        while (!acquire()) {
+    @Override
+    public void acquire() {
+        while (!tryAcquireBlock()) {
             // wait acquire
             logger.trace("Thread: {} is waiting to acquire the monitor", Thread.currentThread().getName());
         }
+    }
+
+    @Override
+    public <T> T acquireAccess(Callable<T> task) throws Exception {
+        acquire();
         logger.debug("Thread: {} run task on {} sec",
                 Thread.currentThread().getName(), System.currentTimeMillis() / 1000);
         return task.call();
@@ -92,11 +98,11 @@ public class RateAccessController {
         for (int block = right; block != left; block = (block + 1) % ring.length/*nextBlock*/) {
             Semaphore semaphore = ring[block];
             semaphore.drainPermits();
-            semaphore.release(crawlerConfig.requestPerSecond());
+            semaphore.release(permitsPerSecond());
         }
     }
 
-    private boolean acquire() {
+    private boolean tryAcquireBlock() {
         int block = defineCurrentBlock();
         try {
             if (ring[block].tryAcquire(defineWaitTimeout(), MILLISECONDS)) {
@@ -115,7 +121,14 @@ public class RateAccessController {
     }
 
     private long defineWaitTimeout() {
-        return 1000 / crawlerConfig.requestPerSecond();
+        return 1000 / permitsPerSecond();
+    }
+
+    /**
+     * Semaphores of the ring could not express fractional rates
+     */
+    private int permitsPerSecond() {
+        return Math.max(1, (int) crawlerConfig.requestPerSecond());
     }
 
     private void shutdownWebAccessor() {
@@ -133,7 +146,7 @@ public class RateAccessController {
     }
 
     private static ExecutorService buildExecutorService() {
-        return Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+        return Executors.newSingleThreadExecutor(BasicThreadFactory.builder()
                 .namingPattern("access-worker %d")
                 .build());
     }
@@ -0,0 +1,26 @@
+package ru.shishmakov.core;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Limits the rate of requests to the crawled site
+ */
+public interface RateLimiter {
+
+    /**
+     * Block the current thread until the next permit is available
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void acquire() throws InterruptedException;
+
+    /**
+     * Acquire a permit and run the task
+     *
+     * @return result of the task
+     */
+    default <T> T acquireAccess(Callable<T> task) throws Exception {
+        acquire();
+        return task.call();
+    }
+}
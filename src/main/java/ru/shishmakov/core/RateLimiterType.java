@@ -0,0 +1,15 @@
+package ru.shishmakov.core;
+
+/**
+ * Implementations of {@link RateLimiter} selectable by configuration
+ */
+public enum RateLimiterType {
+    /**
+     * Ring of semaphores refilled by the background thread: {@link RateAccessController}
+     */
+    RING,
+    /**
+     * Lock-free generic cell rate algorithm: {@link TokenBucketRateLimiter}
+     */
+    TOKEN_BUCKET
+}
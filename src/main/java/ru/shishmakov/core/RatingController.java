@@ -1,23 +1,43 @@
 package ru.shishmakov.core;
 
-import com.google.common.collect.MinMaxPriorityQueue;
-import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.shishmakov.archive.ArchiveReader;
+import ru.shishmakov.archive.ArchiveRecord;
+import ru.shishmakov.archive.ArchiveWriter;
+import ru.shishmakov.checkpoint.Checkpoint;
+import ru.shishmakov.checkpoint.Checkpointer;
+import ru.shishmakov.cluster.ClusterNode;
 import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.dedup.NearDuplicateIndex;
+import ru.shishmakov.export.FrequencyTableWriter;
+import ru.shishmakov.frontier.FrontierItem;
+import ru.shishmakov.frontier.UrlFingerprintSet;
+import ru.shishmakov.frontier.UrlFrontier;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.metrics.Phase;
+import ru.shishmakov.recrawl.PageCache;
 import ru.shishmakov.util.CrawlerUtil;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.TreeSet;
-import java.util.concurrent.ConcurrentMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
-
+import static com.google.common.base.Preconditions.checkState;
 /**
  * @author <a href="mailto:d.shishmakov@corp.nekki.ru">Shishmakov Dmitriy</a>
  */
@@ -25,46 +45,194 @@ public class RatingController {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     @Inject
-    private CrawlerCounter crawlerCounter;
+    private Provider<CrawlerCounter> crawlerCounters;
+    @Inject
+    private CrawlEngine crawlEngine;
+    @Inject
+    private CrawlMetrics crawlMetrics;
     @Inject
-    private ConcurrentMap<String, Long> wordCounter;
+    private WordCounter wordCounter;
+    @Inject
+    private UrlFingerprintSet visitedUri;
     @Inject
     private CrawlerConfig crawlerConfig;
     @Inject
     private CrawlerUtil crawlerUtil;
+    @Inject
+    private Checkpointer checkpointer;
+    @Inject
+    private PageCache pageCache;
+    @Inject
+    private ArchiveWriter archiveWriter;
+    @Inject
+    private PageParser pageParser;
+    @Inject
+    private NearDuplicateIndex nearDuplicateIndex;
+    @Inject
+    private ClusterNode clusterNode;
+    @Inject
+    private ForkJoinPool parsePool;
+    @Inject
+    private LiveTopWords liveTopWords;
 
-    public void startCrawler(String uri, int depth) throws MalformedURLException, URISyntaxException {
-        ForkJoinPool pool = new ForkJoinPool();
-        try {
-            logger.debug("Invoke crawler task ...");
-            URI obj = new URI(uri);
-            crawlerCounter.setUri(obj.normalize().toString());
-            crawlerCounter.setBaseUri(crawlerUtil.getBaseUri(obj));
-            crawlerCounter.setDepth(depth);
+    private volatile List<Word> topWords;
+
+    /**
+     * Crawl the site from the seed; the node of {@code cluster.nodes} crawls its share of the site with the others
+     */
+    public void startCrawler(String uri, int depth) throws IOException, URISyntaxException, InterruptedException {
+        logger.debug("Invoke crawler task ...");
+        URI obj = new URI(uri);
+        String key = crawlerUtil.simplifyUri(uri);
+        UrlFrontier frontier = new UrlFrontier(visitedUri, Math.max(0, depth - 1), crawlerConfig.maxPendingPages(),
+                clusterNode.isEnabled() ? clusterNode : null);
+        if (clusterNode.isEnabled()) {
+            checkState(!checkpointer.isEnabled(), "checkpoints of the distributed crawl are not supported");
+            clusterNode.join(frontier);
+        }
+        // every node of the cluster is started with the same seed; only its owner fetches it
+        FrontierItem seed = clusterNode.isLocal(key) ? frontier.claim(obj.normalize().toString(), key, 0) : null;
+        checkpointer.start(uri, depth, frontier, seed);
+        archiveWriter.start(false);
+        if (seed != null) frontier.enqueue(seed);
+        run(frontier, obj);
+    }
+
+    /**
+     * Continue the interrupted crawl from the checkpoint directory {@code checkpoint.dir}
+     */
+    public void resumeCrawler() throws IOException, URISyntaxException, InterruptedException {
+        logger.debug("Resume crawler task ...");
+        checkState(!clusterNode.isEnabled(), "resume of the distributed crawl is not supported");
+        Checkpoint checkpoint = checkpointer.load();
+        UrlFrontier frontier = new UrlFrontier(visitedUri, Math.max(0, checkpoint.getDepth() - 1),
+                crawlerConfig.maxPendingPages());
+        checkpoint.getPending().forEach(p -> frontier.restore(p.getUri(), p.getLevel(), p.getFingerprint()));
+        checkpointer.resume(frontier);
+        archiveWriter.start(true);
+        logger.info("Resume crawler of uri: {}, depth: {}; completed pages: {}, pending: {}",
+                checkpoint.getSeedUri(), checkpoint.getDepth(), checkpoint.getPages(), checkpoint.getPending().size());
+        run(frontier, new URI(checkpoint.getSeedUri()));
+    }
 
-            pool.invoke(crawlerCounter);
+    /**
+     * Count words of the pages archived in {@code archive.dir} without the network and the rate limits:
+     * the reader streams the segments, the pool decompresses and parses the records
+     */
+    public void replayArchive() throws IOException, InterruptedException {
+        final String dir = StringUtils.trimToEmpty(crawlerConfig.archiveDir());
+        checkState(!dir.isEmpty(), "archive.dir is not set");
+        logger.debug("Replay archive task ...");
+        try (ArchiveReader reader = ArchiveReader.open(Paths.get(dir))) {
+            logger.info("Replay archive: {}, segments: {}, pages: {}", dir, reader.getSegments().size(), reader.size());
+            final StopWatch watch = StopWatch.createStarted();
+            final int permits = crawlerConfig.maxPendingPages();
+            final Semaphore pending = new Semaphore(permits);
+            final long records;
+            liveTopWords.start();
+            try {
+                records = reader.scan(record -> {
+                    pending.acquire();
+                    parsePool.execute(() -> {
+                        try {
+                            replay(record);
+                        } finally {
+                            pending.release();
+                        }
+                    });
+                });
+                pending.acquire(permits);
+            } finally {
+                liveTopWords.stop();
+            }
+            watch.stop();
+            logger.info("Replay is completed; pages: {}, elapsed: {} ms", records, watch.getTime());
+            if (nearDuplicateIndex.isEnabled()) logger.info("Near duplicates: {}", nearDuplicateIndex);
+            logger.info("Counted words: {}", wordCounter);
+            logger.info("Metrics of the run, all sites: {}", crawlMetrics);
             printTopWords();
+            exportWords();
+        }
+    }
+
+    /**
+     * @return the top words of the completed crawl or the replay; {@code null} before their end
+     */
+    public List<Word> getTopWords() {
+        return topWords;
+    }
+
+    private void run(UrlFrontier frontier, URI seed) throws IOException, InterruptedException {
+        crawlMetrics.watch(frontier, visitedUri, wordCounter);
+        liveTopWords.start();
+        try {
+            crawl(frontier, seed.toURL().getHost());
         } finally {
-            MoreExecutors.shutdownAndAwaitTermination(pool, 30, SECONDS);
+            liveTopWords.stop();
+            crawlMetrics.unwatch(frontier, visitedUri, wordCounter);
+            if (clusterNode.isEnabled()) clusterNode.leave();
         }
+        checkpointer.finish();
+        pageCache.commit();
+        archiveWriter.finish();
+        logger.info("Visited uri: {}", visitedUri.stats());
+        if (nearDuplicateIndex.isEnabled()) logger.info("Near duplicates: {}", nearDuplicateIndex);
+        if (clusterNode.isEnabled()) logger.info("Cluster: {}", clusterNode);
+        logger.info("Counted words: {}", wordCounter);
+        logger.info("Metrics of the run, all sites: {}", crawlMetrics);
+        printTopWords();
+        exportWords();
+    }
 
+    /**
+     * Fetch and parse the pages of the frontier by the engine {@code crawl.engine}
+     */
+    private void crawl(UrlFrontier frontier, String seedHost) throws InterruptedException {
+        crawlEngine.crawl(frontier, (item, page, error) -> {
+            final CrawlerCounter task = crawlerCounters.get();
+            task.setFrontier(frontier);
+            task.setItem(item);
+            task.setSeedHost(seedHost);
+            task.setResult(page, error);
+            return task;
+        });
+        logger.info("Crawler is completed; pages: {}, levels: {}", frontier.getCompleted(), frontier.getCurrentLevel() + 1);
+    }
+
+    private void replay(byte[] compressed) {
+        try {
+            final ArchiveRecord record = ArchiveRecord.decode(compressed);
+            // the page could be archived twice if the crawl is resumed
+            if (!visitedUri.addIfAbsent(record.getUri())) return;
+            final WordHistogram histogram = new WordHistogram();
+            pageParser.parse(record.getUri(), record.getPage(), histogram, new ArrayList<>());
+            if (nearDuplicateIndex.isDuplicate(record.getUri(), histogram)) return;
+            final long countStart = System.nanoTime();
+            wordCounter.addAll(histogram);
+            crawlMetrics.latency(Phase.COUNT).recordSince(countStart);
+        } catch (Exception e) {
+            logger.error("Error on replay page", e);
+        }
+    }
+
+    /**
+     * Write all counted words to the table of {@code export.dir}
+     */
+    private void exportWords() throws IOException {
+        final String dir = StringUtils.trimToEmpty(crawlerConfig.exportDir());
+        // words of the other nodes are counted by the coordinator only
+        if (dir.isEmpty() || !clusterNode.isCoordinator()) return;
+        final Path file = Files.createDirectories(Paths.get(dir)).resolve(FrequencyTableWriter.FILE_NAME);
+        final StopWatch watch = StopWatch.createStarted();
+        final int size = FrequencyTableWriter.write(file, wordCounter);
+        logger.info("Exported words: {}, file: {}, bytes: {}, elapsed: {} ms", size, file, Files.size(file), watch.getTime());
     }
 
     private void printTopWords() {
-        final MinMaxPriorityQueue<Word> top = MinMaxPriorityQueue
-                .expectedSize(crawlerConfig.topRating())
-                .create();
-        wordCounter.forEach((k, v) -> {
-            if (crawlerConfig.topRating() > top.size()) {
-                top.offer(new Word(k, v));
-            } else {
-                final Word word = new Word(k, v);
-                if (word.compareTo(top.peekLast()) < 0) {
-                    top.pollLast();
-                    top.offer(word);
-                }
-            }
-        });
-        logger.info("TOP {}, size: {}\n{}", crawlerConfig.topRating(), top.size(), new TreeSet<>(top));
+        final List<Word> top = TopWords.select(wordCounter, crawlerConfig.topRating(), parsePool);
+        this.topWords = top;
+        // words of the other nodes are counted by the coordinator only
+        final String scope = clusterNode.isCoordinator() ? "TOP" : "Node TOP";
+        logger.info("{} {}, size: {}\n{}", scope, crawlerConfig.topRating(), top.size(), top);
     }
 }
@@ -0,0 +1,121 @@
+package ru.shishmakov.core;
+
+import org.aeonbits.owner.ConfigFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.config.SiteConfig;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.frontier.UrlFingerprintSet;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Crawl of one site by its own context of the {@link SiteConfig} beans, whose parent is the shared context.
+ * The visited URLs and the counted words live until the crawl is closed.
+ */
+public class SiteCrawl implements AutoCloseable {
+
+    private final AnnotationConfigApplicationContext context;
+    private final RatingController controller;
+    private final UrlFingerprintSet visitedUri;
+    private final WordCounter wordCounter;
+    private final ForkJoinPool parsePool;
+    private final LiveTopWords liveTopWords;
+
+    /**
+     * @param name subdirectory of the archive, the page cache and the export of the site
+     */
+    public SiteCrawl(ApplicationContext sharedContext, String name) {
+        final CrawlerConfig config = sharedContext.getBean(CrawlerConfig.class);
+        this.context = new AnnotationConfigApplicationContext();
+        context.setParent(sharedContext);
+        context.registerBean("crawlerConfig", CrawlerConfig.class, () -> siteConfig(config, name));
+        context.register(SiteConfig.class);
+        context.refresh();
+        this.controller = context.getBean(RatingController.class);
+        this.visitedUri = context.getBean(UrlFingerprintSet.class);
+        this.wordCounter = context.getBean(WordCounter.class);
+        this.parsePool = context.getBean(ForkJoinPool.class);
+        this.liveTopWords = context.getBean(LiveTopWords.class);
+    }
+
+    /**
+     * Sites crawled side by side don't support the checkpoints and the distributed crawl
+     */
+    public static void checkSupported(CrawlerConfig config) {
+        checkState(StringUtils.isBlank(config.checkpointDir()), "checkpoints of the site crawls are not supported");
+        checkState(config.clusterNodes().stream().allMatch(StringUtils::isBlank),
+                "distributed crawl of the site crawls is not supported");
+    }
+
+    public void start(String uri, int depth) throws IOException, URISyntaxException, InterruptedException {
+        controller.startCrawler(uri, depth);
+    }
+
+    /**
+     * @return number of the visited pages, updated while the crawl is running
+     */
+    public int getVisited() {
+        return visitedUri.size();
+    }
+
+    /**
+     * @return number of the distinct counted words, updated while the crawl is running
+     */
+    public int getDistinctWords() {
+        return wordCounter.size();
+    }
+
+    /**
+     * @return frequency of the word counted so far
+     */
+    public long count(String word) {
+        return wordCounter.count(word);
+    }
+
+    /**
+     * @return top words of the completed crawl or the top words counted so far
+     */
+    public List<Word> getTopWords(int limit) {
+        final List<Word> top = controller.getTopWords();
+        if (top != null && top.size() >= limit) return top.subList(0, limit);
+        if (top == null && liveTopWords.isEnabled() && limit <= liveTopWords.getLimit()) {
+            final List<Word> live = liveTopWords.current();
+            return live.size() > limit ? live.subList(0, limit) : live;
+        }
+        return TopWords.select(wordCounter, limit, parsePool);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    /**
+     * @return configuration with the own directories of the archive, the page cache and the export of the site
+     */
+    private static CrawlerConfig siteConfig(CrawlerConfig config, String name) {
+        final Properties site = new Properties();
+        final String archiveDir = config.archiveDir();
+        if (StringUtils.isNotBlank(archiveDir)) site.setProperty("archive.dir", siteDir(archiveDir, name));
+        final String cacheDir = config.pageCacheDir();
+        if (StringUtils.isNotBlank(cacheDir)) site.setProperty("cache.dir", siteDir(cacheDir, name));
+        final String exportDir = config.exportDir();
+        if (StringUtils.isNotBlank(exportDir)) site.setProperty("export.dir", siteDir(exportDir, name));
+        // the first source has the priority
+        return ConfigFactory.create(CrawlerConfig.class, site, System.getProperties());
+    }
+
+    private static String siteDir(String dir, String name) {
+        return Paths.get(dir.trim(), name).toString();
+    }
+}
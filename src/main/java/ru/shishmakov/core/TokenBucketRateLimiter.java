@@ -0,0 +1,91 @@
+package ru.shishmakov.core;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Token bucket in the form of the generic cell rate algorithm (GCRA).
+ * <p>
+ * The whole state is the theoretical arrival time of the next request. Each caller reserves its own slot
+ * by a single CAS and parks exactly until the slot comes up: no background refill, no polling.
+ * Rates below one request per second and fractional rates are supported.
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong arrivalTime;
+
+    /**
+     * @param permitsPerSecond average rate of permits, might be fractional
+     * @param burst            max number of permits issued at once after a period of inactivity
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        checkArgument(permitsPerSecond > 0, "rate should be positive: %s", permitsPerSecond);
+        checkArgument(burst > 0, "burst should be positive: %s", burst);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.arrivalTime = new AtomicLong(System.nanoTime());
+    }
+
+    @Override
+    public void acquire() throws InterruptedException {
+        final long slot = reserve();
+        long remaining;
+        while ((remaining = slot - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Take a permit if it is available right now
+     *
+     * @return {@code true} if the permit was taken
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            final long now = System.nanoTime();
+            final long prev = arrivalTime.get();
+            if (prev - toleranceNanos - now > 0) return false;
+            if (arrivalTime.compareAndSet(prev, later(prev, now) + intervalNanos)) return true;
+        }
+    }
+
+    /**
+     * @return time in terms of {@link System#nanoTime()} when the caller is allowed to run
+     */
+    long reserve() {
+        while (true) {
+            final long now = System.nanoTime();
+            final long prev = arrivalTime.get();
+            if (arrivalTime.compareAndSet(prev, later(prev, now) + intervalNanos)) {
+                return later(prev - toleranceNanos, now);
+            }
+        }
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("intervalNanos", intervalNanos)
+                .add("toleranceNanos", toleranceNanos)
+                .toString();
+    }
+
+    /**
+     * Overflow-safe max of two values of {@link System#nanoTime()}
+     */
+    private static long later(long first, long second) {
+        return first - second > 0 ? first : second;
+    }
+}
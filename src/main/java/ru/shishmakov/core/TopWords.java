@@ -0,0 +1,96 @@
+package ru.shishmakov.core;
+
+import ru.shishmakov.count.WordCounter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.reverseOrder;
+
+/**
+ * Selection of the most frequent words.
+ * <p>
+ * Partitions of the counter are scanned in parallel into bounded heaps those are merged pairwise.
+ * The {@link Word} is allocated only if its count is able to enter the heap, the counter is free to skip
+ * the resolving of other words. The result is sorted by the total order of {@link Word}, so it does not depend
+ * on the order of scan.
+ */
+public final class TopWords {
+
+    private TopWords() {
+    }
+
+    /**
+     * @param counter frequencies of the words
+     * @param limit   max size of the result
+     * @param pool    pool to scan partitions of the counter
+     * @return the most frequent words in descending order
+     */
+    public static List<Word> select(WordCounter counter, int limit, ForkJoinPool pool) {
+        checkArgument(limit >= 0, "limit should be not negative: %s", limit);
+        if (limit == 0) return Collections.emptyList();
+
+        final List<Word> top = new ArrayList<>(pool.invoke(new SelectTask(counter, limit, 0, counter.partitions())));
+        top.sort(null);
+        return top;
+    }
+
+    private static final class SelectTask extends RecursiveTask<PriorityQueue<Word>> {
+        private final WordCounter counter;
+        private final int limit;
+        private final int from;
+        private final int to;
+
+        private SelectTask(WordCounter counter, int limit, int from, int to) {
+            this.counter = counter;
+            this.limit = limit;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PriorityQueue<Word> compute() {
+            if (to - from == 1) return scan(from);
+
+            final int middle = (from + to) >>> 1;
+            final SelectTask left = new SelectTask(counter, limit, from, middle);
+            left.fork();
+            final PriorityQueue<Word> right = new SelectTask(counter, limit, middle, to).compute();
+            return merge(left.join(), right);
+        }
+
+        private PriorityQueue<Word> scan(int partition) {
+            // the head is the least frequent word in the heap
+            final PriorityQueue<Word> heap = new PriorityQueue<>(limit, reverseOrder());
+            counter.forEach(partition,
+                    quantity -> heap.size() < limit || quantity >= heap.peek().getQuantity(),
+                    (word, quantity) -> {
+                        if (heap.size() < limit) heap.offer(new Word(word, quantity));
+                        else offer(heap, new Word(word, quantity));
+                    });
+            return heap;
+        }
+
+        private PriorityQueue<Word> merge(PriorityQueue<Word> first, PriorityQueue<Word> second) {
+            final PriorityQueue<Word> target = first.size() >= second.size() ? first : second;
+            final PriorityQueue<Word> source = target == first ? second : first;
+            for (Word word : source) {
+                if (target.size() < limit) target.offer(word);
+                else offer(target, word);
+            }
+            return target;
+        }
+
+        private static void offer(PriorityQueue<Word> fullHeap, Word word) {
+            if (word.compareTo(fullHeap.peek()) < 0) {
+                fullHeap.poll();
+                fullHeap.offer(word);
+            }
+        }
+    }
+}
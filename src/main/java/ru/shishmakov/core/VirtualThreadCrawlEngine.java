@@ -0,0 +1,97 @@
+package ru.shishmakov.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.fetch.Fetcher;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.frontier.FrontierItem;
+import ru.shishmakov.frontier.UrlFrontier;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.recrawl.PageCache;
+import ru.shishmakov.schedule.HostScheduler;
+
+import javax.inject.Inject;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link CrawlEngine} of one virtual thread per page: the thread takes the in-flight permit, waits for the turn
+ * of its host, waits for the fetched page and runs the task in place.
+ * <p>
+ * Blocked virtual threads do not hold the carrier threads, so the number of in-flight fetches is limited by
+ * the semaphore of {@code fetch.maxInFlight} permits instead of the size of the pool. Threads of the crawl are
+ * forked in the scope of the crawl: it is closed only when all of them are completed.
+ */
+public class VirtualThreadCrawlEngine implements CrawlEngine {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final ThreadFactory THREAD_FACTORY = Thread.ofVirtual().name("crawl-virtual ", 1).factory();
+
+    @Inject
+    private HostScheduler hostScheduler;
+    @Inject
+    private Fetcher fetcher;
+    @Inject
+    private PageCache pageCache;
+    @Inject
+    private CrawlMetrics crawlMetrics;
+    @Inject
+    private CrawlerConfig crawlerConfig;
+
+    @Override
+    public void crawl(UrlFrontier frontier, TaskFactory tasks) throws InterruptedException {
+        final Semaphore fetches = new Semaphore(crawlerConfig.maxInFlightRequests());
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(THREAD_FACTORY)) {
+            FrontierItem item;
+            while ((item = frontier.take()) != null) {
+                final FrontierItem next = item;
+                scope.execute(() -> process(next, fetches, tasks));
+            }
+        }
+    }
+
+    private void process(FrontierItem item, Semaphore fetches, TaskFactory tasks) {
+        Page page = null;
+        Throwable error = null;
+        try {
+            fetches.acquire();
+            try {
+                // the turn of the host and the global rate limit are taken inside the permit,
+                // so the request is sent right after its turn and not in a burst after the wait for the permit
+                hostScheduler.schedule(item.getUri(), () -> CompletableFuture.completedFuture(null)).get();
+                final long start = System.nanoTime();
+                try {
+                    page = fetcher.load(pageCache.request(item.getUri()));
+                } catch (Exception e) {
+                    if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+                        // the fetch is stopped with the crawl, it is not the failure of the page
+                        throw (InterruptedException) new InterruptedException("Interrupted fetch of uri: "
+                                + item.getUri()).initCause(e);
+                    }
+                    error = e;
+                }
+                crawlMetrics.recordFetch(start, page, error);
+            } finally {
+                fetches.release();
+            }
+        } catch (InterruptedException e) {
+            // the crawl is stopped: the item stays pending for the checkpoint
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            logger.error("Error on schedule uri: {}", item.getUri(), e.getCause());
+            error = e.getCause();
+        } catch (RuntimeException e) {
+            logger.error("Error on schedule uri: {}", item.getUri(), e);
+            error = e;
+        }
+        tasks.build(item, page, error).invoke();
+    }
+}
@@ -61,7 +61,8 @@ public class Word implements Comparable<Word> {
 
     private static Comparator<Word> buildMemberComparator() {
         return Comparator.comparing(Word::getQuantity, reverseOrder())
-                .thenComparing(w -> w.getWord().length(), reverseOrder());
+                .thenComparing(w -> w.getWord().length(), reverseOrder())
+                .thenComparing(Word::getWord);
     }
 
 }
@@ -0,0 +1,170 @@
+package ru.shishmakov.count;
+
+import com.google.common.base.MoreObjects;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link WordCounter} of independent stripes, each guarded by its own lock; the map of the words of the stripe
+ * is defined by the subclass.
+ * <p>
+ * The stripe of the word is defined by the high bits of its hash, so the histogram of the page is merged
+ * by taking each lock once and without any boxing of counts.
+ */
+abstract class AbstractStripedWordCounter<S extends AbstractStripedWordCounter.Stripe> implements WordCounter {
+
+    private final S[] stripes;
+    private final int shift;
+    private final ObjLongConsumer<String> listener;
+
+    /**
+     * @param concurrency expected number of concurrent writers, it is rounded up to the power of two
+     * @param listener    receiver of the new count of every updated word; it is called under the lock of the word,
+     *                    so the counts of the same word are received in order
+     */
+    @SuppressWarnings("unchecked")
+    AbstractStripedWordCounter(int concurrency, @Nullable ObjLongConsumer<String> listener, Supplier<S> stripe) {
+        checkArgument(concurrency > 0, "concurrency should be positive: %s", concurrency);
+        final int count = Math.max(2, Integer.highestOneBit(concurrency - 1) << 1);
+        this.stripes = (S[]) new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = stripe.get();
+        }
+        this.shift = Integer.numberOfLeadingZeros(count) + 1;
+        this.listener = listener;
+    }
+
+    @Override
+    public void add(String word, long delta) {
+        final int hash = WordHistogram.hash(word);
+        final S stripe = stripes[hash >>> shift];
+        stripe.lock.lock();
+        try {
+            updated(word, stripe.add(word, hash, delta));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(WordHistogram histogram) {
+        if (histogram.isEmpty()) return;
+        final int[] starts = new int[stripes.length + 1];
+        final int[] slots = histogram.slotsByStripe(shift, starts);
+        for (int i = 0; i < stripes.length; i++) {
+            if (starts[i] == starts[i + 1]) continue;
+            final S stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                for (int j = starts[i]; j < starts[i + 1]; j++) {
+                    final int slot = slots[j];
+                    final String word = histogram.keyAt(slot);
+                    updated(word, stripe.add(word, histogram.hashAt(slot), histogram.valueAt(slot)));
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long count(String word) {
+        final int hash = WordHistogram.hash(word);
+        final S stripe = stripes[hash >>> shift];
+        stripe.lock.lock();
+        try {
+            return stripe.get(word, hash);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) sum(Stripe::size);
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> action) {
+        for (int i = 0; i < stripes.length; i++) {
+            forEach(i, action);
+        }
+    }
+
+    @Override
+    public int partitions() {
+        return stripes.length;
+    }
+
+    @Override
+    public void forEach(int partition, ObjLongConsumer<String> action) {
+        forEach(partition, quantity -> true, action);
+    }
+
+    @Override
+    public void forEach(int partition, LongPredicate filter, ObjLongConsumer<String> action) {
+        final S stripe = stripes[partition];
+        stripe.lock.lock();
+        try {
+            stripe.forEach(filter, action);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @return sum of the values of all stripes, each one is taken under the lock of the stripe
+     */
+    long sum(ToLongFunction<? super S> value) {
+        long sum = 0;
+        for (S stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                sum += value.applyAsLong(stripe);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return sum;
+    }
+
+    private void updated(String word, long count) {
+        if (listener != null) listener.accept(word, count);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("stripes", stripes.length)
+                .add("size", size())
+                .toString();
+    }
+
+    /**
+     * Words of the stripe with their counts; it is accessed only under the lock of the stripe
+     */
+    abstract static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * @return new count of the word
+         */
+        abstract long add(String word, int hash, long delta);
+
+        /**
+         * @return count of the word or {@code 0} if the word is unknown
+         */
+        abstract long get(String word, int hash);
+
+        abstract int size();
+
+        abstract void forEach(LongPredicate filter, ObjLongConsumer<String> action);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.shishmakov.count;
+
+/**
+ * Storage of the word frequencies
+ */
+public enum CounterType {
+    /**
+     * {@link StripedWordCounter}: words are strings in the heap
+     */
+    STRIPED,
+    /**
+     * {@link DictionaryWordCounter}: words are UTF-8 bytes out of the heap
+     */
+    DICTIONARY
+}
@@ -0,0 +1,81 @@
+package ru.shishmakov.count;
+
+import com.google.common.base.MoreObjects;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * {@link WordCounter} of independent stripes; each stripe is {@link TermDictionary} with counts in {@code long[]}
+ * indexed by the id of the term, guarded by its own lock.
+ * <p>
+ * Distinct words are kept out of the heap as UTF-8 bytes, so the vocabulary costs a few primitive slots per word
+ * instead of the string with its chars, the node and the boxed count. Words are resolved into strings only
+ * for the visited entries those pass the filter on count.
+ */
+public class DictionaryWordCounter extends AbstractStripedWordCounter<DictionaryWordCounter.DictionaryStripe> {
+
+    /**
+     * @param concurrency expected number of concurrent writers, it is rounded up to the power of two
+     */
+    public DictionaryWordCounter(int concurrency) {
+        this(concurrency, null);
+    }
+
+    /**
+     * @param listener receiver of the new count of every updated word; it is called under the lock of the word,
+     *                 so the counts of the same word are received in order
+     */
+    public DictionaryWordCounter(int concurrency, @Nullable ObjLongConsumer<String> listener) {
+        super(concurrency, listener, DictionaryStripe::new);
+    }
+
+    /**
+     * @return bytes allocated out of the heap for the words
+     */
+    public long arenaBytes() {
+        return sum(stripe -> stripe.terms.arenaBytes());
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("stripes", partitions())
+                .add("size", size())
+                .add("arenaBytes", arenaBytes())
+                .toString();
+    }
+
+    static final class DictionaryStripe extends AbstractStripedWordCounter.Stripe {
+        private final TermDictionary terms = new TermDictionary(64 * 1024);
+        private long[] counts = new long[16];
+
+        @Override
+        long add(String word, int hash, long delta) {
+            final int id = terms.add(word, hash);
+            if (id == counts.length) counts = Arrays.copyOf(counts, id << 1);
+            return counts[id] += delta;
+        }
+
+        @Override
+        long get(String word, int hash) {
+            final int id = terms.find(word, hash);
+            return id < 0 ? 0 : counts[id];
+        }
+
+        @Override
+        int size() {
+            return terms.size();
+        }
+
+        @Override
+        void forEach(LongPredicate filter, ObjLongConsumer<String> action) {
+            for (int id = 0; id < terms.size(); id++) {
+                final long quantity = counts[id];
+                if (filter.test(quantity)) action.accept(terms.term(id), quantity);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.shishmakov.count;
+
+import javax.annotation.Nullable;
+import java.util.function.LongPredicate;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * {@link WordCounter} of independent stripes; each stripe is {@link WordHistogram} guarded by its own lock.
+ */
+public class StripedWordCounter extends AbstractStripedWordCounter<StripedWordCounter.HistogramStripe> {
+
+    /**
+     * @param concurrency expected number of concurrent writers, it is rounded up to the power of two
+     */
+    public StripedWordCounter(int concurrency) {
+        this(concurrency, null);
+    }
+
+    /**
+     * @param listener receiver of the new count of every updated word; it is called under the lock of the word,
+     *                 so the counts of the same word are received in order
+     */
+    public StripedWordCounter(int concurrency, @Nullable ObjLongConsumer<String> listener) {
+        super(concurrency, listener, HistogramStripe::new);
+    }
+
+    static final class HistogramStripe extends AbstractStripedWordCounter.Stripe {
+        private final WordHistogram words = new WordHistogram();
+
+        @Override
+        long add(String word, int hash, long delta) {
+            return words.add(word, hash, delta);
+        }
+
+        @Override
+        long get(String word, int hash) {
+            return words.get(word);
+        }
+
+        @Override
+        int size() {
+            return words.size();
+        }
+
+        @Override
+        void forEach(LongPredicate filter, ObjLongConsumer<String> action) {
+            words.forEach((word, quantity) -> {
+                if (filter.test(quantity)) action.accept(word, quantity);
+            });
+        }
+    }
+}
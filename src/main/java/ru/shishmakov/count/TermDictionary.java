@@ -0,0 +1,214 @@
+package ru.shishmakov.count;
+
+import com.google.common.base.MoreObjects;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Not thread-safe dictionary of terms those are assigned dense ids {@code 0, 1, 2, ...} in order of addition.
+ * <p>
+ * Terms are kept as UTF-8 bytes in the append-only arena of direct buffers out of the heap; the heap holds only
+ * the open-addressing table of ids and a few primitive arrays indexed by id. A string is created only when
+ * the term is {@link #term(int) resolved} by its id. Unpaired surrogates are stored as {@code '?'}.
+ */
+public class TermDictionary {
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer chunk;
+    private long arenaBytes;
+
+    /**
+     * Address of the term: index of the chunk in high bits and offset in low bits
+     */
+    private long[] addresses;
+    private int[] lengths;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * Open-addressing table of {@code id + 1}; {@code 0} is the empty slot
+     */
+    private int[] table;
+    private int mask;
+    private int threshold;
+    private byte[] encoded = new byte[64];
+
+    public TermDictionary() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize size of the single direct buffer of the arena in bytes
+     */
+    public TermDictionary(int chunkSize) {
+        checkArgument(chunkSize > 0, "chunk size should be positive: %s", chunkSize);
+        this.chunkSize = chunkSize;
+        this.addresses = new long[16];
+        this.lengths = new int[16];
+        this.hashes = new int[16];
+        allocateTable(32);
+    }
+
+    /**
+     * @return id of the term; the new id is assigned if the term is absent
+     */
+    public int add(String term) {
+        return add(term, WordHistogram.hash(term));
+    }
+
+    /**
+     * @return id of the term or {@code -1} if the term is absent
+     */
+    public int find(String term) {
+        return find(term, WordHistogram.hash(term));
+    }
+
+    /**
+     * Decode the term; this is the only method allocating a string
+     */
+    public String term(int id) {
+        checkArgument(id >= 0 && id < size, "unknown id: %s", id);
+        final int length = lengths[id];
+        final byte[] bytes = new byte[length];
+        final ByteBuffer buffer = chunks.get((int) (addresses[id] >>> 32));
+        final int offset = (int) addresses[id];
+        for (int i = 0; i < length; i++) bytes[i] = buffer.get(offset + i);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * @return number of terms, the next id to assign
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes allocated for the arena out of the heap
+     */
+    public long arenaBytes() {
+        return arenaBytes;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", size)
+                .add("chunks", chunks.size())
+                .add("arenaBytes", arenaBytes)
+                .toString();
+    }
+
+    int add(String term, int hash) {
+        final int length = encode(term);
+        int slot = hash & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (matches(entry - 1, hash, length)) return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+        final int id = append(hash, length);
+        table[slot] = id + 1;
+        if (size > threshold) resize();
+        return id;
+    }
+
+    int find(String term, int hash) {
+        final int length = encode(term);
+        int slot = hash & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (matches(entry - 1, hash, length)) return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean matches(int id, int hash, int length) {
+        if (hashes[id] != hash || lengths[id] != length) return false;
+        final ByteBuffer buffer = chunks.get((int) (addresses[id] >>> 32));
+        final int offset = (int) addresses[id];
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != encoded[i]) return false;
+        }
+        return true;
+    }
+
+    private int append(int hash, int length) {
+        if (chunk == null || chunk.remaining() < length) {
+            chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, length));
+            chunks.add(chunk);
+            arenaBytes += chunk.capacity();
+        }
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size << 1);
+            lengths = Arrays.copyOf(lengths, size << 1);
+            hashes = Arrays.copyOf(hashes, size << 1);
+        }
+        final int id = size++;
+        addresses[id] = ((long) (chunks.size() - 1) << 32) | chunk.position();
+        lengths[id] = length;
+        hashes[id] = hash;
+        chunk.put(encoded, 0, length);
+        return id;
+    }
+
+    /**
+     * Encode the term into the reused buffer without allocations
+     *
+     * @return count of bytes
+     */
+    private int encode(String term) {
+        final int chars = term.length();
+        if (encoded.length < chars * 3) encoded = new byte[chars * 3];
+        final byte[] bytes = encoded;
+        int length = 0;
+        for (int i = 0; i < chars; i++) {
+            final char c = term.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(term.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, term.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[length++] = '?';
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return length;
+    }
+
+    private void resize() {
+        checkArgument(table.length < MAX_CAPACITY, "dictionary is full: %s", size);
+        allocateTable(table.length << 1);
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = id + 1;
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        threshold = capacity >>> 1;
+    }
+}
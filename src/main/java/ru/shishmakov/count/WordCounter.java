@@ -0,0 +1,61 @@
+package ru.shishmakov.count;
+
+import java.util.function.LongPredicate;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Thread-safe counter of word frequencies over the whole crawl
+ */
+public interface WordCounter {
+
+    /**
+     * Add the single occurrences of the word
+     */
+    void add(String word, long delta);
+
+    /**
+     * Merge the local histogram of the page by one batch
+     */
+    void addAll(WordHistogram histogram);
+
+    /**
+     * @return frequency of the word or {@code 0} if the word is unknown
+     */
+    long count(String word);
+
+    /**
+     * @return number of distinct words
+     */
+    int size();
+
+    /**
+     * Visit all words; the visit is weakly consistent with concurrent updates
+     */
+    void forEach(ObjLongConsumer<String> action);
+
+    /**
+     * @return number of disjoint partitions those could be visited concurrently
+     */
+    default int partitions() {
+        return 1;
+    }
+
+    /**
+     * Visit words of the single partition
+     *
+     * @param partition index in range {@code [0, partitions())}
+     */
+    default void forEach(int partition, ObjLongConsumer<String> action) {
+        if (partition == 0) forEach(action);
+    }
+
+    /**
+     * Visit words of the single partition whose counts pass the filter; the filter is checked before
+     * the word is passed, so the counter is able to skip the resolving of rejected words
+     */
+    default void forEach(int partition, LongPredicate filter, ObjLongConsumer<String> action) {
+        forEach(partition, (word, quantity) -> {
+            if (filter.test(quantity)) action.accept(word, quantity);
+        });
+    }
+}
@@ -0,0 +1,234 @@
+package ru.shishmakov.count;
+
+import com.google.common.base.MoreObjects;
+import ru.shishmakov.text.CharSliceSet;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Not thread-safe open-addressing histogram {@code String -> long} with primitive counts.
+ * <p>
+ * Meant to be filled by the one worker per page and merged into {@link WordCounter} by one batch.
+ */
+public class WordHistogram {
+    private static final int DEFAULT_EXPECTED_SIZE = 256;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private String[] keys;
+    private long[] values;
+    private int[] hashes;
+    private int mask;
+    private int threshold;
+    private int size;
+
+    public WordHistogram() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    public WordHistogram(int expectedSize) {
+        checkArgument(expectedSize >= 0, "expected size should not be negative: %s", expectedSize);
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Spread the hash code of the word; the same value defines the stripe of {@link StripedWordCounter}
+     */
+    static int hash(String word) {
+        return spread(word.hashCode());
+    }
+
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return new count of the word
+     */
+    public long add(String word, long delta) {
+        return add(checkNotNull(word, "word is null"), hash(word), delta);
+    }
+
+    /**
+     * Add the word given by the slice of chars; the string is created only for the new word
+     *
+     * @return new count of the word
+     */
+    public long add(char[] chars, int offset, int length, long delta) {
+        final int hash = spread(CharSliceSet.hashCode(chars, offset, length));
+        int slot = hash & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && CharSliceSet.equals(key, chars, offset, length)) {
+                return values[slot] += delta;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return insert(slot, new String(chars, offset, length), hash, delta);
+    }
+
+    long add(String word, int hash, long delta) {
+        int slot = hash & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && key.equals(word)) {
+                return values[slot] += delta;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return insert(slot, word, hash, delta);
+    }
+
+    public long get(String word) {
+        final int hash = hash(checkNotNull(word, "word is null"));
+        int slot = hash & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && key.equals(word)) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all words but keep the allocated table to reuse it
+     */
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    public void forEach(ObjLongConsumer<String> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) action.accept(keys[slot], values[slot]);
+        }
+    }
+
+    /**
+     * @return 64-bit SimHash of the words weighted by {@code 1 + ln(count)}; pages with nearly the same words differ
+     * in a few bits only. The sublinear weight keeps the most frequent words of the language from making all pages
+     * look alike.
+     */
+    public long simHash() {
+        final double[] weights = new double[Long.SIZE];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == null) continue;
+            final long feature = mix(hashes[slot]);
+            final double weight = 1 + Math.log(Math.max(1, values[slot]));
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += ((feature >>> bit) & 1) == 0 ? -weight : weight;
+            }
+        }
+        long hash = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) hash |= 1L << bit;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of SplitMix64: every bit of the 64-bit feature depends on every bit of the hash of the word
+     */
+    private static long mix(int hash) {
+        long z = hash * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    String keyAt(int slot) {
+        return keys[slot];
+    }
+
+    long valueAt(int slot) {
+        return values[slot];
+    }
+
+    int hashAt(int slot) {
+        return hashes[slot];
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", size)
+                .add("capacity", keys.length)
+                .toString();
+    }
+
+    /**
+     * Counting sort of the occupied slots by the stripe {@code hash >>> shift}
+     *
+     * @param starts array of {@code stripes + 1} zeros; it is filled by the bounds of stripes, so the slots of
+     *               the stripe {@code i} are in range {@code [starts[i], starts[i + 1])} of the result
+     * @return indexes of the occupied slots
+     */
+    int[] slotsByStripe(int shift, int[] starts) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) starts[(hashes[slot] >>> shift) + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        final int[] slots = new int[size];
+        final int[] positions = Arrays.copyOf(starts, starts.length - 1);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) slots[positions[hashes[slot] >>> shift]++] = slot;
+        }
+        return slots;
+    }
+
+    private long insert(int slot, String word, int hash, long delta) {
+        keys[slot] = word;
+        hashes[slot] = hash;
+        values[slot] = delta;
+        if (++size > threshold) resize();
+        return delta;
+    }
+
+    private void resize() {
+        final String[] oldKeys = keys;
+        final long[] oldValues = values;
+        final int[] oldHashes = hashes;
+        checkArgument(oldKeys.length < MAX_CAPACITY, "histogram is full: %s", size);
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            hashes[slot] = oldHashes[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new long[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+        threshold = capacity >>> 1; // load factor 0.5 keeps probe sequences short
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        return Math.min(capacity, MAX_CAPACITY);
+    }
+}
@@ -0,0 +1,152 @@
+package ru.shishmakov.dedup;
+
+import com.google.common.base.MoreObjects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Index of {@link WordHistogram#simHash() SimHash} values of the counted pages to find near duplicates: print views,
+ * session paths and other copies of the same content under the different URLs.
+ * <p>
+ * The hash is split into {@code dedup.bands} bands; the page is indexed in the bucket of every band. Hashes within
+ * {@code dedup.maxDistance} bits share one band at least if there are more bands than bits, so only the pages of
+ * the same buckets are compared. Lookups are lock-free, inserts are serialized to never count two concurrent copies.
+ */
+public class NearDuplicateIndex {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = NearDuplicateIndex.class.getSimpleName();
+    private static final long[] EMPTY = new long[0];
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+    @Inject
+    private CrawlMetrics crawlMetrics;
+
+    private final ConcurrentMap<Long, long[]> buckets = new ConcurrentHashMap<>();
+    private final Object insertLock = new Object();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder comparisons = new LongAdder();
+    private boolean enabled;
+    private boolean skipLinks;
+    private int maxDistance;
+    private int minWords;
+    private int bands;
+    private int bandBits;
+
+    @PostConstruct
+    public void setUp() {
+        this.enabled = crawlerConfig.dedupEnabled();
+        if (!enabled) return;
+        this.skipLinks = crawlerConfig.dedupSkipLinks();
+        this.maxDistance = crawlerConfig.dedupMaxDistance();
+        this.minWords = crawlerConfig.dedupMinWords();
+        this.bands = crawlerConfig.dedupBands();
+        checkArgument(bands >= 2 && Long.SIZE % bands == 0, "bands should divide 64 bits: %s", bands);
+        checkArgument(maxDistance >= 0 && maxDistance < bands, "max distance should be less than bands: %s",
+                maxDistance);
+        this.bandBits = Long.SIZE / bands;
+        logger.info("{} started; max distance: {} bits, bands: {}, skip links: {}", NAME, maxDistance, bands, skipLinks);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return {@code true} if links of the near duplicate should not be followed
+     */
+    public boolean isSkipLinks() {
+        return skipLinks;
+    }
+
+    /**
+     * Index the page unless it is the near duplicate of the indexed one
+     *
+     * @param histogram words of the page
+     * @return {@code true} if the page is the near duplicate; its words should not be counted
+     */
+    public boolean isDuplicate(String uri, WordHistogram histogram) {
+        if (!enabled || histogram.size() < minWords) return false;
+        final long hash = histogram.simHash();
+        int distance = find(hash);
+        if (distance < 0) {
+            synchronized (insertLock) {
+                distance = find(hash);
+                if (distance < 0) insert(hash);
+            }
+        }
+        if (distance < 0) return false;
+        crawlMetrics.increment(Counter.PAGES_DUPLICATE);
+        logger.debug("{} near duplicate uri: {}, distance: {} bits", NAME, uri, distance);
+        return true;
+    }
+
+    /**
+     * @return number of indexed pages
+     */
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("pages", size.get())
+                .add("duplicates", crawlMetrics.get(Counter.PAGES_DUPLICATE))
+                .add("buckets", buckets.size())
+                .add("comparisons", comparisons.sum())
+                .toString();
+    }
+
+    /**
+     * @return distance to the closest indexed hash within the max distance or {@code -1}
+     */
+    private int find(long hash) {
+        int closest = -1;
+        for (int band = 0; band < bands; band++) {
+            final long[] candidates = buckets.getOrDefault(bucket(hash, band), EMPTY);
+            comparisons.add(candidates.length);
+            for (long candidate : candidates) {
+                final int distance = Long.bitCount(hash ^ candidate);
+                if (distance <= maxDistance && (closest < 0 || distance < closest)) closest = distance;
+            }
+            if (closest == 0) return 0;
+        }
+        return closest;
+    }
+
+    private void insert(long hash) {
+        for (int band = 0; band < bands; band++) {
+            final long bucket = bucket(hash, band);
+            final long[] candidates = buckets.getOrDefault(bucket, EMPTY);
+            final long[] next = Arrays.copyOf(candidates, candidates.length + 1);
+            next[candidates.length] = hash;
+            buckets.put(bucket, next);
+        }
+        size.incrementAndGet();
+    }
+
+    /**
+     * @return band number in the high bits and the value of the band in the low ones
+     */
+    private long bucket(long hash, int band) {
+        final long value = (hash >>> (band * bandBits)) & ((1L << bandBits) - 1);
+        return ((long) band << 32) | value;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.shishmakov.export;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Comparison of the words of two runs by the streaming merge-join of their {@link FrequencyTable tables}.
+ * <p>
+ * The change of the word is the difference of its frequencies per million words of each run, so the runs
+ * of different size are comparable. Only the current words of both cursors and the bounded heaps of the most
+ * rising and falling words are kept in memory; the word is resolved into the string only if it enters the heap.
+ */
+public final class FrequencyDiff {
+
+    private static final Comparator<Change> RISING = Comparator.comparingDouble(Change::getChange)
+            .thenComparing(Change::getWord, Comparator.reverseOrder());
+    private static final Comparator<Change> FALLING = Comparator.comparingDouble(Change::getChange).reversed()
+            .thenComparing(Change::getWord, Comparator.reverseOrder());
+
+    private final List<Change> rising;
+    private final List<Change> falling;
+    private final int added;
+    private final int removed;
+    private final int common;
+
+    private FrequencyDiff(List<Change> rising, List<Change> falling, int added, int removed, int common) {
+        this.rising = rising;
+        this.falling = falling;
+        this.added = added;
+        this.removed = removed;
+        this.common = common;
+    }
+
+    /**
+     * @param limit max number of the rising and of the falling words
+     */
+    public static FrequencyDiff compare(FrequencyTable before, FrequencyTable after, int limit) {
+        checkArgument(limit >= 0, "limit should be not negative: %s", limit);
+        final double beforeScale = 1_000_000d / Math.max(1, before.total());
+        final double afterScale = 1_000_000d / Math.max(1, after.total());
+        final PriorityQueue<Change> rising = new PriorityQueue<>(limit + 1, RISING);
+        final PriorityQueue<Change> falling = new PriorityQueue<>(limit + 1, FALLING);
+        final FrequencyTable.Cursor left = before.cursor();
+        final FrequencyTable.Cursor right = after.cursor();
+        boolean hasLeft = left.next();
+        boolean hasRight = right.next();
+        int added = 0;
+        int removed = 0;
+        int common = 0;
+        while (hasLeft || hasRight) {
+            final int compare = !hasLeft ? 1 : !hasRight ? -1 : left.compareTo(right);
+            final long beforeCount = compare <= 0 ? left.count() : 0;
+            final long afterCount = compare >= 0 ? right.count() : 0;
+            final double change = afterCount * afterScale - beforeCount * beforeScale;
+            final FrequencyTable.Cursor current = compare <= 0 ? left : right;
+            if (change > 0) offer(rising, RISING, limit, current, beforeCount, afterCount, change);
+            else if (change < 0) offer(falling, FALLING, limit, current, beforeCount, afterCount, change);
+            if (compare < 0) removed++;
+            else if (compare > 0) added++;
+            else common++;
+            if (compare <= 0) hasLeft = left.next();
+            if (compare >= 0) hasRight = right.next();
+        }
+        return new FrequencyDiff(sorted(rising, RISING), sorted(falling, FALLING), added, removed, common);
+    }
+
+    /**
+     * @return the most rising words in descending order of the change
+     */
+    public List<Change> getRising() {
+        return rising;
+    }
+
+    /**
+     * @return the most falling words in ascending order of the change
+     */
+    public List<Change> getFalling() {
+        return falling;
+    }
+
+    /**
+     * @return number of the words those are only in the later run
+     */
+    public int getAdded() {
+        return added;
+    }
+
+    /**
+     * @return number of the words those are only in the earlier run
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getCommon() {
+        return common;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("added", added)
+                .add("removed", removed)
+                .add("common", common)
+                .toString();
+    }
+
+    private static void offer(PriorityQueue<Change> heap, Comparator<Change> order, int limit,
+                              FrequencyTable.Cursor cursor, long before, long after, double change) {
+        if (limit == 0) return;
+        // the weakest change is on the top of the heap; the word is resolved only for the equal or stronger change
+        if (heap.size() == limit && Math.abs(change) < Math.abs(heap.peek().getChange())) return;
+        final Change candidate = new Change(cursor.word(), before, after, change);
+        if (heap.size() == limit) {
+            if (order.compare(candidate, heap.peek()) <= 0) return;
+            heap.poll();
+        }
+        heap.add(candidate);
+    }
+
+    private static List<Change> sorted(PriorityQueue<Change> heap, Comparator<Change> order) {
+        final List<Change> result = new ArrayList<>(heap);
+        result.sort(order.reversed());
+        return result;
+    }
+
+    /**
+     * Frequencies of the word in both runs
+     */
+    public static final class Change {
+        private final String word;
+        private final long before;
+        private final long after;
+        private final double change;
+
+        Change(String word, long before, long after, double change) {
+            this.word = word;
+            this.before = before;
+            this.after = after;
+            this.change = change;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        public long getBefore() {
+            return before;
+        }
+
+        public long getAfter() {
+            return after;
+        }
+
+        /**
+         * @return change of the frequency per million words
+         */
+        public double getChange() {
+            return change;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("word", word)
+                    .add("before", before)
+                    .add("after", after)
+                    .add("change", String.format("%.1f", change))
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ru.shishmakov.export;
+
+import com.google.common.base.MoreObjects;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static ru.shishmakov.export.FrequencyTableWriter.HEADER_BYTES;
+import static ru.shishmakov.export.FrequencyTableWriter.MAGIC;
+import static ru.shishmakov.export.FrequencyTableWriter.VERSION;
+
+/**
+ * Memory-mapped table of all counted words sorted by their UTF-8 bytes, written by {@link FrequencyTableWriter}.
+ * <p>
+ * The word is found by the binary search over the first words of the blocks and the scan of one block;
+ * the {@link Cursor} streams the words in order and keeps only the current word in memory.
+ */
+public final class FrequencyTable implements Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int blockSize;
+    private final long total;
+    private final int indexOffset;
+    private final int blocks;
+
+    private FrequencyTable(Path file, FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Unknown format of table");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unknown version of table: " + buffer.getInt(4));
+        this.size = buffer.getInt(8);
+        this.blockSize = buffer.getInt(12);
+        this.total = buffer.getLong(16);
+        final long index = buffer.getLong(24);
+        this.blocks = blockSize <= 0 ? 0 : (int) ((size + (long) blockSize - 1) / blockSize);
+        if (blockSize <= 0 || index < HEADER_BYTES || index + (long) blocks * 8 > buffer.capacity()) {
+            throw new IOException("Table is truncated");
+        }
+        this.indexOffset = (int) index;
+    }
+
+    public static FrequencyTable open(Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Table is too large to map: " + file);
+            return new FrequencyTable(file, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of the distinct words
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return sum of the counts of all words
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @return count of the word or {@code 0} if the word is unknown
+     */
+    public long count(String word) {
+        final byte[] key = word.getBytes(UTF_8);
+        final Cursor cursor = new Cursor();
+        // the last block whose first word is not greater than the key
+        int low = 0;
+        int high = blocks - 1;
+        int block = -1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            cursor.seek(middle);
+            cursor.next();
+            if (cursor.compareTo(key) <= 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) return 0;
+        cursor.seek(block);
+        for (int i = 0; i < blockSize && cursor.next(); i++) {
+            final int compare = cursor.compareTo(key);
+            if (compare == 0) return cursor.count();
+            if (compare > 0) return 0;
+        }
+        return 0;
+    }
+
+    /**
+     * @return cursor before the first word
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("file", file)
+                .add("size", size)
+                .add("total", total)
+                .toString();
+    }
+
+    /**
+     * Sequential reader of the words; the bytes of the current word are reused by the next one
+     */
+    public final class Cursor {
+        private int position = HEADER_BYTES;
+        private int remaining = size;
+        private byte[] term = new byte[32];
+        private int length;
+        private long count;
+
+        private Cursor() {
+        }
+
+        private void seek(int block) {
+            position = (int) buffer.getLong(indexOffset + block * 8);
+            remaining = size - block * blockSize;
+            length = 0;
+        }
+
+        /**
+         * @return {@code false} if there are no more words
+         */
+        public boolean next() {
+            if (remaining == 0) return false;
+            final int shared = (int) readVarLong();
+            final int suffix = (int) readVarLong();
+            if (shared + suffix > term.length) term = Arrays.copyOf(term, Math.max(term.length * 2, shared + suffix));
+            for (int i = 0; i < suffix; i++) term[shared + i] = buffer.get(position + i);
+            position += suffix;
+            length = shared + suffix;
+            count = readVarLong();
+            remaining--;
+            return true;
+        }
+
+        public String word() {
+            return new String(term, 0, length, UTF_8);
+        }
+
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Compare UTF-8 bytes of the current words
+         */
+        public int compareTo(Cursor other) {
+            return Arrays.compareUnsigned(term, 0, length, other.term, 0, other.length);
+        }
+
+        private int compareTo(byte[] key) {
+            return Arrays.compareUnsigned(term, 0, length, key, 0, key.length);
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final byte b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ru.shishmakov.export;
+
+import ru.shishmakov.count.WordCounter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writer of the {@link FrequencyTable}: the words are added in the ascending order of their UTF-8 bytes.
+ * <p>
+ * Every word keeps only the suffix after the prefix shared with the previous word; the first word of every
+ * block of {@code blockSize} words is written in full and its offset is kept in the index at the end of file.
+ * The file appears under its name atomically on close.
+ */
+public class FrequencyTableWriter implements Closeable {
+    public static final String FILE_NAME = "words.freq";
+    static final int MAGIC = 0x43525746;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final Path file;
+    private final Path temp;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final int blockSize;
+    private long[] blocks = new long[16];
+    private byte[] previous = new byte[0];
+    private int size;
+    private long total;
+    private long position = HEADER_BYTES;
+    private boolean closed;
+
+    public FrequencyTableWriter(Path file, int blockSize) throws IOException {
+        checkArgument(blockSize > 0, "block size should be positive: %s", blockSize);
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.blockSize = blockSize;
+        this.channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING);
+        channel.position(HEADER_BYTES);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    /**
+     * Write all words of the counter sorted by their UTF-8 bytes
+     *
+     * @return number of the written words
+     */
+    public static int write(Path file, WordCounter counter) throws IOException {
+        final Vocabulary vocabulary = new Vocabulary(counter.size());
+        counter.forEach(vocabulary::add);
+        final Integer[] order = new Integer[vocabulary.size];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(vocabulary.words[a], vocabulary.words[b]));
+        try (FrequencyTableWriter writer = new FrequencyTableWriter(file, DEFAULT_BLOCK_SIZE)) {
+            for (int i : order) writer.add(vocabulary.words[i], vocabulary.counts[i]);
+        }
+        return order.length;
+    }
+
+    public void add(String word, long count) throws IOException {
+        add(word.getBytes(UTF_8), count);
+    }
+
+    /**
+     * @param word UTF-8 bytes of the word, greater than the bytes of the previous word
+     */
+    public void add(byte[] word, long count) throws IOException {
+        checkState(!closed, "writer is closed");
+        checkArgument(count >= 0, "count should be not negative: %s", count);
+        checkArgument(size == 0 || Arrays.compareUnsigned(previous, word) < 0,
+                "words should be added in ascending order: %s", new String(word, UTF_8));
+        int shared = 0;
+        if (size % blockSize == 0) {
+            if (size / blockSize == blocks.length) blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            blocks[size / blockSize] = position;
+        } else {
+            shared = Arrays.mismatch(previous, word);
+            if (shared < 0) shared = word.length;
+        }
+        writeVarLong(shared);
+        writeVarLong(word.length - shared);
+        out.write(word, shared, word.length - shared);
+        position += word.length - shared;
+        writeVarLong(count);
+        previous = word;
+        size++;
+        total += count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            final int blockCount = (size + blockSize - 1) / blockSize;
+            final long indexOffset = position;
+            for (int i = 0; i < blockCount; i++) out.writeLong(blocks[i]);
+            out.flush();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(size)
+                    .putInt(blockSize)
+                    .putLong(total)
+                    .putLong(indexOffset);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+            channel.force(false);
+        } finally {
+            out.close();
+        }
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            position++;
+        }
+        out.write((int) value);
+        position++;
+    }
+
+    /**
+     * Words of the counter in the order of visit
+     */
+    private static final class Vocabulary {
+        private byte[][] words;
+        private long[] counts;
+        private int size;
+
+        private Vocabulary(int expectedSize) {
+            this.words = new byte[Math.max(16, expectedSize)][];
+            this.counts = new long[words.length];
+        }
+
+        private void add(String word, long count) {
+            if (size == words.length) {
+                words = Arrays.copyOf(words, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            words[size] = word.getBytes(UTF_8);
+            counts[size++] = count;
+        }
+    }
+}
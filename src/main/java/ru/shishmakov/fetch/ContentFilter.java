@@ -0,0 +1,178 @@
+package ru.shishmakov.fetch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rules those keep responses the crawler can never count away from the fetcher and the rate limiters.
+ * <p>
+ * The link is skipped before it takes the place in the frontier if the extension of its path is one of
+ * {@code fetch.skipExtensions} or its pattern is negative. The pattern is the host, the directory and
+ * the extension of the path: it becomes negative after {@code fetch.negativeThreshold} responses of the types
+ * other than {@code fetch.contentTypes} unless the page of the same pattern was accepted already.
+ * Only the last {@code fetch.negativeCacheSize} rejected patterns are kept; the accepted patterns are kept apart,
+ * so the pages of a site with many directories never push the negative patterns out.
+ */
+public class ContentFilter {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = ContentFilter.class.getSimpleName();
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+
+    private Set<String> skipExtensions;
+    private Set<String> contentTypes;
+    private Cache<String, AtomicInteger> patterns;
+    private Cache<String, Boolean> acceptedPatterns;
+    private int negativeThreshold;
+    private int maxBodyBytes;
+
+    @PostConstruct
+    public void setUp() {
+        this.skipExtensions = lowerCase(crawlerConfig.skipExtensions());
+        this.contentTypes = lowerCase(crawlerConfig.contentTypes());
+        this.negativeThreshold = crawlerConfig.negativeThreshold();
+        this.maxBodyBytes = (int) Math.min(Integer.MAX_VALUE - 8, crawlerConfig.maxBodyKb() * 1024L);
+        this.patterns = CacheBuilder.newBuilder()
+                .maximumSize(crawlerConfig.negativeCacheSize())
+                .build();
+        this.acceptedPatterns = CacheBuilder.newBuilder()
+                .maximumSize(crawlerConfig.negativeCacheSize())
+                .build();
+        logger.info("{} started; skip extensions: {}, content types: {}, max body: {} bytes",
+                NAME, skipExtensions.size(), contentTypes, maxBodyBytes);
+    }
+
+    /**
+     * @return {@code true} if the link could be the page with words
+     */
+    public boolean isFetchable(String uri) {
+        final int pathStart = pathStart(uri);
+        final int pathEnd = pathEnd(uri, pathStart);
+        final String extension = extension(uri, pathStart, pathEnd);
+        if (extension != null && skipExtensions.contains(extension)) return false;
+
+        final AtomicInteger rejected = patterns.getIfPresent(pattern(uri, pathStart, pathEnd, extension));
+        return rejected == null || rejected.get() < negativeThreshold;
+    }
+
+    /**
+     * @param contentType value of the header {@code Content-Type}; the missing type is accepted
+     */
+    public boolean isAcceptedContentType(String contentType) {
+        if (contentType == null) return true;
+        final String mediaType = StringUtils.trim(StringUtils.substringBefore(contentType, ";"));
+        return contentTypes.contains(StringUtils.lowerCase(mediaType));
+    }
+
+    /**
+     * @return limit of the body; the longer response is aborted
+     */
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * Remember the page of the accepted content type, so its pattern never becomes negative
+     */
+    public void accept(String uri) {
+        final String pattern = pattern(uri);
+        acceptedPatterns.put(pattern, Boolean.TRUE);
+        patterns.invalidate(pattern);
+    }
+
+    /**
+     * Count the response of the rejected content type for the pattern of the URI
+     */
+    public void reject(String uri) {
+        final String pattern = pattern(uri);
+        if (acceptedPatterns.getIfPresent(pattern) != null) return;
+        if (counter(pattern).incrementAndGet() == negativeThreshold) {
+            logger.info("{} skips links of pattern: {}", NAME, pattern);
+        }
+    }
+
+    private AtomicInteger counter(String pattern) {
+        try {
+            // not asMap().computeIfAbsent(): it could deadlock in this version of Guava
+            return patterns.get(pattern, AtomicInteger::new);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String pattern(String uri) {
+        final int pathStart = pathStart(uri);
+        final int pathEnd = pathEnd(uri, pathStart);
+        return pattern(uri, pathStart, pathEnd, extension(uri, pathStart, pathEnd));
+    }
+
+    /**
+     * @return host, directory and extension of the path, e.g. {@code host/files/*.pdf}
+     */
+    private static String pattern(String uri, int pathStart, int pathEnd, String extension) {
+        final int scheme = uri.indexOf("://");
+        final int hostStart = scheme < 0 ? 0 : scheme + 3;
+        final int dirEnd = uri.lastIndexOf('/', pathEnd - 1) + 1;
+        final StringBuilder pattern = new StringBuilder(pathEnd - hostStart + 8).append(uri, hostStart, pathStart);
+        if (pathStart == pathEnd) pattern.append('/');
+        else pattern.append(uri, pathStart, dirEnd);
+        pattern.append('*');
+        if (extension != null) pattern.append('.').append(extension);
+        return StringUtils.lowerCase(pattern.toString());
+    }
+
+    /**
+     * @return lower case extension of the last segment of the path or {@code null}
+     */
+    private static String extension(String uri, int pathStart, int pathEnd) {
+        int end = pathEnd;
+        for (int i = pathEnd - 1; i >= pathStart; i--) {
+            final char ch = uri.charAt(i);
+            if (ch == ';') end = i;
+            else if (ch == '/') return null;
+            else if (ch == '.') return i + 1 < end ? StringUtils.lowerCase(uri.substring(i + 1, end)) : null;
+        }
+        return null;
+    }
+
+    private static int pathStart(String uri) {
+        final int scheme = uri.indexOf("://");
+        for (int i = scheme < 0 ? 0 : scheme + 3; i < uri.length(); i++) {
+            final char ch = uri.charAt(i);
+            if (ch == '/' || ch == '?' || ch == '#') return i;
+        }
+        return uri.length();
+    }
+
+    private static int pathEnd(String uri, int pathStart) {
+        for (int i = pathStart; i < uri.length(); i++) {
+            final char ch = uri.charAt(i);
+            if (ch == '?' || ch == '#') return i;
+        }
+        return uri.length();
+    }
+
+    private static Set<String> lowerCase(Set<String> values) {
+        final Set<String> result = new HashSet<>();
+        for (String value : values) {
+            final String trimmed = StringUtils.trimToNull(value);
+            if (trimmed != null) result.add(Strings.CS.removeStart(trimmed.toLowerCase(), "."));
+        }
+        return result;
+    }
+}
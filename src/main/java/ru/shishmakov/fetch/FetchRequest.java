@@ -0,0 +1,54 @@
+package ru.shishmakov.fetch;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Request of the {@link Fetcher}; the validators of the previous response make it conditional
+ */
+public class FetchRequest {
+    private final String uri;
+    private final String etag;
+    private final String lastModified;
+
+    public FetchRequest(String uri) {
+        this(uri, null, null);
+    }
+
+    /**
+     * @param etag         value of the header {@code If-None-Match} or {@code null}
+     * @param lastModified value of the header {@code If-Modified-Since} or {@code null}
+     */
+    public FetchRequest(String uri, String etag, String lastModified) {
+        this.uri = uri;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return {@code true} if the server is allowed to answer {@code 304 Not Modified}
+     */
+    public boolean isConditional() {
+        return etag != null || lastModified != null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("uri", uri)
+                .add("etag", etag)
+                .add("lastModified", lastModified)
+                .toString();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.shishmakov.fetch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Asynchronous source of pages for the parse stage.
+ * <p>
+ * Implementations must not block the calling thread of {@link #fetch(FetchRequest)} on network I/O:
+ * the returned future is completed by the fetcher's own threads once the whole body is received.
+ * {@link #load(FetchRequest)} is the blocking variant for the virtual threads.
+ */
+public interface Fetcher {
+
+    /**
+     * Start loading the content
+     *
+     * @return future completed with the loaded page, the page {@link Page#isNotModified() not modified} since
+     * the validators of the conditional request or exceptionally with {@link java.io.IOException}
+     */
+    CompletableFuture<Page> fetch(FetchRequest request);
+
+    /**
+     * Load the content in the calling thread
+     *
+     * @return loaded page or the page {@link Page#isNotModified() not modified}
+     */
+    default Page load(FetchRequest request) throws IOException {
+        try {
+            return fetch(request).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetch of uri: " + request.getUri());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Error on fetch uri: " + request.getUri(), e.getCause());
+        }
+    }
+
+    /**
+     * Start loading the content by URI
+     *
+     * @param uri absolute URI of the page
+     * @return future completed with the loaded page or exceptionally with {@link java.io.IOException}
+     */
+    default CompletableFuture<Page> fetch(String uri) {
+        return fetch(new FetchRequest(uri));
+    }
+}
@@ -0,0 +1,436 @@
+package ru.shishmakov.fetch;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.shishmakov.util.Threads.STOP_TIMEOUT_SEC;
+
+/**
+ * {@link Fetcher} over the asynchronous {@link HttpClient}.
+ * <p>
+ * No thread waits for the network: the client sends the request and reads the body on its selector, the small
+ * pool only completes the futures. Connections are kept alive and reused per host by the pool of the client.
+ * At most {@code fetch.maxInFlight} requests are sent at once and at most {@code fetch.maxConnectionsPerHost}
+ * of them to the same host, the others wait for the free slot in the order of arrival; a connection
+ * of HTTP/1.1 serves one request at a time, so the requests of the host also limit its connections.
+ * <p>
+ * The body of the error response is drained to keep the connection alive; the response rejected
+ * by the {@link ContentFilter} is not read at all, its connection is closed instead. The body should be
+ * received within {@code request.timeout} after the headers, else the stalled body is aborted with
+ * {@link HttpTimeoutException} and its slot is freed.
+ */
+public class HttpFetcher implements Fetcher {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = HttpFetcher.class.getSimpleName();
+    private static final String ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
+    private static final int NOT_MODIFIED = 304;
+    private static final Pattern CHARSET = Pattern.compile("(?i)\\bcharset=\\s*\"?([^\\s;\"]*)");
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+    @Inject
+    private ContentFilter contentFilter;
+
+    private ExecutorService executor;
+    private ScheduledThreadPoolExecutor timer;
+    private HttpClient client;
+    private Slots slots;
+
+    @PostConstruct
+    public void setUp() {
+        logger.info("{} starting ...", NAME);
+        this.executor = buildExecutorService(Math.min(crawlerConfig.maxInFlightRequests(),
+                Runtime.getRuntime().availableProcessors()));
+        this.timer = new ScheduledThreadPoolExecutor(1, BasicThreadFactory.builder()
+                .namingPattern("fetch-timer %d")
+                .daemon(true)
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(crawlerConfig.requestTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        this.slots = new Slots(crawlerConfig.maxInFlightRequests(), crawlerConfig.maxConnectionsPerHost());
+        logger.info("{} started", NAME);
+    }
+
+    @PreDestroy
+    public void tearDown() {
+        logger.info("{} stopping ...", NAME);
+        try {
+            client.shutdown();
+            if (!client.awaitTermination(Duration.ofSeconds(STOP_TIMEOUT_SEC))) client.shutdownNow();
+            MoreExecutors.shutdownAndAwaitTermination(executor, STOP_TIMEOUT_SEC, SECONDS);
+            MoreExecutors.shutdownAndAwaitTermination(timer, STOP_TIMEOUT_SEC, SECONDS);
+            logger.info("{} stopped", NAME);
+        } catch (InterruptedException e) {
+            client.shutdownNow();
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("{} error in time of stopping", NAME, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Page> fetch(FetchRequest request) {
+        final CompletableFuture<Page> result = new CompletableFuture<>();
+        final Exchange exchange;
+        try {
+            exchange = new Exchange(request, buildRequest(request), result);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (slots.tryStart(exchange)) send(exchange);
+        return result;
+    }
+
+    private void send(Exchange exchange) {
+        final FetchRequest request = exchange.request;
+        client.sendAsync(exchange.httpRequest, info -> body(request, info))
+                .thenCompose(response -> toPage(request, response))
+                .whenComplete((page, error) -> {
+                    final Exchange next = slots.release(exchange);
+                    if (next != null) sendLater(next);
+                    if (error == null) exchange.result.complete(page);
+                    else exchange.result.completeExceptionally(unwrap(error));
+                });
+    }
+
+    /**
+     * Send the next request on the pool, so the failed requests never stack their completions
+     */
+    private void sendLater(Exchange exchange) {
+        try {
+            executor.execute(() -> send(exchange));
+        } catch (RejectedExecutionException e) {
+            // every waiting request fails in turn
+            for (Exchange failed = exchange; failed != null; ) {
+                final Exchange next = slots.release(failed);
+                failed.result.completeExceptionally(new IOException("Fetcher is stopped: " + failed.request.getUri()));
+                failed = next;
+            }
+        }
+    }
+
+    private HttpRequest buildRequest(FetchRequest request) throws IOException {
+        final String uri = request.getUri();
+        final URI target;
+        try {
+            target = URI.create(uri);
+        } catch (IllegalArgumentException e) {
+            throw (MalformedURLException) new MalformedURLException("Illegal uri: " + uri).initCause(e);
+        }
+        if (!Strings.CI.equalsAny(target.getScheme(), "http", "https") || target.getHost() == null) {
+            throw new IOException("Only http and https protocols are supported: " + uri);
+        }
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofMillis(crawlerConfig.requestTimeoutMs()))
+                .header("User-Agent", crawlerConfig.userAgent())
+                .header("Accept", ACCEPT);
+        if (request.getEtag() != null) builder.header("If-None-Match", request.getEtag());
+        if (request.getLastModified() != null) builder.header("If-Modified-Since", request.getLastModified());
+        return builder.build();
+    }
+
+    /**
+     * @return reader of the body chosen by the status and the headers before the body is received
+     */
+    private BodySubscriber<byte[]> body(FetchRequest request, ResponseInfo info) {
+        final int status = info.statusCode();
+        final String uri = request.getUri();
+        final long timeoutMs = crawlerConfig.requestTimeoutMs();
+        if (status < 200 || status >= 300) return new LimitedBody(uri, -1, timeoutMs, timer);
+        final String contentType = header(info.headers(), "Content-Type");
+        if (!contentFilter.isAcceptedContentType(contentType)) {
+            contentFilter.reject(uri);
+            return rejected(new RejectedContentException("Unhandled content type " + contentType + " on uri: " + uri));
+        }
+        final int maxBody = contentFilter.getMaxBodyBytes();
+        final long length = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (length > maxBody) {
+            return rejected(new RejectedContentException("Body of " + length + " bytes exceeds the limit on uri: " + uri));
+        }
+        return new LimitedBody(uri, maxBody, timeoutMs, timer);
+    }
+
+    private CompletableFuture<Page> toPage(FetchRequest request, HttpResponse<byte[]> response) {
+        final String uri = request.getUri();
+        final int status = response.statusCode();
+        final HttpHeaders headers = response.headers();
+        final String etag = header(headers, "ETag");
+        final String lastModified = header(headers, "Last-Modified");
+        if (status == NOT_MODIFIED && request.isConditional()) {
+            logger.debug("Thread: {} not modified uri: {}", Thread.currentThread().getName(), uri);
+            return CompletableFuture.completedFuture(new Page(response.uri().toString(), status, null, null,
+                    response.body(), etag, lastModified));
+        }
+        if (status < 200 || status >= 300) {
+            return CompletableFuture.failedFuture(new IOException("HTTP error " + status + " on uri: " + uri));
+        }
+        final String contentType = header(headers, "Content-Type");
+        final byte[] body = response.body();
+        contentFilter.accept(uri);
+        logger.debug("Thread: {} loaded uri: {}, {} bytes", Thread.currentThread().getName(), uri, body.length);
+        return CompletableFuture.completedFuture(new Page(response.uri().toString(), status, contentType,
+                defineCharset(contentType), body, etag, lastModified));
+    }
+
+    private static String header(HttpHeaders headers, String name) {
+        return headers.firstValue(name).orElse(null);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * @return reader of the body which closes the connection right away and fails with the error
+     */
+    private static BodySubscriber<byte[]> rejected(IOException error) {
+        return new BodySubscriber<>() {
+            @Override
+            public CompletionStage<byte[]> getBody() {
+                return CompletableFuture.failedFuture(error);
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> item) {
+                // the subscription is cancelled
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                // the body has already failed
+            }
+
+            @Override
+            public void onComplete() {
+                // the body has already failed
+            }
+        };
+    }
+
+    static String defineCharset(String contentType) {
+        if (contentType == null) return null;
+        Matcher matcher = CHARSET.matcher(contentType);
+        return matcher.find() ? StringUtils.trimToNull(matcher.group(1)) : null;
+    }
+
+    private static ExecutorService buildExecutorService(int threads) {
+        return Executors.newFixedThreadPool(threads, BasicThreadFactory.builder()
+                .namingPattern("fetch-worker %d")
+                .daemon(true)
+                .build());
+    }
+
+    /**
+     * Request of the page waiting for its slot or sent
+     */
+    private static final class Exchange {
+        private final FetchRequest request;
+        private final HttpRequest httpRequest;
+        private final CompletableFuture<Page> result;
+        private final String host;
+
+        private Exchange(FetchRequest request, HttpRequest httpRequest, CompletableFuture<Page> result) {
+            this.request = request;
+            this.httpRequest = httpRequest;
+            this.result = result;
+            final URI uri = httpRequest.uri();
+            this.host = StringUtils.lowerCase(uri.getScheme() + "://" + uri.getRawAuthority());
+        }
+    }
+
+    /**
+     * Slots of the requests in flight, overall and per host
+     */
+    private static final class Slots {
+        private final int maxInFlight;
+        private final int maxPerHost;
+        private final Map<String, Integer> hosts = new HashMap<>();
+        private final Queue<Exchange> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        private Slots(int maxInFlight, int maxPerHost) {
+            this.maxInFlight = maxInFlight;
+            this.maxPerHost = maxPerHost;
+        }
+
+        /**
+         * @return {@code true} if the request takes the slot and should be sent now, else it waits
+         */
+        synchronized boolean tryStart(Exchange exchange) {
+            if (canStart(exchange)) {
+                start(exchange);
+                return true;
+            }
+            waiting.add(exchange);
+            return false;
+        }
+
+        /**
+         * Free the slot of the completed request
+         *
+         * @return the first waiting request which takes the slot now or {@code null}
+         */
+        synchronized Exchange release(Exchange exchange) {
+            inFlight--;
+            hosts.computeIfPresent(exchange.host, (host, count) -> count == 1 ? null : count - 1);
+            for (Iterator<Exchange> it = waiting.iterator(); it.hasNext(); ) {
+                final Exchange next = it.next();
+                if (canStart(next)) {
+                    it.remove();
+                    start(next);
+                    return next;
+                }
+            }
+            return null;
+        }
+
+        private boolean canStart(Exchange exchange) {
+            return inFlight < maxInFlight && hosts.getOrDefault(exchange.host, 0) < maxPerHost;
+        }
+
+        private void start(Exchange exchange) {
+            inFlight++;
+            hosts.merge(exchange.host, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Body read up to the limit and the deadline; the longer or the stalled body is aborted and its connection
+     * is closed, so the length of the chunked body is checked without reading it to the end
+     */
+    private static final class LimitedBody implements BodySubscriber<byte[]> {
+        private final String uri;
+        private final int maxBytes;
+        private final long timeoutMs;
+        private final ScheduledExecutorService timer;
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private volatile Flow.Subscription subscription;
+        private long size;
+
+        /**
+         * @param maxBytes limit of the body; the negative value drains the body without the limit and keeps nothing
+         */
+        private LimitedBody(String uri, int maxBytes, long timeoutMs, ScheduledExecutorService timer) {
+            this.uri = uri;
+            this.maxBytes = maxBytes;
+            this.timeoutMs = timeoutMs;
+            this.timer = timer;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            try {
+                final ScheduledFuture<?> deadline = timer.schedule(this::expire, timeoutMs, MILLISECONDS);
+                body.whenComplete((bytes, error) -> deadline.cancel(false));
+            } catch (RejectedExecutionException e) {
+                subscription.cancel();
+                body.completeExceptionally(new IOException("Fetcher is stopped: " + uri));
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            // the drained body keeps nothing
+            if (body.isDone() || maxBytes < 0) return;
+            for (ByteBuffer item : items) size += item.remaining();
+            if (size > maxBytes) {
+                subscription.cancel();
+                buffers.clear();
+                body.completeExceptionally(new RejectedContentException(
+                        "Body exceeds the limit of " + maxBytes + " bytes on uri: " + uri));
+                return;
+            }
+            buffers.addAll(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            buffers.clear();
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (body.isDone()) return;
+            final byte[] bytes = new byte[(int) size];
+            int offset = 0;
+            for (ByteBuffer buffer : buffers) {
+                final int length = buffer.remaining();
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            buffers.clear();
+            body.complete(bytes);
+        }
+
+        private void expire() {
+            if (body.completeExceptionally(new HttpTimeoutException(
+                    "Body is not received in " + timeoutMs + " ms on uri: " + uri))) {
+                subscription.cancel();
+            }
+        }
+    }
+}
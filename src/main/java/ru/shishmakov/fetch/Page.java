@@ -0,0 +1,109 @@
+package ru.shishmakov.fetch;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * Completed response of the {@link Fetcher}
+ */
+public class Page {
+    private final String uri;
+    private final int status;
+    private final String contentType;
+    private final String charset;
+    private final byte[] body;
+    private final String etag;
+    private final String lastModified;
+    private long contentHash;
+
+    public Page(String uri, int status, String contentType, String charset, byte[] body) {
+        this(uri, status, contentType, charset, body, null, null);
+    }
+
+    /**
+     * @param etag         value of the header {@code ETag} or {@code null}
+     * @param lastModified value of the header {@code Last-Modified} or {@code null}
+     */
+    public Page(String uri, int status, String contentType, String charset, byte[] body, String etag,
+                String lastModified) {
+        this.uri = uri;
+        this.status = status;
+        this.contentType = contentType;
+        this.charset = charset;
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return final URI of the page after redirects
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return charset from the header {@code Content-Type} or {@code null} if the server did not declare it
+     */
+    public String getCharset() {
+        return charset;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return {@code true} if the server answered {@code 304 Not Modified} to the conditional request;
+     * the body is empty then
+     */
+    public boolean isNotModified() {
+        return status == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * @return 64-bit hash of the body; it is computed once on demand
+     */
+    public long getContentHash() {
+        long hash = contentHash;
+        if (hash == 0) {
+            hash = Hashing.murmur3_128().hashBytes(body).asLong();
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    public InputStream openBody() {
+        return new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("uri", uri)
+                .add("status", status)
+                .add("contentType", contentType)
+                .add("length", body.length)
+                .toString();
+    }
+}
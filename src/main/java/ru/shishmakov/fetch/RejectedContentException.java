@@ -0,0 +1,13 @@
+package ru.shishmakov.fetch;
+
+import java.io.IOException;
+
+/**
+ * Response is aborted because its content could not be counted: the type is not accepted or the body is too long
+ */
+public class RejectedContentException extends IOException {
+
+    public RejectedContentException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.shishmakov.frontier;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * URL claimed by the {@link UrlFrontier} and waiting for the fetch
+ */
+public final class FrontierItem {
+    private final String uri;
+    private final int level;
+    private final long fingerprint;
+
+    FrontierItem(String uri, int level, long fingerprint) {
+        this.uri = uri;
+        this.level = level;
+        this.fingerprint = fingerprint;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return distance from the seed URL; the seed itself has level {@code 0}
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return fingerprint of the simplified URL claimed in the visited set
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("uri", uri)
+                .add("level", level)
+                .toString();
+    }
+}
@@ -0,0 +1,29 @@
+package ru.shishmakov.frontier;
+
+/**
+ * Share of the URL space crawled by this node when the frontier is split between several nodes.
+ * <p>
+ * URLs of the other nodes are forwarded to their owners instead of the claim, and the frontier opens the next level
+ * only when all nodes complete the current one, so every URL is still claimed at its minimal distance from the seed.
+ */
+public interface FrontierPartition {
+
+    /**
+     * @return {@code true} if the URL of the fingerprint is claimed and fetched by this node
+     */
+    boolean isLocal(long fingerprint);
+
+    /**
+     * Hand the URL over to the node that owns it
+     */
+    void forward(String uri, int level, long fingerprint);
+
+    /**
+     * Wait until every node completes the level and the links forwarded to this node are received
+     *
+     * @param level  the completed level
+     * @param queued number of items queued on the next level of this node
+     * @return {@code true} if the next level is opened; {@code false} if the crawl is finished
+     */
+    boolean awaitLevel(int level, int queued) throws InterruptedException;
+}
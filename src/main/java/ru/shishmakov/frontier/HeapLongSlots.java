@@ -0,0 +1,39 @@
+package ru.shishmakov.frontier;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link LongSlots} on the heap
+ */
+class HeapLongSlots implements LongSlots {
+    private final AtomicLongArray slots;
+
+    HeapLongSlots(int length) {
+        this.slots = new AtomicLongArray(length);
+    }
+
+    @Override
+    public int length() {
+        return slots.length();
+    }
+
+    @Override
+    public long get(int index) {
+        return slots.get(index);
+    }
+
+    @Override
+    public boolean compareAndSet(int index, long expect, long update) {
+        return slots.compareAndSet(index, expect, update);
+    }
+
+    @Override
+    public long bytes() {
+        return (long) slots.length() * Long.BYTES;
+    }
+
+    @Override
+    public void close() {
+        // memory is managed by GC
+    }
+}
@@ -0,0 +1,21 @@
+package ru.shishmakov.frontier;
+
+/**
+ * Fixed-size array of atomic {@code long} slots; {@code 0} is the value of an empty slot
+ */
+interface LongSlots extends AutoCloseable {
+
+    int length();
+
+    long get(int index);
+
+    boolean compareAndSet(int index, long expect, long update);
+
+    /**
+     * @return size of the memory allocated by the slots
+     */
+    long bytes();
+
+    @Override
+    void close();
+}
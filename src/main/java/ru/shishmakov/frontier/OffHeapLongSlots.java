@@ -0,0 +1,63 @@
+package ru.shishmakov.frontier;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link LongSlots} in the native memory out of the heap; the memory is released by {@link #close()}
+ */
+class OffHeapLongSlots implements LongSlots {
+    private static final Unsafe UNSAFE = loadUnsafe();
+
+    private final int length;
+    private final long address;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    OffHeapLongSlots(int length) {
+        this.length = length;
+        this.address = UNSAFE.allocateMemory(bytes());
+        UNSAFE.setMemory(address, bytes(), (byte) 0);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public long get(int index) {
+        return UNSAFE.getLongVolatile(null, offset(index));
+    }
+
+    @Override
+    public boolean compareAndSet(int index, long expect, long update) {
+        return UNSAFE.compareAndSwapLong(null, offset(index), expect, update);
+    }
+
+    @Override
+    public long bytes() {
+        return (long) length * Long.BYTES;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) UNSAFE.freeMemory(address);
+    }
+
+    private long offset(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index: " + index);
+        return address + (long) index * Long.BYTES;
+    }
+
+    private static Unsafe loadUnsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Off-heap memory is not available", e);
+        }
+    }
+}
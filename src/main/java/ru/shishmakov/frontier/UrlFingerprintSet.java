@@ -0,0 +1,283 @@
+package ru.shishmakov.frontier;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Concurrent open-addressing set of 64-bit fingerprints of visited URIs.
+ * <p>
+ * A slot costs 8 bytes regardless of the length of the URI; the slots could live out of the heap.
+ * Writers insert by CAS under the shared lock; the table grows under the exclusive lock
+ * when the load factor is exceeded. Two different URIs with the same fingerprint are indistinguishable:
+ * the probability of this is reported by {@link #stats()}.
+ */
+public class UrlFingerprintSet implements AutoCloseable {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final long EMPTY = 0;
+    private static final double FINGERPRINT_SPACE = Math.pow(2, 64);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final double maxLoadFactor;
+    private final int growthFactor;
+    private final boolean offHeap;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger maxProbe = new AtomicInteger();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private volatile LongSlots slots;
+    private volatile int threshold;
+
+    /**
+     * @param capacity      initial number of slots, rounded up to the power of two
+     * @param maxLoadFactor part of occupied slots which triggers the growth
+     * @param growthFactor  multiplier of the capacity on growth, rounded up to the power of two
+     * @param offHeap       allocate slots in the native memory
+     */
+    public UrlFingerprintSet(int capacity, double maxLoadFactor, int growthFactor, boolean offHeap) {
+        checkArgument(capacity > 0, "capacity should be positive: %s", capacity);
+        checkArgument(maxLoadFactor > 0 && maxLoadFactor < 1, "load factor should be in (0, 1): %s", maxLoadFactor);
+        checkArgument(growthFactor > 1, "growth factor should be more than 1: %s", growthFactor);
+        this.maxLoadFactor = maxLoadFactor;
+        this.growthFactor = Integer.highestOneBit(growthFactor - 1) << 1;
+        this.offHeap = offHeap;
+        allocate(Integer.highestOneBit(Math.max(2, capacity) - 1) << 1);
+    }
+
+    /**
+     * @return 64-bit fingerprint of the simplified URI, never {@code 0}
+     */
+    public static long fingerprint(CharSequence uri) {
+        final long fingerprint = HASH.hashUnencodedChars(uri).asLong();
+        return fingerprint == EMPTY ? 1 : fingerprint;
+    }
+
+    /**
+     * Atomically add the fingerprint of the URI
+     *
+     * @return {@code true} if the URI was not in the set
+     */
+    public boolean addIfAbsent(CharSequence uri) {
+        return addIfAbsent(fingerprint(uri));
+    }
+
+    /**
+     * Atomically add the fingerprint
+     *
+     * @return {@code true} if the fingerprint was not in the set
+     */
+    public boolean addIfAbsent(long fingerprint) {
+        checkArgument(fingerprint != EMPTY, "fingerprint should not be 0");
+        final boolean added;
+        lock.readLock().lock();
+        try {
+            added = insert(slots, fingerprint, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (added && size.incrementAndGet() > threshold) grow();
+        return added;
+    }
+
+    public boolean contains(CharSequence uri) {
+        return contains(fingerprint(uri));
+    }
+
+    public boolean contains(long fingerprint) {
+        lock.readLock().lock();
+        try {
+            final LongSlots table = slots;
+            final int mask = table.length() - 1;
+            for (int index = spread(fingerprint) & mask; ; index = (index + 1) & mask) {
+                final long value = table.get(index);
+                if (value == fingerprint) return true;
+                if (value == EMPTY) return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Visit all fingerprints; concurrent inserts could be missed
+     */
+    public void forEach(LongConsumer action) {
+        lock.readLock().lock();
+        try {
+            final LongSlots table = slots;
+            for (int i = 0; i < table.length(); i++) {
+                final long value = table.get(i);
+                if (value != EMPTY) action.accept(value);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(size.get(), slots.length(), slots.bytes(), inserts.sum(), probes.sum(), maxProbe.get());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            slots.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", size.get())
+                .add("offHeap", offHeap)
+                .toString();
+    }
+
+    private boolean insert(LongSlots table, long fingerprint, boolean track) {
+        final int mask = table.length() - 1;
+        int probe = 0;
+        for (int index = spread(fingerprint) & mask; ; index = (index + 1) & mask, probe++) {
+            long value = table.get(index);
+            if (value == EMPTY) {
+                if (table.compareAndSet(index, EMPTY, fingerprint)) {
+                    if (track) trackProbe(probe);
+                    return true;
+                }
+                value = table.get(index);
+            }
+            if (value == fingerprint) return false;
+        }
+    }
+
+    private void trackProbe(int probe) {
+        inserts.increment();
+        if (probe == 0) return;
+        probes.add(probe);
+        maxProbe.accumulateAndGet(probe, Math::max);
+    }
+
+    private void grow() {
+        lock.writeLock().lock();
+        try {
+            if (size.get() <= threshold) return;
+            final LongSlots old = slots;
+            allocate(old.length() * growthFactor);
+            for (int i = 0; i < old.length(); i++) {
+                final long value = old.get(i);
+                if (value != EMPTY) insert(slots, value, false);
+            }
+            old.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void allocate(int capacity) {
+        checkArgument(capacity > 0, "capacity is exceeded");
+        this.slots = offHeap ? new OffHeapLongSlots(capacity) : new HeapLongSlots(capacity);
+        this.threshold = (int) (capacity * maxLoadFactor);
+    }
+
+    private static int spread(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    /**
+     * Statistics to size the set
+     */
+    public static class Stats {
+        private final int size;
+        private final int capacity;
+        private final long bytes;
+        private final long inserts;
+        private final long probes;
+        private final int maxProbe;
+
+        Stats(int size, int capacity, long bytes, long inserts, long probes, int maxProbe) {
+            this.size = size;
+            this.capacity = capacity;
+            this.bytes = bytes;
+            this.inserts = inserts;
+            this.probes = probes;
+            this.maxProbe = maxProbe;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getLoadFactor() {
+            return (double) size / capacity;
+        }
+
+        /**
+         * @return average number of occupied slots passed by one insert: collisions of the open addressing
+         */
+        public double getAverageProbe() {
+            return inserts == 0 ? 0 : (double) probes / inserts;
+        }
+
+        public int getMaxProbe() {
+            return maxProbe;
+        }
+
+        /**
+         * @return probability that a new URI is taken as visited because its fingerprint is already in the set
+         */
+        public double getFalsePositiveRate() {
+            return size / FINGERPRINT_SPACE;
+        }
+
+        /**
+         * @return expected number of visited URIs which share the fingerprint with another one
+         */
+        public double getExpectedFalsePositives() {
+            return (double) size * size / (2 * FINGERPRINT_SPACE);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("size", size)
+                    .add("capacity", capacity)
+                    .add("bytes", bytes)
+                    .add("loadFactor", String.format("%.3f", getLoadFactor()))
+                    .add("averageProbe", String.format("%.3f", getAverageProbe()))
+                    .add("maxProbe", maxProbe)
+                    .add("falsePositiveRate", getFalsePositiveRate())
+                    .add("expectedFalsePositives", getExpectedFalsePositives())
+                    .toString();
+        }
+    }
+}
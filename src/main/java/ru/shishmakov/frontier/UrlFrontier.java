@@ -0,0 +1,262 @@
+package ru.shishmakov.frontier;
+
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Breadth-first queue of URLs for the one crawl.
+ * <p>
+ * Every URL is claimed in the visited set exactly once at the moment it is offered, so concurrent workers never
+ * fetch the same page twice. Items are handed out level by level: the next level is opened only after all items of
+ * the current one are {@link #complete(FrontierItem) completed}, therefore each URL is claimed at its minimal
+ * distance from the seed and is able to contribute its own links.
+ * <p>
+ * The number of items taken but not completed yet is bounded by {@code maxInFlight}.
+ * <p>
+ * The frontier of the {@link FrontierPartition partition} claims only its own URLs and forwards the others;
+ * the next level is opened after all partitions complete the current one.
+ */
+public class UrlFrontier {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final UrlFingerprintSet visited;
+    private final int maxLevel;
+    private final int maxInFlight;
+    private final List<ArrayDeque<FrontierItem>> levels;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Set<FrontierItem> inFlightItems = Sets.newIdentityHashSet();
+    private final FrontierPartition partition;
+    private int currentLevel;
+    private long completed;
+    private boolean awaitingLevel;
+    private boolean finished;
+
+    /**
+     * @param visited     set of claimed URLs
+     * @param maxLevel    the deepest level of the crawl; the seed has level {@code 0}
+     * @param maxInFlight the maximum number of items taken but not completed
+     */
+    public UrlFrontier(UrlFingerprintSet visited, int maxLevel, int maxInFlight) {
+        this(visited, maxLevel, maxInFlight, null);
+    }
+
+    /**
+     * @param partition share of the URL space of this node or {@code null} to crawl all URLs
+     */
+    public UrlFrontier(UrlFingerprintSet visited, int maxLevel, int maxInFlight, FrontierPartition partition) {
+        checkArgument(maxLevel >= 0, "max level should be not negative: %s", maxLevel);
+        checkArgument(maxInFlight > 0, "max in flight should be positive: %s", maxInFlight);
+        this.visited = visited;
+        this.maxLevel = maxLevel;
+        this.maxInFlight = maxInFlight;
+        this.partition = partition;
+        this.levels = new ArrayList<>(maxLevel + 1);
+        for (int i = 0; i <= maxLevel; i++) levels.add(new ArrayDeque<>());
+    }
+
+    /**
+     * Claim the URL and put it in the queue of the level
+     *
+     * @param uri   normalized URL to fetch
+     * @param key   simplified form of the URL used to detect the visited pages
+     * @param level distance from the seed URL
+     * @return {@code true} if the URL is queued; {@code false} if it is too deep or is already claimed
+     */
+    public boolean offer(String uri, String key, int level) {
+        final FrontierItem item = claim(uri, key, level);
+        if (item != null) enqueue(item);
+        return item != null;
+    }
+
+    /**
+     * Claim the URL without putting it in the queue; the claimed item should be {@link #enqueue(FrontierItem)
+     * enqueued} later, e.g. after it is recorded in the checkpoint log
+     *
+     * @return the claimed item or {@code null} if the URL is too deep, is already claimed or is forwarded
+     * to the other partition
+     */
+    public FrontierItem claim(String uri, String key, int level) {
+        if (level < 0 || level > maxLevel) return null;
+        final long fingerprint = UrlFingerprintSet.fingerprint(key);
+        if (partition != null && !partition.isLocal(fingerprint)) {
+            partition.forward(uri, level, fingerprint);
+            return null;
+        }
+        return visited.addIfAbsent(fingerprint) ? new FrontierItem(uri, level, fingerprint) : null;
+    }
+
+    /**
+     * Claim the URL forwarded by the other partition and put it in the queue
+     *
+     * @return {@code true} if the URL is queued; {@code false} if it is too deep or is already claimed
+     */
+    public boolean accept(String uri, int level, long fingerprint) {
+        if (level < 0 || level > maxLevel || !visited.addIfAbsent(fingerprint)) return false;
+        enqueue(new FrontierItem(uri, level, fingerprint));
+        return true;
+    }
+
+    /**
+     * Put the claimed item in the queue of its level
+     */
+    public void enqueue(FrontierItem item) {
+        checkArgument(item.getLevel() >= 0 && item.getLevel() <= maxLevel, "invalid level of item: %s", item);
+        lock.lock();
+        try {
+            levels.get(item.getLevel()).addLast(item);
+            if (item.getLevel() == currentLevel) changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put the item restored from the checkpoint in the queue; its URL should be claimed in the visited set already
+     */
+    public void restore(String uri, int level, long fingerprint) {
+        enqueue(new FrontierItem(uri, level, fingerprint));
+    }
+
+    /**
+     * @return the queued items and the items taken but not completed yet
+     */
+    public List<FrontierItem> pending() {
+        lock.lock();
+        try {
+            final List<FrontierItem> pending = new ArrayList<>(inFlightItems);
+            for (ArrayDeque<FrontierItem> level : levels) pending.addAll(level);
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieve the next URL, waiting until the current level yields one or the in-flight limit allows it
+     *
+     * @return the next item or {@code null} if the crawl is finished
+     */
+    public FrontierItem take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (finished) return null;
+                if (inFlightItems.size() < maxInFlight) {
+                    final FrontierItem item = levels.get(currentLevel).pollFirst();
+                    if (item != null) {
+                        inFlightItems.add(item);
+                        return item;
+                    }
+                }
+                if (inFlightItems.isEmpty() && !awaitingLevel) {
+                    if (partition == null ? nextLevel() : awaitLevel()) continue;
+                    finished = true;
+                    changed.signalAll(); // wake up the other consumers to finish too
+                    return null;
+                }
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark the item as processed; links of the page should be offered before this call
+     */
+    public void complete(FrontierItem item) {
+        lock.lock();
+        try {
+            checkArgument(inFlightItems.remove(item), "item is not in flight: %s", item);
+            completed++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    public int getCurrentLevel() {
+        lock.lock();
+        try {
+            return currentLevel;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of queued items on all levels
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            int queued = 0;
+            for (ArrayDeque<FrontierItem> level : levels) queued += level.size();
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCompleted() {
+        lock.lock();
+        try {
+            return completed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the other partitions without the lock, so the forwarded links could be enqueued meanwhile
+     */
+    private boolean awaitLevel() throws InterruptedException {
+        final int level = currentLevel;
+        final int queued = level < maxLevel ? levels.get(level + 1).size() : 0;
+        awaitingLevel = true;
+        lock.unlock();
+        boolean opened = false;
+        try {
+            opened = partition.awaitLevel(level, queued) && level < maxLevel;
+        } finally {
+            lock.lock();
+            awaitingLevel = false;
+            changed.signalAll();
+        }
+        if (!opened) return false;
+        levels.set(level, new ArrayDeque<>(0));
+        logger.debug("Frontier level {} is completed by all partitions; open level {}, queued: {}",
+                level, level + 1, levels.get(level + 1).size());
+        currentLevel = level + 1;
+        return true;
+    }
+
+    private boolean nextLevel() {
+        for (int level = currentLevel + 1; level <= maxLevel; level++) {
+            if (!levels.get(level).isEmpty()) {
+                levels.set(currentLevel, new ArrayDeque<>(0));
+                logger.debug("Frontier level {} is completed; open level {}, queued: {}",
+                        currentLevel, level, levels.get(level).size());
+                currentLevel = level;
+                return true;
+            }
+        }
+        return false;
+    }
+}
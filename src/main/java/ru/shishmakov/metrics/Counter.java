@@ -0,0 +1,42 @@
+package ru.shishmakov.metrics;
+
+/**
+ * Monotonic counter of the crawl events
+ */
+public enum Counter {
+    PAGES_FETCHED,
+    PAGES_FAILED,
+    /**
+     * Responses aborted as the content of other types or too long; they are not counted as failed
+     */
+    PAGES_REJECTED,
+    /**
+     * Pages answered {@code 304 Not Modified}; their words and links are taken from the page cache
+     */
+    PAGES_NOT_MODIFIED,
+    /**
+     * Pages fetched with the same content as in the page cache; they are not parsed
+     */
+    PAGES_UNCHANGED,
+    /**
+     * Pages near duplicate to the counted ones; their words are not counted
+     */
+    PAGES_DUPLICATE,
+    BYTES_DOWNLOADED,
+    /**
+     * Links found on the pages
+     */
+    LINKS_DISCOVERED,
+    /**
+     * Links rejected by the rules, the depth or as visited ones; links forwarded to the other nodes are here too
+     */
+    LINKS_FILTERED,
+    /**
+     * Links handed over to the nodes those own them in the distributed crawl
+     */
+    LINKS_FORWARDED,
+    /**
+     * Links added to the frontier
+     */
+    LINKS_ENQUEUED
+}
@@ -0,0 +1,236 @@
+package ru.shishmakov.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.fetch.RejectedContentException;
+import ru.shishmakov.frontier.UrlFingerprintSet;
+import ru.shishmakov.frontier.UrlFrontier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the crawl metrics: latency histograms of the {@link Phase phases} and {@link Counter counters}
+ * of events, published as the MXBean {@value #OBJECT_NAME}.
+ * <p>
+ * The record is a few atomic operations, so the metrics are always on. The registry is shared by all crawls of
+ * the JVM, e.g. by the sites of the batch, so its counters and the sizes of the watched crawls are the totals
+ * of the run.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String OBJECT_NAME = "ru.shishmakov:type=CrawlMetrics";
+    private static final String NAME = CrawlMetrics.class.getSimpleName();
+
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+    private final Set<UrlFrontier> frontiers = ConcurrentHashMap.newKeySet();
+    private final Set<UrlFingerprintSet> visitedSets = ConcurrentHashMap.newKeySet();
+    private final Set<WordCounter> wordCounters = ConcurrentHashMap.newKeySet();
+    private ObjectName objectName;
+
+    public CrawlMetrics() {
+        for (Phase phase : Phase.values()) latencies.put(phase, new LatencyHistogram());
+        for (Counter counter : Counter.values()) counters.put(counter, new LongAdder());
+    }
+
+    @PostConstruct
+    public void setUp() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            // the other application context of the same JVM is already published
+            for (int id = 2; server.isRegistered(name); id++) name = new ObjectName(OBJECT_NAME + ",id=" + id);
+            server.registerMBean(this, name);
+            this.objectName = name;
+            logger.info("{} published as {}", NAME, name);
+        } catch (Exception e) {
+            logger.error("{} error on publish MBean", NAME, e);
+        }
+    }
+
+    @PreDestroy
+    public void tearDown() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            logger.error("{} error on unpublish MBean", NAME, e);
+        }
+    }
+
+    ObjectName objectName() {
+        return objectName;
+    }
+
+    public LatencyHistogram latency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    public void increment(Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.get(counter).add(delta);
+    }
+
+    /**
+     * Record the completed request of the page
+     *
+     * @param startNanos {@link System#nanoTime()} at the start of the request
+     * @param page       loaded page or {@code null} if the request is failed
+     */
+    public void recordFetch(long startNanos, Page page, Throwable error) {
+        latency(Phase.FETCH).recordSince(startNanos);
+        if (error instanceof RejectedContentException) {
+            increment(Counter.PAGES_REJECTED);
+        } else if (error != null) {
+            increment(Counter.PAGES_FAILED);
+        } else {
+            increment(Counter.PAGES_FETCHED);
+            add(Counter.BYTES_DOWNLOADED, page.getBody().length);
+        }
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     * Watch the sizes of the frontier, the visited URIs and the counted words of the running crawl
+     */
+    public void watch(UrlFrontier frontier, UrlFingerprintSet visited, WordCounter wordCounter) {
+        frontiers.add(frontier);
+        visitedSets.add(visited);
+        wordCounters.add(wordCounter);
+    }
+
+    public void unwatch(UrlFrontier frontier, UrlFingerprintSet visited, WordCounter wordCounter) {
+        frontiers.remove(frontier);
+        visitedSets.remove(visited);
+        wordCounters.remove(wordCounter);
+    }
+
+    @Override
+    public LatencySnapshot getRateLimitWait() {
+        return latency(Phase.RATE_LIMIT_WAIT).snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getFetch() {
+        return latency(Phase.FETCH).snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getParse() {
+        return latency(Phase.PARSE).snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getTokenize() {
+        return latency(Phase.TOKENIZE).snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getCount() {
+        return latency(Phase.COUNT).snapshot();
+    }
+
+    @Override
+    public long getPagesFetched() {
+        return get(Counter.PAGES_FETCHED);
+    }
+
+    @Override
+    public long getPagesFailed() {
+        return get(Counter.PAGES_FAILED);
+    }
+
+    @Override
+    public long getPagesRejected() {
+        return get(Counter.PAGES_REJECTED);
+    }
+
+    @Override
+    public long getPagesNotModified() {
+        return get(Counter.PAGES_NOT_MODIFIED);
+    }
+
+    @Override
+    public long getPagesUnchanged() {
+        return get(Counter.PAGES_UNCHANGED);
+    }
+
+    @Override
+    public long getPagesDuplicate() {
+        return get(Counter.PAGES_DUPLICATE);
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return get(Counter.BYTES_DOWNLOADED);
+    }
+
+    @Override
+    public long getLinksDiscovered() {
+        return get(Counter.LINKS_DISCOVERED);
+    }
+
+    @Override
+    public long getLinksFiltered() {
+        return get(Counter.LINKS_FILTERED);
+    }
+
+    @Override
+    public long getLinksForwarded() {
+        return get(Counter.LINKS_FORWARDED);
+    }
+
+    @Override
+    public long getLinksEnqueued() {
+        return get(Counter.LINKS_ENQUEUED);
+    }
+
+    @Override
+    public int getQueuedUrls() {
+        int queued = 0;
+        for (UrlFrontier frontier : frontiers) queued += frontier.getQueued();
+        return queued;
+    }
+
+    @Override
+    public int getVisitedSize() {
+        int size = 0;
+        for (UrlFingerprintSet visited : visitedSets) size += visited.size();
+        return size;
+    }
+
+    @Override
+    public int getVocabularySize() {
+        int size = 0;
+        for (WordCounter wordCounter : wordCounters) size += wordCounter.size();
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder(NAME).append('{');
+        counters.forEach((counter, value) -> result.append(counter).append('=').append(value.sum()).append(", "));
+        result.append("QUEUED_URLS=").append(getQueuedUrls());
+        latencies.forEach((phase, histogram) -> result.append(",\n").append(phase).append('=').append(histogram.snapshot()));
+        return result.append('}').toString();
+    }
+}
@@ -0,0 +1,46 @@
+package ru.shishmakov.metrics;
+
+/**
+ * Metrics of the running crawls for JConsole and other JMX clients; latencies are in milliseconds, the sizes
+ * are summed over the running crawls
+ */
+public interface CrawlMetricsMXBean {
+
+    LatencySnapshot getRateLimitWait();
+
+    LatencySnapshot getFetch();
+
+    LatencySnapshot getParse();
+
+    LatencySnapshot getTokenize();
+
+    LatencySnapshot getCount();
+
+    long getPagesFetched();
+
+    long getPagesFailed();
+
+    long getPagesRejected();
+
+    long getPagesNotModified();
+
+    long getPagesUnchanged();
+
+    long getPagesDuplicate();
+
+    long getBytesDownloaded();
+
+    long getLinksDiscovered();
+
+    long getLinksFiltered();
+
+    long getLinksForwarded();
+
+    long getLinksEnqueued();
+
+    int getQueuedUrls();
+
+    int getVisitedSize();
+
+    int getVocabularySize();
+}
@@ -0,0 +1,107 @@
+package ru.shishmakov.metrics;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with log-linear buckets like the HDR histogram.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} linear buckets, so any recorded value is kept with
+ * the relative error under 1/{@value #SUB_BUCKETS} in the fixed array of counters and the record is a few atomic
+ * increments without allocations.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Record the time elapsed since the start
+     *
+     * @param startNanos value of {@link System#nanoTime()} at the start
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @param percentile value in range {@code (0, 1]}
+     * @return the highest value equivalent to the recorded value of the percentile in nanoseconds
+     */
+    public long percentile(double percentile) {
+        checkArgument(percentile > 0 && percentile <= 1, "percentile should be in range (0, 1]: %s", percentile);
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        if (total == 0) return 0;
+
+        final long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestEquivalentValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    public LatencySnapshot snapshot() {
+        final long count = getCount();
+        return new LatencySnapshot(count,
+                count == 0 ? 0 : toMillis(sum.sum() / (double) count),
+                toMillis(percentile(0.5)),
+                toMillis(percentile(0.9)),
+                toMillis(percentile(0.99)),
+                toMillis(max.get()));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("count", getCount())
+                .add("p50", percentile(0.5))
+                .add("p99", percentile(0.99))
+                .add("max", max.get())
+                .toString();
+    }
+
+    static int index(long value) {
+        final int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        final long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.shishmakov.metrics;
+
+import com.google.common.base.MoreObjects;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Immutable view of {@link LatencyHistogram} in milliseconds; it is the composite attribute of the MXBean
+ */
+public class LatencySnapshot {
+    private final long count;
+    private final double meanMs;
+    private final double p50Ms;
+    private final double p90Ms;
+    private final double p99Ms;
+    private final double maxMs;
+
+    @ConstructorProperties({"count", "meanMs", "p50Ms", "p90Ms", "p99Ms", "maxMs"})
+    public LatencySnapshot(long count, double meanMs, double p50Ms, double p90Ms, double p99Ms, double maxMs) {
+        this.count = count;
+        this.meanMs = meanMs;
+        this.p50Ms = p50Ms;
+        this.p90Ms = p90Ms;
+        this.p99Ms = p99Ms;
+        this.maxMs = maxMs;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMs() {
+        return meanMs;
+    }
+
+    public double getP50Ms() {
+        return p50Ms;
+    }
+
+    public double getP90Ms() {
+        return p90Ms;
+    }
+
+    public double getP99Ms() {
+        return p99Ms;
+    }
+
+    public double getMaxMs() {
+        return maxMs;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("count", count)
+                .add("meanMs", String.format("%.3f", meanMs))
+                .add("p50Ms", String.format("%.3f", p50Ms))
+                .add("p90Ms", String.format("%.3f", p90Ms))
+                .add("p99Ms", String.format("%.3f", p99Ms))
+                .add("maxMs", String.format("%.3f", maxMs))
+                .toString();
+    }
+}
@@ -0,0 +1,27 @@
+package ru.shishmakov.metrics;
+
+/**
+ * Timed stage of the page processing
+ */
+public enum Phase {
+    /**
+     * Wait of the permit of the global rate limiter
+     */
+    RATE_LIMIT_WAIT,
+    /**
+     * From the request till the whole body is loaded
+     */
+    FETCH,
+    /**
+     * Extraction of text and links without the tokenize time
+     */
+    PARSE,
+    /**
+     * Split of the text into words and their count in the page histogram
+     */
+    TOKENIZE,
+    /**
+     * Merge of the page histogram into the shared counter
+     */
+    COUNT
+}
@@ -0,0 +1,18 @@
+package ru.shishmakov.parse;
+
+import ru.shishmakov.fetch.Page;
+
+import java.io.IOException;
+
+/**
+ * Extracts text of the body and links from the loaded page
+ */
+public interface ContentExtractor {
+
+    /**
+     * @param page    loaded page
+     * @param baseUri URI to resolve relative links
+     * @param handler receiver of text runs and links
+     */
+    void extract(Page page, String baseUri, PageHandler handler) throws IOException;
+}
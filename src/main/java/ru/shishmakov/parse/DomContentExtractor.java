@@ -0,0 +1,50 @@
+package ru.shishmakov.parse;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.util.CrawlerUtil;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Objects;
+
+/**
+ * {@link ContentExtractor} over the Jsoup document of the page
+ */
+public class DomContentExtractor implements ContentExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    @Inject
+    private CrawlerUtil crawlerUtil;
+
+    @Override
+    public void extract(Page page, String baseUri, PageHandler handler) throws IOException {
+        Document doc = Jsoup.parse(page.openBody(), page.getCharset(), baseUri);
+        Element body = doc.body();
+        if (Objects.isNull(body)) {
+            logger.warn("Page: {} has no body", page.getUri());
+        } else {
+            new NodeTraversor(new NodeVisitor() {
+                @Override
+                public void head(Node node, int depth) {
+                    if (node instanceof TextNode) handler.text(((TextNode) node).getWholeText());
+                }
+
+                @Override
+                public void tail(Node node, int depth) {
+                    // do nothing
+                }
+            }).traverse(body);
+        }
+        crawlerUtil.getStreamHrefLinks(doc).forEach(handler::link);
+    }
+}
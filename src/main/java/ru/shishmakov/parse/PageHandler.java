@@ -0,0 +1,18 @@
+package ru.shishmakov.parse;
+
+/**
+ * Receiver of the content extracted from the page
+ */
+public interface PageHandler {
+
+    /**
+     * Text run of the body between two tags; entities are already decoded.
+     * The sequence is valid only during the call.
+     */
+    void text(CharSequence text);
+
+    /**
+     * Absolute URI of the link {@code <a href>}
+     */
+    void link(String uri);
+}
@@ -0,0 +1,15 @@
+package ru.shishmakov.parse;
+
+/**
+ * Implementations of {@link ContentExtractor} selectable by configuration
+ */
+public enum ParseMode {
+    /**
+     * Build Jsoup document and traverse it: {@link DomContentExtractor}
+     */
+    DOM,
+    /**
+     * One pass over the markup without a tree: {@link StreamingContentExtractor}
+     */
+    STREAM
+}
@@ -0,0 +1,322 @@
+package ru.shishmakov.parse;
+
+import org.jsoup.helper.StringUtil;
+import org.jsoup.parser.Parser;
+import ru.shishmakov.fetch.Page;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link ContentExtractor} which tokenizes the markup straight from the stream of the body.
+ * <p>
+ * Text runs of the body and links are emitted in one pass without building a tree of nodes.
+ * The scanner follows the rules of the Jsoup tree builder that affect the result: the body starts
+ * implicitly on the first content outside the head, contents of scripts and styles are skipped,
+ * {@code <base href>} changes the base URI of links.
+ */
+public class StreamingContentExtractor implements ContentExtractor {
+    private static final int SNIFF_LENGTH = 1024;
+    private static final Pattern META_CHARSET = Pattern.compile("(?i)<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)");
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @Override
+    public void extract(Page page, String baseUri, PageHandler handler) throws IOException {
+        final Charset charset = defineCharset(page);
+        try (InputStream in = page.openBody()) {
+            if (startsWithBom(page.getBody())) in.skip(UTF8_BOM.length);
+            new HtmlScanner(new InputStreamReader(in, charset), baseUri, handler).scan();
+        }
+    }
+
+    /**
+     * @return charset of the BOM, then of the Content-Type, then of the {@code <meta>} in the head, else UTF-8
+     */
+    static Charset defineCharset(Page page) {
+        if (startsWithBom(page.getBody())) return StandardCharsets.UTF_8;
+        Charset charset = forName(page.getCharset());
+        if (charset != null) return charset;
+        String head = new String(page.getBody(), 0, Math.min(SNIFF_LENGTH, page.getBody().length), StandardCharsets.ISO_8859_1);
+        Matcher matcher = META_CHARSET.matcher(head);
+        charset = matcher.find() ? forName(matcher.group(1)) : null;
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    private static Charset forName(String name) {
+        try {
+            return name != null && Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean startsWithBom(byte[] body) {
+        return body.length >= UTF8_BOM.length
+                && body[0] == UTF8_BOM[0] && body[1] == UTF8_BOM[1] && body[2] == UTF8_BOM[2];
+    }
+
+    /**
+     * One-pass scanner of the markup
+     */
+    static class HtmlScanner {
+        private static final int EOF = -1;
+        private static final Set<String> HEAD_TAGS = new HashSet<>(Arrays.asList("html", "head", "title", "meta",
+                "link", "style", "script", "base", "basefont", "bgsound", "noscript", "template"));
+        private static final Set<String> RAW_TEXT_TAGS = new HashSet<>(Arrays.asList("script", "style", "xmp",
+                "iframe", "noembed", "noframes"));
+        private static final Set<String> RC_DATA_TAGS = new HashSet<>(Arrays.asList("title", "textarea"));
+
+        private final Reader reader;
+        private final PageHandler handler;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder text = new StringBuilder();
+        private final StringBuilder token = new StringBuilder();
+        private int position;
+        private int limit;
+        private int pushback = EOF;
+        private String baseUri;
+        private boolean baseDefined;
+        private boolean inBody;
+
+        HtmlScanner(Reader reader, String baseUri, PageHandler handler) {
+            this.reader = reader;
+            this.baseUri = baseUri;
+            this.handler = handler;
+        }
+
+        void scan() throws IOException {
+            int c;
+            while ((c = read()) != EOF) {
+                if (c == '<') markup();
+                else text.append((char) c);
+            }
+            flushText();
+        }
+
+        private void markup() throws IOException {
+            final int c = read();
+            if (c == '!') {
+                flushText();
+                final int next = read();
+                if (next == '-' && read() == '-') skipComment();
+                else if (next != '>') skipUntil('>');
+            } else if (c == '?') {
+                flushText();
+                skipUntil('>');
+            } else if (c == '/') {
+                final int next = read();
+                if (isLetter(next)) {
+                    flushText();
+                    endTag(next);
+                } else if (next != '>') {
+                    // bogus comment
+                    flushText();
+                    skipUntil('>');
+                }
+            } else if (isLetter(c)) {
+                flushText();
+                startTag(c);
+            } else {
+                text.append('<');
+                unread(c);
+            }
+        }
+
+        private void startTag(int first) throws IOException {
+            final String name = readName(first);
+            String href = null;
+            int c;
+            while ((c = read()) != EOF && c != '>') {
+                if (isWhitespace(c) || c == '/') continue;
+                final String attribute = readName(c);
+                c = skipWhitespace();
+                if (c == '=') {
+                    final String value = readValue();
+                    if (href == null && "href".equals(attribute)) href = value;
+                } else {
+                    unread(c);
+                }
+            }
+
+            if (!inBody && !HEAD_TAGS.contains(name)) inBody = true;
+            if ("body".equals(name)) inBody = true;
+            else if ("a".equals(name) && href != null) handler.link(StringUtil.resolve(baseUri, unescape(href, true)));
+            else if ("base".equals(name) && href != null && !baseDefined) {
+                baseDefined = true;
+                baseUri = StringUtil.resolve(baseUri, unescape(href, true));
+            }
+
+            if (RAW_TEXT_TAGS.contains(name)) {
+                skipRawText(name, null);
+            } else if (RC_DATA_TAGS.contains(name)) {
+                skipRawText(name, text);
+                if (inBody) flushText();
+                else text.setLength(0);
+            }
+        }
+
+        private void endTag(int first) throws IOException {
+            readName(first);
+            skipUntil('>');
+        }
+
+        /**
+         * @return lower case name of a tag or an attribute
+         */
+        private String readName(int first) throws IOException {
+            token.setLength(0);
+            int c = first;
+            while (c != EOF && !isWhitespace(c) && c != '>' && c != '/' && c != '=') {
+                token.append(Character.toLowerCase((char) c));
+                c = read();
+            }
+            unread(c);
+            if (token.length() == 0 && c == '=') {
+                // attribute name could start with '='
+                token.append((char) read());
+            }
+            return token.toString();
+        }
+
+        private String readValue() throws IOException {
+            token.setLength(0);
+            int c = skipWhitespace();
+            if (c == '"' || c == '\'') {
+                final int quote = c;
+                while ((c = read()) != EOF && c != quote) token.append((char) c);
+            } else {
+                while (c != EOF && !isWhitespace(c) && c != '>') {
+                    token.append((char) c);
+                    c = read();
+                }
+                unread(c);
+            }
+            return token.toString();
+        }
+
+        /**
+         * Skip content of the element up to its end tag
+         *
+         * @param sink receiver of the content or {@code null} to drop it
+         */
+        private void skipRawText(String name, StringBuilder sink) throws IOException {
+            int c;
+            while ((c = read()) != EOF) {
+                if (c != '<') {
+                    if (sink != null) sink.append((char) c);
+                    continue;
+                }
+                if ((c = read()) != '/') {
+                    unread(c);
+                    if (sink != null) sink.append('<');
+                    continue;
+                }
+                int matched = 0;
+                while (matched < name.length() && (c = read()) != EOF && Character.toLowerCase((char) c) == name.charAt(matched)) {
+                    matched++;
+                }
+                if (matched == name.length()) {
+                    c = read();
+                    if (c == EOF || isWhitespace(c) || c == '/' || c == '>') {
+                        if (c != '>') skipUntil('>');
+                        return;
+                    }
+                }
+                unread(c);
+                if (sink != null) sink.append("</").append(name, 0, matched);
+            }
+        }
+
+        private void skipComment() throws IOException {
+            int dashes = 0;
+            int c;
+            while ((c = read()) != EOF) {
+                if (c == '>' && dashes >= 2) return;
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+        }
+
+        private void skipUntil(char end) throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c != EOF && c != end);
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c != EOF && isWhitespace(c));
+            return c;
+        }
+
+        private void flushText() {
+            if (text.length() == 0) return;
+            if (!inBody && !isBlank(text)) {
+                // content in the head or before it opens the body
+                inBody = true;
+            }
+            if (inBody) {
+                handler.text(indexOf(text, '&') >= 0 ? unescape(text.toString(), false) : text);
+            }
+            text.setLength(0);
+        }
+
+        private int read() throws IOException {
+            if (pushback != EOF) {
+                final int c = pushback;
+                pushback = EOF;
+                return c;
+            }
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return EOF;
+                }
+            }
+            return buffer[position++];
+        }
+
+        private void unread(int c) {
+            pushback = c;
+        }
+
+        private static String unescape(String value, boolean inAttribute) {
+            return value.indexOf('&') >= 0 ? Parser.unescapeEntities(value, inAttribute) : value;
+        }
+
+        private static int indexOf(CharSequence sequence, char c) {
+            for (int i = 0; i < sequence.length(); i++) {
+                if (sequence.charAt(i) == c) return i;
+            }
+            return -1;
+        }
+
+        private static boolean isBlank(CharSequence sequence) {
+            for (int i = 0; i < sequence.length(); i++) {
+                if (!isWhitespace(sequence.charAt(i))) return false;
+            }
+            return true;
+        }
+
+        private static boolean isLetter(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package ru.shishmakov.recrawl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.fetch.FetchRequest;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Words and links of the pages of the previous crawl of the same site, kept in the directory {@code cache.dir}.
+ * <p>
+ * The cached page makes its request conditional by the validators {@code ETag} and {@code Last-Modified};
+ * the answer {@code 304 Not Modified} or the body with the same hash is replayed from the cache without parsing.
+ * The index of the previous crawl is kept in memory, words and links are read from the file on demand.
+ * Pages of the current crawl are written to the new file, which replaces the previous one only when
+ * the crawl is completed. The header of the file keeps the {@link #fingerprint(CrawlerConfig) fingerprint} of
+ * the settings of the tokenizer, the file of other settings is ignored, so the words of different forms are
+ * never mixed in one count.
+ */
+public class PageCache {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = PageCache.class.getSimpleName();
+    private static final String FILE = "pages.bin";
+    private static final String TEMP_FILE = FILE + ".tmp";
+    private static final int MAGIC = 0x43525043;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int MAX_PAGE_BYTES = 64 << 20;
+
+    @Inject
+    private CrawlerConfig crawlerConfig;
+    @Inject
+    private CrawlMetrics crawlMetrics;
+
+    private final Map<String, Entry> previous = new HashMap<>();
+    private long fingerprint;
+    private Path dir;
+    private FileChannel previousChannel;
+    private DataOutputStream next;
+    private long nextPages;
+
+    @PostConstruct
+    public void setUp() throws IOException {
+        final String value = StringUtils.trimToEmpty(crawlerConfig.pageCacheDir());
+        if (value.isEmpty()) return;
+        this.dir = Paths.get(value);
+        this.fingerprint = fingerprint(crawlerConfig);
+        Files.createDirectories(dir);
+        final Path file = dir.resolve(FILE);
+        if (Files.exists(file)) {
+            final StopWatch watch = StopWatch.createStarted();
+            if (loadIndex(file)) this.previousChannel = FileChannel.open(file, READ);
+            watch.stop();
+            logger.info("{} loaded {} pages; elapsed: {} ms", NAME, previous.size(), watch.getTime());
+        }
+        this.next = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(TEMP_FILE)), 1 << 16));
+        next.writeInt(MAGIC);
+        next.writeInt(VERSION);
+        next.writeLong(fingerprint);
+        logger.info("{} started; dir: {}", NAME, dir.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public synchronized void tearDown() {
+        if (dir == null || next == null) return;
+        try {
+            closeFiles();
+            // the crawl is not completed, the previous cache stays
+            Files.deleteIfExists(dir.resolve(TEMP_FILE));
+        } catch (IOException e) {
+            logger.error("{} error in time of stopping", NAME, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * @return request of the page, conditional if the page is cached
+     */
+    public FetchRequest request(String uri) {
+        final Entry entry = previous.get(uri);
+        return entry == null ? new FetchRequest(uri) : new FetchRequest(uri, entry.etag, entry.lastModified);
+    }
+
+    /**
+     * Fill words and links of the page from the cache if the page is not changed since the previous crawl
+     *
+     * @param uri URI of the request
+     * @return {@code true} if the page is replayed; {@code false} if it should be parsed
+     */
+    public boolean replay(String uri, Page page, WordHistogram histogram, List<String> links) throws IOException {
+        final Entry entry = previous.get(uri);
+        if (entry == null) {
+            if (page.isNotModified()) throw new IOException("Page is not modified but is not cached: " + uri);
+            return false;
+        }
+        if (page.isNotModified()) crawlMetrics.increment(Counter.PAGES_NOT_MODIFIED);
+        else if (page.getContentHash() == entry.contentHash) crawlMetrics.increment(Counter.PAGES_UNCHANGED);
+        else return false;
+        read(entry, histogram, links);
+        return true;
+    }
+
+    /**
+     * Keep words and links of the page for the next crawl
+     *
+     * @param uri URI of the request
+     */
+    public void put(String uri, Page page, WordHistogram histogram, List<String> links) throws IOException {
+        if (!isEnabled()) return;
+        String etag = page.getEtag();
+        String lastModified = page.getLastModified();
+        final long contentHash;
+        if (page.isNotModified()) {
+            final Entry entry = previous.get(uri);
+            if (etag == null) etag = entry.etag;
+            if (lastModified == null) lastModified = entry.lastModified;
+            contentHash = entry.contentHash;
+        } else {
+            contentHash = page.getContentHash();
+        }
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 + histogram.size() * 16 + links.size() * 64);
+        final DataOutputStream payload = new DataOutputStream(buffer);
+        writeString(payload, uri);
+        writeString(payload, etag);
+        writeString(payload, lastModified);
+        payload.writeLong(contentHash);
+        payload.writeInt(histogram.size());
+        final IOException[] error = new IOException[1];
+        histogram.forEach((word, count) -> {
+            try {
+                writeString(payload, word);
+                payload.writeLong(count);
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) throw error[0];
+        payload.writeInt(links.size());
+        for (String link : links) writeString(payload, link);
+
+        synchronized (this) {
+            if (next == null) return;
+            next.writeInt(buffer.size());
+            buffer.writeTo(next);
+            nextPages++;
+        }
+    }
+
+    /**
+     * Replace the cache of the previous crawl by the pages of the completed one
+     */
+    public synchronized void commit() {
+        if (next == null) return;
+        try {
+            closeFiles();
+            Files.move(dir.resolve(TEMP_FILE), dir.resolve(FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+            logger.info("{} saved {} pages; previous crawl: {} pages", NAME, nextPages, previous.size());
+        } catch (IOException e) {
+            logger.error("{} error on save pages", NAME, e);
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            if (previousChannel != null) previousChannel.close();
+        } finally {
+            previousChannel = null;
+            if (next != null) next.close();
+            next = null;
+        }
+    }
+
+    /**
+     * @return hash of the settings of the tokenizer and the normalization those the cached words depend on
+     */
+    public static long fingerprint(CrawlerConfig config) {
+        final String settings = String.join("\n", config.illegalCharactersPattern(),
+                String.valueOf(config.minAcceptableCountSymbols()),
+                String.join(",", new TreeSet<>(config.acceptableWords())), config.termNormalization().name());
+        return Hashing.murmur3_128().hashString(settings, UTF_8).asLong();
+    }
+
+    /**
+     * Keep the position and validators of every page; the torn tail of the file is ignored
+     *
+     * @return {@code false} if the file is ignored
+     */
+    private boolean loadIndex(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("{} unknown format of file: {}; it is ignored", NAME, file);
+                return false;
+            }
+            if (in.readLong() != fingerprint) {
+                logger.warn("{} file {} is written by other settings of the tokenizer; it is ignored", NAME, file);
+                return false;
+            }
+            long position = HEADER_BYTES;
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return true;
+                }
+                if (length <= 0 || length > MAX_PAGE_BYTES) {
+                    logger.warn("{} file {} is damaged after {} pages", NAME, file, previous.size());
+                    return true;
+                }
+                final byte[] payload = new byte[length];
+                in.readFully(payload);
+                final DataInputStream header = new DataInputStream(new ByteArrayInputStream(payload));
+                final String uri = readString(header);
+                previous.put(uri, new Entry(readString(header), readString(header), header.readLong(),
+                        position + 4, length));
+                position += 4 + length;
+            }
+        } catch (EOFException e) {
+            logger.warn("{} file {} is torn after {} pages", NAME, file, previous.size());
+            return true;
+        }
+    }
+
+    private void read(Entry entry, WordHistogram histogram, List<String> links) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        while (buffer.hasRemaining()) {
+            if (previousChannel.read(buffer, entry.position + buffer.position()) < 0) {
+                throw new EOFException("Page cache is truncated");
+            }
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+        readString(in);
+        readString(in);
+        readString(in);
+        in.readLong();
+        for (int i = in.readInt(); i > 0; i--) histogram.add(readString(in), in.readLong());
+        for (int i = in.readInt(); i > 0; i--) links.add(readString(in));
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) return null;
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Page of the previous crawl
+     */
+    private static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final long contentHash;
+        private final long position;
+        private final int length;
+
+        private Entry(String etag, String lastModified, long contentHash, long position, int length) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("etag", etag)
+                    .add("lastModified", lastModified)
+                    .add("length", length)
+                    .toString();
+        }
+    }
+}
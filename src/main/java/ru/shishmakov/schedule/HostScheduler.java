@@ -0,0 +1,235 @@
+package ru.shishmakov.schedule;
+
+import com.google.common.base.MoreObjects;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.core.RateLimiter;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.metrics.Phase;
+import ru.shishmakov.util.CrawlerUtil;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.lang.invoke.MethodHandles;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static ru.shishmakov.util.Threads.STOP_TIMEOUT_SEC;
+
+/**
+ * Politeness scheduler of requests.
+ * <p>
+ * Every host has its own queue of requests and its own rate budget: the interval between requests
+ * to the host is the larger one of {@code host.rps} and {@code Crawl-delay} of its robots.txt.
+ * Hosts wait in the delay queue, so the dispatcher always takes the host that is ready soonest;
+ * the global {@link RateLimiter} still limits the total rate over all hosts.
+ */
+public class HostScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NAME = HostScheduler.class.getSimpleName();
+
+    @Inject
+    private RateLimiter rateLimiter;
+    @Inject
+    private RobotsTxtCache robotsTxtCache;
+    @Inject
+    private CrawlerConfig crawlerConfig;
+    @Inject
+    private CrawlMetrics crawlMetrics;
+
+    private final ConcurrentMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final DelayQueue<HostQueue> readyHosts = new DelayQueue<>();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void setUp() {
+        logger.info("{} starting ...", NAME);
+        final int threads = crawlerConfig.schedulerThreads();
+        this.executor = buildExecutorService(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::dispatch);
+        }
+        logger.info("{} started", NAME);
+    }
+
+    @PreDestroy
+    public void tearDown() {
+        logger.info("{} stopping ...", NAME);
+        try {
+            // dispatchers wait for hosts endlessly
+            executor.shutdownNow();
+            executor.awaitTermination(STOP_TIMEOUT_SEC, SECONDS);
+            logger.info("{} stopped", NAME);
+        } catch (Exception e) {
+            logger.error("{} error in time of stopping", NAME, e);
+        }
+    }
+
+    /**
+     * Put the request into the queue of its host
+     *
+     * @param uri  absolute URI of the request
+     * @param task starts the asynchronous request when the host and the global budget allow it
+     * @return future of the request result
+     */
+    public <T> CompletableFuture<T> schedule(String uri, Supplier<CompletableFuture<T>> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final String hostUri;
+        try {
+            hostUri = defineHostUri(uri);
+        } catch (MalformedURLException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        hosts.computeIfAbsent(hostUri, this::buildHostQueue).offer(() -> {
+            try {
+                task.get().whenComplete((value, ex) -> {
+                    if (ex == null) result.complete(value);
+                    else result.completeExceptionally(ex);
+                });
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return number of hosts seen by the scheduler
+     */
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    private void dispatch() {
+        logger.info("{} started", Thread.currentThread().getName());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                HostQueue host = readyHosts.take();
+                try {
+                    dispatch(host);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // the dispatcher keeps running, the other hosts are still served
+                    logger.error("{} error in time of processing host: {}", NAME, host.hostUri, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            logger.info("{} stopped", Thread.currentThread().getName());
+        }
+    }
+
+    private void dispatch(HostQueue host) throws InterruptedException {
+        Runnable task = host.poll();
+        if (task == null) return;
+        try {
+            final long start = System.nanoTime();
+            rateLimiter.acquire();
+            crawlMetrics.latency(Phase.RATE_LIMIT_WAIT).recordSince(start);
+            task.run();
+        } finally {
+            host.reschedule();
+        }
+    }
+
+    private HostQueue buildHostQueue(String hostUri) {
+        final long minIntervalNanos = (long) (SECONDS.toNanos(1) / crawlerConfig.hostRequestPerSecond());
+        final HostQueue host = new HostQueue(hostUri, minIntervalNanos);
+        robotsTxtCache.crawlDelayMs(hostUri).thenAccept(host::resolve);
+        return host;
+    }
+
+    private static String defineHostUri(String uri) throws MalformedURLException {
+        URL url = CrawlerUtil.toUrl(uri);
+        String port = url.getPort() == -1 ? "" : ":" + url.getPort();
+        return url.getProtocol() + "://" + url.getHost() + port;
+    }
+
+    private static ExecutorService buildExecutorService(int threads) {
+        return Executors.newFixedThreadPool(threads, BasicThreadFactory.builder()
+                .namingPattern("schedule-worker %d")
+                .daemon(true)
+                .build());
+    }
+
+    /**
+     * Queue of requests to the one host
+     */
+    private class HostQueue implements Delayed {
+        private final String hostUri;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private long intervalNanos;
+        private boolean resolved;
+        private boolean scheduled;
+        private volatile long readyAt;
+
+        HostQueue(String hostUri, long intervalNanos) {
+            this.hostUri = hostUri;
+            this.intervalNanos = intervalNanos;
+        }
+
+        synchronized void offer(Runnable task) {
+            tasks.add(task);
+            if (resolved && !scheduled) schedule(System.nanoTime());
+        }
+
+        synchronized Runnable poll() {
+            Runnable task = tasks.poll();
+            if (task == null) scheduled = false;
+            return task;
+        }
+
+        /**
+         * Crawl delay of the host is known: start dispatching
+         */
+        synchronized void resolve(long crawlDelayMs) {
+            intervalNanos = Math.max(intervalNanos, TimeUnit.MILLISECONDS.toNanos(crawlDelayMs));
+            resolved = true;
+            logger.debug("Host: {} interval between requests: {} ms", hostUri, NANOSECONDS.toMillis(intervalNanos));
+            if (!tasks.isEmpty()) schedule(System.nanoTime());
+        }
+
+        synchronized void reschedule() {
+            if (tasks.isEmpty()) scheduled = false;
+            else schedule(System.nanoTime() + intervalNanos);
+        }
+
+        private void schedule(long readyAt) {
+            this.scheduled = true;
+            this.readyAt = readyAt;
+            readyHosts.offer(this);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.signum(readyAt - ((HostQueue) other).readyAt);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("hostUri", hostUri)
+                    .add("intervalNanos", intervalNanos)
+                    .add("scheduled", scheduled)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.shishmakov.schedule;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.fetch.Fetcher;
+
+import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Cache of {@code Crawl-delay} directives of robots.txt per host.
+ * <p>
+ * The file is requested once per host; a missing or broken file means no delay.
+ */
+public class RobotsTxtCache {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final long NO_DELAY = 0;
+
+    @Inject
+    private Fetcher fetcher;
+    @Inject
+    private CrawlerConfig crawlerConfig;
+
+    private final ConcurrentMap<String, CompletableFuture<Long>> delays = new ConcurrentHashMap<>();
+
+    /**
+     * @param hostUri scheme, host and port of the site, like {@code https://example.com}
+     * @return future of the crawl delay in milliseconds
+     */
+    public CompletableFuture<Long> crawlDelayMs(String hostUri) {
+        if (!crawlerConfig.robotsEnabled()) return CompletableFuture.completedFuture(NO_DELAY);
+        return delays.computeIfAbsent(hostUri, this::loadCrawlDelay);
+    }
+
+    private CompletableFuture<Long> loadCrawlDelay(String hostUri) {
+        return fetcher.fetch(hostUri + "/robots.txt")
+                .thenApply(page -> {
+                    String content = new String(page.getBody(), StandardCharsets.UTF_8);
+                    long delay = Math.min(parseCrawlDelayMs(content, crawlerConfig.robotsAgent()),
+                            crawlerConfig.robotsMaxCrawlDelayMs());
+                    logger.debug("Host: {} has crawl delay: {} ms", hostUri, delay);
+                    return delay;
+                })
+                .exceptionally(e -> {
+                    logger.debug("Host: {} has no robots.txt: {}", hostUri, e.getMessage());
+                    return NO_DELAY;
+                });
+    }
+
+    /**
+     * Find {@code Crawl-delay} of the group of records for the agent or for any agent {@code *}.
+     * <p>
+     * The group matches if its token is equal to the product token of the agent ignoring case; the matching group
+     * is preferred over {@code *} even without the delay, as RFC 9309 requires.
+     *
+     * @param content robots.txt
+     * @param agent   user agent of the crawler; its product token is the part before the first {@code /} or space
+     * @return delay in milliseconds or {@code 0} if it is not defined
+     */
+    static long parseCrawlDelayMs(String content, String agent) {
+        final String product = productToken(agent);
+        Double anyAgentDelay = null;
+        Double ownAgentDelay = null;
+        boolean ownGroupFound = false;
+        boolean anyAgent = false;
+        boolean ownAgent = false;
+        boolean groupStarted = false;
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = StringUtils.trimToEmpty(StringUtils.substringBefore(line, "#"));
+                String field = StringUtils.trimToEmpty(StringUtils.substringBefore(line, ":"));
+                String value = StringUtils.trimToEmpty(StringUtils.substringAfter(line, ":"));
+                if (Strings.CI.equals(field, "user-agent")) {
+                    if (groupStarted) {
+                        // the previous group is over
+                        anyAgent = ownAgent = groupStarted = false;
+                    }
+                    anyAgent |= "*".equals(value);
+                    ownAgent |= !product.isEmpty() && Strings.CI.equals(productToken(value), product);
+                    ownGroupFound |= ownAgent;
+                } else if (!field.isEmpty()) {
+                    groupStarted = true;
+                    if (Strings.CI.equals(field, "crawl-delay")) {
+                        Double delay = parseSeconds(value);
+                        if (ownAgent && delay != null) ownAgentDelay = delay;
+                        else if (anyAgent && delay != null) anyAgentDelay = delay;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error on read robots.txt", e);
+        }
+        Double delay = ownGroupFound ? ownAgentDelay : anyAgentDelay;
+        return delay == null ? NO_DELAY : Math.round(delay * 1000);
+    }
+
+    private static String productToken(String agent) {
+        final int end = StringUtils.indexOfAny(agent, '/', ' ');
+        return StringUtils.trimToEmpty(end < 0 ? agent : agent.substring(0, end));
+    }
+
+    private static Double parseSeconds(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds >= 0 ? seconds : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
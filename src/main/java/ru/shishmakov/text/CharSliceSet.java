@@ -0,0 +1,52 @@
+package ru.shishmakov.text;
+
+import java.util.Set;
+
+/**
+ * Immutable set of strings with lookup by a slice of chars without creation of the string
+ */
+public class CharSliceSet {
+
+    private final String[] table;
+    private final int mask;
+
+    public CharSliceSet(Set<String> values) {
+        final int capacity = Integer.highestOneBit(Math.max(4, values.size() * 4 - 1)) << 1;
+        this.table = new String[capacity];
+        this.mask = capacity - 1;
+        for (String value : values) {
+            int slot = value.hashCode() & mask;
+            while (table[slot] != null && !table[slot].equals(value)) slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+
+    public boolean contains(char[] chars, int offset, int length) {
+        int slot = hashCode(chars, offset, length) & mask;
+        String value;
+        while ((value = table[slot]) != null) {
+            if (equals(value, chars, offset, length)) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the same value as {@link String#hashCode()} of the slice
+     */
+    public static int hashCode(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h;
+    }
+
+    public static boolean equals(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+}
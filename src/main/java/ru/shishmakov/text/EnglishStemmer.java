@@ -0,0 +1,260 @@
+package ru.shishmakov.text;
+
+/**
+ * Porter2 stemmer of English over the lower case word in place, without the list of exceptional words.
+ * <p>
+ * Suffixes of every step are matched by their {@link SuffixTable}, the regions R1 and R2 and the conditions
+ * of the rules are checked here. The stem is never longer than the word.
+ */
+final class EnglishStemmer {
+    private static final SuffixTable.Condition ANY = (condition, word, start, region, suffixStart) -> true;
+
+    private static final int IES = 1;
+    private static final int PLURAL = 2;
+    private static final int EED = 3;
+    private static final int ED = 4;
+    private static final int OGI = 5;
+    private static final int LI = 6;
+    private static final int IN_R2 = 7;
+    private static final int ION = 8;
+
+    private static final SuffixTable STEP_1A = SuffixTable.builder()
+            .add("sses>ss", "us>us", "ss>ss")
+            .add(IES, "ied", "ies")
+            .add(PLURAL, "s")
+            .build();
+    private static final SuffixTable STEP_1B = SuffixTable.builder()
+            .add(EED, "eed>ee", "eedly>ee")
+            .add(ED, "ed", "edly", "ing", "ingly")
+            .build();
+    private static final SuffixTable STEP_2 = SuffixTable.builder()
+            .add("tional>tion", "enci>ence", "anci>ance", "abli>able", "entli>ent", "izer>ize", "ization>ize",
+                    "ational>ate", "ation>ate", "ator>ate", "alism>al", "aliti>al", "alli>al", "fulness>ful",
+                    "ousli>ous", "ousness>ous", "iveness>ive", "iviti>ive", "biliti>ble", "bli>ble", "fulli>ful",
+                    "lessli>less")
+            .add(OGI, "ogi>og")
+            .add(LI, "li")
+            .build();
+    private static final SuffixTable STEP_3 = SuffixTable.builder()
+            .add("tional>tion", "ational>ate", "alize>al", "icate>ic", "iciti>ic", "ical>ic", "ful", "ness")
+            .add(IN_R2, "ative")
+            .build();
+    private static final SuffixTable STEP_4 = SuffixTable.builder()
+            .add("al", "ance", "ence", "er", "ic", "able", "ible", "ant", "ement", "ment", "ent", "ism", "ate", "iti",
+                    "ous", "ive", "ize")
+            .add(ION, "ion")
+            .build();
+    private static final String[] R1_PREFIXES = {"gener", "commun", "arsen"};
+
+    /**
+     * @return new end of the stem in {@code word[start, end)}
+     */
+    int stem(char[] word, int start, int end) {
+        if (end - start <= 2) return end;
+        // the consonant y is marked as Y
+        if (word[start] == 'y') word[start] = 'Y';
+        for (int i = start + 1; i < end; i++) {
+            if (word[i] == 'y' && isVowel(word[i - 1])) word[i] = 'Y';
+        }
+        final int r1 = r1(word, start, end);
+        final int r2 = afterConsonantAfterVowel(word, r1, end);
+
+        end = step1a(word, start, end);
+        end = step1b(word, start, end, r1);
+        if (end - start > 2 && (word[end - 1] == 'y' || word[end - 1] == 'Y') && !isVowel(word[end - 2])) {
+            word[end - 1] = 'i';
+        }
+        end = step2(word, start, end, r1);
+        end = step3(word, start, end, r1, r2);
+        end = step4(word, start, end, r2);
+        end = step5(word, start, end, r1, r2);
+
+        for (int i = start; i < end; i++) {
+            if (word[i] == 'Y') word[i] = 'y';
+        }
+        return end;
+    }
+
+    private static int step1a(char[] word, int start, int end) {
+        final int rule = STEP_1A.match(word, start, end, start, ANY);
+        if (rule < 0) return end;
+        final int suffixStart = end - STEP_1A.suffixLength(rule);
+        switch (STEP_1A.condition(rule)) {
+            case IES:
+                // ties -> tie, cries -> cri
+                word[suffixStart] = 'i';
+                if (suffixStart - start > 1) return suffixStart + 1;
+                word[suffixStart + 1] = 'e';
+                return suffixStart + 2;
+            case PLURAL:
+                // the vowel not immediately before the s: gaps -> gap, gas -> gas
+                return containsVowel(word, start, suffixStart - 1) ? suffixStart : end;
+            default:
+                return STEP_1A.apply(rule, word, end);
+        }
+    }
+
+    private static int step1b(char[] word, int start, int end, int r1) {
+        final int rule = STEP_1B.match(word, start, end, start, ANY);
+        if (rule < 0) return end;
+        final int suffixStart = end - STEP_1B.suffixLength(rule);
+        if (STEP_1B.condition(rule) == EED) return suffixStart >= r1 ? STEP_1B.apply(rule, word, end) : end;
+        if (!containsVowel(word, start, suffixStart)) return end;
+        end = suffixStart;
+        // at least two chars are removed, so the added e is in the bounds of the word
+        if (endsWith(word, start, end, 'a', 't') || endsWith(word, start, end, 'b', 'l')
+                || endsWith(word, start, end, 'i', 'z')) {
+            word[end++] = 'e';
+        } else if (endsWithDouble(word, start, end)) {
+            end--;
+        } else if (r1 >= end && endsWithShortSyllable(word, start, end)) {
+            word[end++] = 'e';
+        }
+        return end;
+    }
+
+    private static int step2(char[] word, int start, int end, int r1) {
+        final int rule = STEP_2.match(word, start, end, start, ANY);
+        if (rule < 0) return end;
+        final int suffixStart = end - STEP_2.suffixLength(rule);
+        if (suffixStart < r1) return end;
+        switch (STEP_2.condition(rule)) {
+            case OGI:
+                return suffixStart > start && word[suffixStart - 1] == 'l' ? STEP_2.apply(rule, word, end) : end;
+            case LI:
+                return suffixStart > start && isLiEnding(word[suffixStart - 1]) ? suffixStart : end;
+            default:
+                return STEP_2.apply(rule, word, end);
+        }
+    }
+
+    private static int step3(char[] word, int start, int end, int r1, int r2) {
+        final int rule = STEP_3.match(word, start, end, start, ANY);
+        if (rule < 0) return end;
+        final int suffixStart = end - STEP_3.suffixLength(rule);
+        if (suffixStart < r1) return end;
+        if (STEP_3.condition(rule) == IN_R2) return suffixStart >= r2 ? suffixStart : end;
+        return STEP_3.apply(rule, word, end);
+    }
+
+    private static int step4(char[] word, int start, int end, int r2) {
+        final int rule = STEP_4.match(word, start, end, start, ANY);
+        if (rule < 0) return end;
+        final int suffixStart = end - STEP_4.suffixLength(rule);
+        if (suffixStart < r2) return end;
+        if (STEP_4.condition(rule) == ION) {
+            return suffixStart > start && (word[suffixStart - 1] == 's' || word[suffixStart - 1] == 't')
+                    ? suffixStart : end;
+        }
+        return suffixStart;
+    }
+
+    private static int step5(char[] word, int start, int end, int r1, int r2) {
+        final int last = end - 1;
+        if (word[last] == 'e') {
+            if (last >= r2 || last >= r1 && !endsWithShortSyllable(word, start, last)) return last;
+        } else if (word[last] == 'l') {
+            if (last >= r2 && last > start && word[last - 1] == 'l') return last;
+        }
+        return end;
+    }
+
+    private static int r1(char[] word, int start, int end) {
+        for (String prefix : R1_PREFIXES) {
+            if (startsWith(word, start, end, prefix)) return start + prefix.length();
+        }
+        return afterConsonantAfterVowel(word, start, end);
+    }
+
+    /**
+     * @return index after the first consonant following the vowel, the start of R1 or R2
+     */
+    private static int afterConsonantAfterVowel(char[] word, int from, int end) {
+        for (int i = from + 1; i < end; i++) {
+            if (!isVowel(word[i]) && isVowel(word[i - 1])) return i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Short syllable is the consonant, the vowel and the consonant other than w, x or Y, or the vowel
+     * and the consonant at the beginning of the word
+     */
+    private static boolean endsWithShortSyllable(char[] word, int start, int end) {
+        if (end - start >= 3) {
+            final char last = word[end - 1];
+            return !isVowel(word[end - 3]) && isVowel(word[end - 2]) && !isVowel(last)
+                    && last != 'w' && last != 'x' && last != 'Y';
+        }
+        return end - start == 2 && isVowel(word[start]) && !isVowel(word[start + 1]);
+    }
+
+    private static boolean endsWithDouble(char[] word, int start, int end) {
+        if (end - start < 2 || word[end - 1] != word[end - 2]) return false;
+        switch (word[end - 1]) {
+            case 'b':
+            case 'd':
+            case 'f':
+            case 'g':
+            case 'm':
+            case 'n':
+            case 'p':
+            case 'r':
+            case 't':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isLiEnding(char c) {
+        switch (c) {
+            case 'c':
+            case 'd':
+            case 'e':
+            case 'g':
+            case 'h':
+            case 'k':
+            case 'm':
+            case 'n':
+            case 'r':
+            case 't':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean containsVowel(char[] word, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isVowel(word[i])) return true;
+        }
+        return false;
+    }
+
+    private static boolean endsWith(char[] word, int start, int end, char first, char second) {
+        return end - start >= 2 && word[end - 2] == first && word[end - 1] == second;
+    }
+
+    private static boolean startsWith(char[] word, int start, int end, String prefix) {
+        if (end - start < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (word[start + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    static boolean isVowel(char c) {
+        switch (c) {
+            case 'a':
+            case 'e':
+            case 'i':
+            case 'o':
+            case 'u':
+            case 'y':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
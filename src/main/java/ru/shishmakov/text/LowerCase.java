@@ -0,0 +1,40 @@
+package ru.shishmakov.text;
+
+import java.util.Locale;
+
+/**
+ * In-place lower case of a slice of chars identical to {@link String#toLowerCase()}
+ * for the default locale of the JVM.
+ */
+public final class LowerCase {
+    private static final boolean SIMPLE_LOCALE = isSimpleLocale(Locale.getDefault());
+
+    private LowerCase() {
+    }
+
+    /**
+     * Convert the slice to lower case if the result is known to be identical to {@link String#toLowerCase()}
+     *
+     * @return {@code false} if the slice is left untouched and requires {@link String#toLowerCase()}
+     */
+    public static boolean toLowerCase(char[] chars, int offset, int length) {
+        if (!SIMPLE_LOCALE) return false;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final char c = chars[i];
+            // context and length dependent conversions
+            if (c == '\u0130' || c == '\u03A3' || Character.isSurrogate(c)) return false;
+        }
+        for (int i = offset; i < end; i++) {
+            final char c = chars[i];
+            if (c >= 'a' && c <= 'z') continue;
+            chars[i] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : Character.toLowerCase(c);
+        }
+        return true;
+    }
+
+    private static boolean isSimpleLocale(Locale locale) {
+        final String language = locale.getLanguage();
+        return !("tr".equals(language) || "az".equals(language) || "lt".equals(language));
+    }
+}
@@ -0,0 +1,15 @@
+package ru.shishmakov.text;
+
+/**
+ * Normalization of the words before they are counted, selectable by configuration
+ */
+public enum NormalizationMode {
+    /**
+     * Word in lower case as is
+     */
+    LOWER_CASE,
+    /**
+     * Stem of the Russian or English word in lower case: {@link RussianStemmer}, {@link EnglishStemmer}
+     */
+    STEM
+}
@@ -0,0 +1,129 @@
+package ru.shishmakov.text;
+
+/**
+ * Snowball stemmer of Russian over the lower case word in place; {@code ё} is expected to be folded into {@code е}.
+ * <p>
+ * Endings are removed in the region after the first vowel: the perfective gerund or the reflexive ending with
+ * the adjectival, verb or noun ending, then {@code и}, the derivational ending and the superlative or
+ * the soft sign.
+ */
+final class RussianStemmer implements SuffixTable.Condition {
+    /**
+     * Ending of the first group is preceded by {@code а} or {@code я} those stay in the stem
+     */
+    private static final int AFTER_A = 1;
+
+    private static final SuffixTable GERUND = SuffixTable.builder()
+            .add(AFTER_A, "в", "вши", "вшись")
+            .add("ив", "ивши", "ившись", "ыв", "ывши", "ывшись")
+            .build();
+    private static final SuffixTable REFLEXIVE = SuffixTable.builder()
+            .add("ся", "сь")
+            .build();
+    private static final SuffixTable ADJECTIVE = SuffixTable.builder()
+            .add("ее", "ие", "ые", "ое", "ими", "ыми", "ей", "ий", "ый", "ой", "ем", "им", "ым", "ом", "его", "ого",
+                    "ему", "ому", "их", "ых", "ую", "юю", "ая", "яя", "ою", "ею")
+            .build();
+    private static final SuffixTable PARTICIPLE = SuffixTable.builder()
+            .add(AFTER_A, "ем", "нн", "вш", "ющ", "щ")
+            .add("ивш", "ывш", "ующ")
+            .build();
+    private static final SuffixTable VERB = SuffixTable.builder()
+            .add(AFTER_A, "ла", "на", "ете", "йте", "ли", "й", "л", "ем", "н", "ло", "но", "ет", "ют", "ны", "ть",
+                    "ешь", "нно")
+            .add("ила", "ыла", "ена", "ейте", "уйте", "ите", "или", "ыли", "ей", "уй", "ил", "ыл", "им", "ым", "ен",
+                    "ило", "ыло", "ено", "ят", "ует", "уют", "ит", "ыт", "ены", "ить", "ыть", "ишь", "ую", "ю")
+            .build();
+    private static final SuffixTable NOUN = SuffixTable.builder()
+            .add("а", "ев", "ов", "ие", "ье", "е", "иями", "ями", "ами", "еи", "ии", "и", "ией", "ей", "ой", "ий", "й",
+                    "иям", "ям", "ием", "ем", "ам", "ом", "о", "у", "ах", "иях", "ях", "ы", "ь", "ию", "ью", "ю", "ия",
+                    "ья", "я")
+            .build();
+    private static final SuffixTable DERIVATIONAL = SuffixTable.builder()
+            .add("ост", "ость")
+            .build();
+    private static final SuffixTable SUPERLATIVE = SuffixTable.builder()
+            .add("ейш", "ейше")
+            .build();
+
+    /**
+     * @return new end of the stem in {@code word[start, end)}
+     */
+    int stem(char[] word, int start, int end) {
+        final int rv = afterVowel(word, start, end);
+        if (rv == end) return end;
+        final int r2 = afterConsonantAfterVowel(word, afterConsonantAfterVowel(word, start, end), end);
+
+        int rule = GERUND.match(word, start, end, rv, this);
+        if (rule >= 0) {
+            end = GERUND.apply(rule, word, end);
+        } else {
+            rule = REFLEXIVE.match(word, start, end, rv, this);
+            if (rule >= 0) end = REFLEXIVE.apply(rule, word, end);
+            if ((rule = ADJECTIVE.match(word, start, end, rv, this)) >= 0) {
+                end = ADJECTIVE.apply(rule, word, end);
+                rule = PARTICIPLE.match(word, start, end, rv, this);
+                if (rule >= 0) end = PARTICIPLE.apply(rule, word, end);
+            } else if ((rule = VERB.match(word, start, end, rv, this)) >= 0) {
+                end = VERB.apply(rule, word, end);
+            } else if ((rule = NOUN.match(word, start, end, rv, this)) >= 0) {
+                end = NOUN.apply(rule, word, end);
+            }
+        }
+        if (end > rv && word[end - 1] == 'и') end--;
+
+        rule = DERIVATIONAL.match(word, start, end, Math.max(rv, r2), this);
+        if (rule >= 0) end = DERIVATIONAL.apply(rule, word, end);
+
+        if ((rule = SUPERLATIVE.match(word, start, end, rv, this)) >= 0) {
+            end = SUPERLATIVE.apply(rule, word, end);
+            if (end - 2 >= rv && word[end - 1] == 'н' && word[end - 2] == 'н') end--;
+        } else if (end - 2 >= rv && word[end - 1] == 'н' && word[end - 2] == 'н') {
+            end--;
+        } else if (end > rv && word[end - 1] == 'ь') {
+            end--;
+        }
+        return end;
+    }
+
+    @Override
+    public boolean test(int condition, char[] word, int start, int region, int suffixStart) {
+        if (condition != AFTER_A) return true;
+        final int before = suffixStart - 1;
+        return before >= region && (word[before] == 'а' || word[before] == 'я');
+    }
+
+    static boolean isVowel(char c) {
+        switch (c) {
+            case 'а':
+            case 'е':
+            case 'и':
+            case 'о':
+            case 'у':
+            case 'ы':
+            case 'э':
+            case 'ю':
+            case 'я':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int afterVowel(char[] word, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (isVowel(word[i])) return i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * @return index after the first consonant following the vowel, the start of R1 or R2
+     */
+    private static int afterConsonantAfterVowel(char[] word, int from, int end) {
+        for (int i = from + 1; i < end; i++) {
+            if (!isVowel(word[i]) && isVowel(word[i - 1])) return i + 1;
+        }
+        return end;
+    }
+}
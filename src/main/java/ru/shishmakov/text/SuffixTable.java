@@ -0,0 +1,171 @@
+package ru.shishmakov.text;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Suffix rules of one step of the stemmer compiled into the trie of reversed suffixes, so the longest
+ * matching suffix is found by one backward pass over the word without any allocation.
+ * <p>
+ * The rule is {@code suffix} or {@code suffix>replacement}; every rule has the condition code, which is
+ * checked by the stemmer.
+ */
+final class SuffixTable {
+    static final int NONE = 0;
+
+    /**
+     * Condition of the rule checked against the word
+     */
+    @FunctionalInterface
+    interface Condition {
+
+        /**
+         * @param region      index of the first char of the region of the suffixes
+         * @param suffixStart index of the first char of the suffix
+         */
+        boolean test(int condition, char[] word, int start, int region, int suffixStart);
+    }
+
+    private final char[][] labels;
+    private final int[][] children;
+    private final int[] rules;
+    private final int[] suffixLengths;
+    private final char[][] replacements;
+    private final int[] conditions;
+
+    private SuffixTable(Builder builder) {
+        final int nodes = builder.labels.size();
+        this.labels = new char[nodes][];
+        this.children = new int[nodes][];
+        for (int i = 0; i < nodes; i++) {
+            labels[i] = builder.labels.get(i).toString().toCharArray();
+            children[i] = builder.children.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.rules = builder.rules.stream().mapToInt(Integer::intValue).toArray();
+        this.suffixLengths = builder.suffixLengths.stream().mapToInt(Integer::intValue).toArray();
+        this.replacements = builder.replacements.toArray(new char[0][]);
+        this.conditions = builder.conditions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The longest suffix is matched first, as the {@code among} of Snowball: the step fails if its condition
+     * does not hold, the shorter suffixes are not tried.
+     *
+     * @param region index of the first char the suffix is able to start from
+     * @return rule of the longest suffix of {@code word[start, end)} or {@code -1} if there is none or its
+     * condition does not hold
+     */
+    int match(char[] word, int start, int end, int region, Condition condition) {
+        int node = 0;
+        int found = -1;
+        int foundStart = -1;
+        for (int i = end - 1; i >= Math.max(start, region); i--) {
+            node = child(node, word[i]);
+            if (node < 0) break;
+            if (rules[node] >= 0) {
+                found = rules[node];
+                foundStart = i;
+            }
+        }
+        if (found < 0 || conditions[found] == NONE) return found;
+        return condition.test(conditions[found], word, start, region, foundStart) ? found : -1;
+    }
+
+    int suffixLength(int rule) {
+        return suffixLengths[rule];
+    }
+
+    int condition(int rule) {
+        return conditions[rule];
+    }
+
+    /**
+     * Replace the suffix of the rule; the replacement is never longer than the suffix
+     *
+     * @return new end of the word
+     */
+    int apply(int rule, char[] word, int end) {
+        final int suffixStart = end - suffixLengths[rule];
+        final char[] replacement = replacements[rule];
+        System.arraycopy(replacement, 0, word, suffixStart, replacement.length);
+        return suffixStart + replacement.length;
+    }
+
+    private int child(int node, char c) {
+        final char[] label = labels[node];
+        for (int i = 0; i < label.length; i++) {
+            if (label[i] == c) return children[node][i];
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("rules", suffixLengths.length)
+                .add("nodes", labels.length)
+                .toString();
+    }
+
+    static final class Builder {
+        private final List<StringBuilder> labels = new ArrayList<>();
+        private final List<List<Integer>> children = new ArrayList<>();
+        private final List<Integer> rules = new ArrayList<>();
+        private final List<Integer> suffixLengths = new ArrayList<>();
+        private final List<char[]> replacements = new ArrayList<>();
+        private final List<Integer> conditions = new ArrayList<>();
+
+        private Builder() {
+            node();
+        }
+
+        Builder add(String... rules) {
+            return add(NONE, rules);
+        }
+
+        Builder add(int condition, String... rules) {
+            for (String rule : rules) {
+                final int arrow = rule.indexOf('>');
+                final String suffix = arrow < 0 ? rule : rule.substring(0, arrow);
+                final String replacement = arrow < 0 ? "" : rule.substring(arrow + 1);
+                checkArgument(!suffix.isEmpty() && replacement.length() <= suffix.length(), "invalid rule: %s", rule);
+                int node = 0;
+                for (int i = suffix.length() - 1; i >= 0; i--) node = child(node, suffix.charAt(i));
+                checkArgument(this.rules.get(node) < 0, "duplicate rule: %s", rule);
+                this.rules.set(node, suffixLengths.size());
+                suffixLengths.add(suffix.length());
+                replacements.add(replacement.toCharArray());
+                conditions.add(condition);
+            }
+            return this;
+        }
+
+        SuffixTable build() {
+            return new SuffixTable(this);
+        }
+
+        private int child(int node, char c) {
+            final int index = labels.get(node).indexOf(String.valueOf(c));
+            if (index >= 0) return children.get(node).get(index);
+            final int child = node();
+            labels.get(node).append(c);
+            children.get(node).add(child);
+            return child;
+        }
+
+        private int node() {
+            labels.add(new StringBuilder());
+            children.add(new ArrayList<>());
+            rules.add(-1);
+            return labels.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.shishmakov.text;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.lowerCase;
+
+/**
+ * Normalization of the token in place before it is counted: the lower case and, in the {@link NormalizationMode#STEM}
+ * mode, the stem of the Russian or English word.
+ * <p>
+ * The language is chosen by the letters of the word; the words of other or mixed letters and the acceptable short
+ * words are only in lower case. Each platform thread caches the recent forms with their stems in the direct-mapped
+ * table, so the frequent word is stemmed once and the hit allocates nothing. Virtual threads are not cached,
+ * every page of the virtual engine runs on a new one.
+ */
+public class TermNormalizer {
+
+    private final NormalizationMode mode;
+    private final CharSliceSet keptWords;
+    private final int cacheMask;
+    private final ThreadLocal<FormCache> caches;
+    private final RussianStemmer russianStemmer = new RussianStemmer();
+    private final EnglishStemmer englishStemmer = new EnglishStemmer();
+
+    /**
+     * @param cacheSize number of the forms cached by each thread, rounded up to the power of two; {@code 0} disables
+     * @param keptWords words those are never stemmed
+     */
+    public TermNormalizer(NormalizationMode mode, int cacheSize, Set<String> keptWords) {
+        checkArgument(cacheSize >= 0, "cache size should be not negative: %s", cacheSize);
+        this.mode = checkNotNull(mode, "mode is null");
+        this.keptWords = new CharSliceSet(checkNotNull(keptWords, "words are null"));
+        final int capacity = cacheSize == 0 ? 0 : Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1;
+        this.cacheMask = capacity - 1;
+        this.caches = ThreadLocal.withInitial(() -> new FormCache(capacity));
+    }
+
+    /**
+     * Normalize the slice and pass it to the consumer; the slice may be modified in place
+     */
+    public void normalize(char[] buffer, int offset, int length, TokenConsumer consumer) {
+        if (!LowerCase.toLowerCase(buffer, offset, length)) {
+            final char[] word = lowerCase(new String(buffer, offset, length)).toCharArray();
+            stem(word, 0, word.length, consumer);
+        } else {
+            stem(buffer, offset, length, consumer);
+        }
+    }
+
+    /**
+     * @return normalized word, e.g. of the query of the count
+     */
+    public String normalize(String word) {
+        final String[] result = new String[1];
+        final char[] chars = word.toCharArray();
+        normalize(chars, 0, chars.length, (buffer, offset, length) -> result[0] = new String(buffer, offset, length));
+        return result[0];
+    }
+
+    public NormalizationMode getMode() {
+        return mode;
+    }
+
+    private void stem(char[] buffer, int offset, int length, TokenConsumer consumer) {
+        if (mode == NormalizationMode.LOWER_CASE || keptWords.contains(buffer, offset, length)) {
+            consumer.accept(buffer, offset, length);
+            return;
+        }
+        final boolean russian = foldRussian(buffer, offset, length);
+        if (!russian && !isEnglish(buffer, offset, length)) {
+            consumer.accept(buffer, offset, length);
+            return;
+        }
+        final FormCache cache = cacheMask < 0 || Thread.currentThread().isVirtual() ? null : caches.get();
+        final int slot = cache == null ? 0 : CharSliceSet.hashCode(buffer, offset, length) & cacheMask;
+        if (cache != null) {
+            final String form = cache.forms[slot];
+            if (form != null && CharSliceSet.equals(form, buffer, offset, length)) {
+                // the stem is never longer than the form, the consumer gets its own copy in the buffer
+                final char[] stem = cache.stems[slot];
+                System.arraycopy(stem, 0, buffer, offset, stem.length);
+                consumer.accept(buffer, offset, stem.length);
+                return;
+            }
+        }
+        final String form = cache == null ? null : new String(buffer, offset, length);
+        final int end = russian
+                ? russianStemmer.stem(buffer, offset, offset + length)
+                : englishStemmer.stem(buffer, offset, offset + length);
+        if (cache != null) {
+            cache.forms[slot] = form;
+            cache.stems[slot] = Arrays.copyOfRange(buffer, offset, end);
+        }
+        consumer.accept(buffer, offset, end - offset);
+    }
+
+    /**
+     * @return {@code true} if the word has only Russian letters; {@code ё} is folded into {@code е} then
+     */
+    private static boolean foldRussian(char[] buffer, int offset, int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final char c = buffer[i];
+            if ((c < 'а' || c > 'я') && c != 'ё') return false;
+        }
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] == 'ё') buffer[i] = 'е';
+        }
+        return true;
+    }
+
+    private static boolean isEnglish(char[] buffer, int offset, int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (buffer[i] < 'a' || buffer[i] > 'z') return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("mode", mode)
+                .add("cacheSize", cacheMask + 1)
+                .toString();
+    }
+
+    /**
+     * Recent forms of the thread and their stems by the hash of the form
+     */
+    private static final class FormCache {
+        private final String[] forms;
+        private final char[][] stems;
+
+        private FormCache(int capacity) {
+            this.forms = new String[capacity];
+            this.stems = new char[capacity][];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.shishmakov.text;
+
+/**
+ * Receiver of tokens as slices of the reusable buffer of {@link WordTokenizer}.
+ * <p>
+ * The buffer is valid only during the call; a receiver may modify the slice in place
+ * and must copy it to keep it.
+ */
+@FunctionalInterface
+public interface TokenConsumer {
+
+    void accept(char[] buffer, int offset, int length);
+}
@@ -0,0 +1,84 @@
+package ru.shishmakov.text;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Single-pass char-level tokenizer of the text of the page.
+ * <p>
+ * Produces the same tokens as the pipeline: remove {@code illegal.pattern} &rarr;
+ * {@link org.apache.commons.lang3.StringUtils#normalizeSpace(String)} &rarr; split by space &rarr;
+ * filter by {@code legal.minSymbols} or {@code legal.words}, but without any intermediate strings.
+ * The pattern of illegal characters is compiled into the lookup table of all chars,
+ * so it should describe single characters, e.g. a character class.
+ */
+public class WordTokenizer {
+    private static final int NBSP = '\u00A0';
+
+    private final long[] illegal = new long[(Character.MAX_VALUE + 1) >>> 6];
+    private final int minSymbols;
+    private final CharSliceSet acceptableWords;
+    private final ThreadLocal<char[]> buffers = ThreadLocal.withInitial(() -> new char[256]);
+
+    public WordTokenizer(Pattern illegalCharacters, int minSymbols, Set<String> acceptableWords) {
+        checkNotNull(illegalCharacters, "pattern is null");
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            if (illegalCharacters.matcher(String.valueOf((char) c)).matches()) {
+                illegal[c >>> 6] |= 1L << c;
+            }
+        }
+        this.minSymbols = minSymbols;
+        this.acceptableWords = new CharSliceSet(checkNotNull(acceptableWords, "words are null"));
+    }
+
+    /**
+     * Split the text into tokens and pass the acceptable ones to the consumer
+     */
+    public void tokenize(CharSequence text, TokenConsumer consumer) {
+        // trim() of normalized text drops also control chars on both ends
+        int from = 0;
+        int to = text.length() - 1;
+        while (from <= to && isSkippedOnEdge(text.charAt(from))) from++;
+        while (to >= from && isSkippedOnEdge(text.charAt(to))) to--;
+        if (from > to) return;
+
+        char[] buffer = buffers.get();
+        if (buffer.length < to - from + 1) {
+            buffer = new char[Math.max(to - from + 1, buffer.length << 1)];
+            buffers.set(buffer);
+        }
+        int length = 0;
+        for (int i = from; i <= to; i++) {
+            final char c = text.charAt(i);
+            if (isIllegal(c)) continue;
+            if (isSeparator(c)) {
+                emit(buffer, length, consumer);
+                length = 0;
+            } else {
+                buffer[length++] = c;
+            }
+        }
+        emit(buffer, length, consumer);
+    }
+
+    public boolean isIllegal(char c) {
+        return (illegal[c >>> 6] & (1L << c)) != 0;
+    }
+
+    private void emit(char[] buffer, int length, TokenConsumer consumer) {
+        if (length == 0) return;
+        if (length >= minSymbols || acceptableWords.contains(buffer, 0, length)) {
+            consumer.accept(buffer, 0, length);
+        }
+    }
+
+    private boolean isSkippedOnEdge(char c) {
+        return isIllegal(c) || c <= ' ' || isSeparator(c);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == NBSP || Character.isWhitespace(c);
+    }
+}
@@ -1,6 +1,7 @@
 package ru.shishmakov.util;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
@@ -10,14 +11,19 @@ import org.jsoup.select.NodeVisitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.text.TokenConsumer;
+import ru.shishmakov.text.WordTokenizer;
 
-import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.lang.invoke.MethodHandles;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.*;
-import java.util.regex.Pattern;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -32,13 +38,8 @@ public class CrawlerUtil {
 
     @Inject
     private CrawlerConfig crawlerConfig;
-
-    private Pattern illegalCharacters;
-
-    @PostConstruct
-    public void setUp() {
-        illegalCharacters = Pattern.compile(crawlerConfig.illegalCharactersPattern());
-    }
+    @Inject
+    private WordTokenizer wordTokenizer;
 
     public List<String> simplifyUri(String... sourceUri) {
         checkArgument(sourceUri.length > 0, "list source uri is empty");
@@ -55,7 +56,7 @@ public class CrawlerUtil {
                 .filter(Objects::nonNull)
                 .map(s -> StringUtils.substringBefore(s, "?")) // arguments
                 .map(s -> StringUtils.substringBefore(s, "#")) // anchor
-                .map(s -> StringUtils.removeEnd(s, "/"))
+                .map(s -> Strings.CS.removeEnd(s, "/"))
                 .map(StringUtils::lowerCase)
                 .orElseThrow(() -> new IllegalArgumentException("Illegal simplify sourceUri: " + sourceUri));
 
@@ -68,30 +69,53 @@ public class CrawlerUtil {
                 .filter(Objects::nonNull);
     }
 
+    /**
+     * Host is legal if it is the host of the base URI or it belongs to one of domains {@code crawl.hosts}
+     */
+    public boolean isLegalHost(String baseHost, String host) {
+        if (Strings.CI.equals(baseHost, host)) return true;
+        for (String domain : crawlerConfig.allowedHosts()) {
+            if (Strings.CI.equals(host, domain) || Strings.CI.endsWith(host, "." + domain)) return true;
+        }
+        return false;
+    }
+
     public String getBaseUri(URI uri) throws URISyntaxException {
         return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), null, null).toString();
     }
 
+    /**
+     * @return URL of the absolute URI, the string is parsed as {@link URI}
+     */
+    public static URL toUrl(String uri) throws MalformedURLException {
+        try {
+            return URI.create(uri).toURL();
+        } catch (IllegalArgumentException e) {
+            throw (MalformedURLException) new MalformedURLException("Illegal uri: " + uri).initCause(e);
+        }
+    }
+
     /**
      * Modified version of the method {@link Element#text()}
      * to get list of string instead of a single text block
      */
     public List<String> getText(Element element) {
-        checkNotNull(element, "element is null");
         final List<String> data = new ArrayList<>();
+        forEachToken(element, (buffer, offset, length) -> data.add(new String(buffer, offset, length)));
+        return data;
+    }
+
+    /**
+     * Pass acceptable words of all text nodes of the element to the consumer without creation of strings
+     */
+    public void forEachToken(Element element, TokenConsumer consumer) {
+        checkNotNull(element, "element is null");
         new NodeTraversor(new NodeVisitor() {
             @Override
             public void head(Node node, int depth) {
-                Stream.of(node)
-                        .filter(n -> n instanceof TextNode)
-                        .map(n -> ((TextNode) n).getWholeText())
-                        .map(t -> illegalCharacters.matcher(t).replaceAll(""))
-                        .map(StringUtils::normalizeSpace)
-                        .flatMap(t -> Arrays.stream(split(t, SPACE)))
-                        .filter(StringUtils::isNotBlank)
-                        .filter(t -> length(t) >= crawlerConfig.minAcceptableCountSymbols() ||
-                                crawlerConfig.acceptableWords().contains(t))
-                        .forEach(data::add);
+                if (node instanceof TextNode) {
+                    wordTokenizer.tokenize(((TextNode) node).getWholeText(), consumer);
+                }
             }
 
             @Override
@@ -99,6 +123,5 @@ public class CrawlerUtil {
                 // do nothing
             }
         }).traverse(element);
-        return data;
     }
 }
@@ -1,6 +1,7 @@
 package ru.shishmakov;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.junit.Test;
@@ -97,7 +98,7 @@ public class JsoupExampleTest extends BaseTest {
         logger.info("\nSite links: {}", links);
 
         assertFalse("List of links is not empty", links.isEmpty());
-        links.forEach(l -> assertTrue("Link is illegal", StringUtils.startsWithIgnoreCase(l, baseUri)));
+        links.forEach(l -> assertTrue("Link is illegal", Strings.CI.startsWith(l, baseUri)));
     }
 
     @Test
@@ -110,7 +111,7 @@ public class JsoupExampleTest extends BaseTest {
         logger.info("\nSite links: {}", links);
 
         assertFalse("List of links is not empty", links.isEmpty());
-        links.forEach(l -> assertTrue("Link is illegal", StringUtils.startsWithIgnoreCase(l, baseUri)));
+        links.forEach(l -> assertTrue("Link is illegal", Strings.CI.startsWith(l, baseUri)));
     }
 
 
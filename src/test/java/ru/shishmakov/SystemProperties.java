@@ -0,0 +1,68 @@
+package ru.shishmakov;
+
+import org.junit.rules.ExternalResource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rule of the system properties those override the configuration of the crawler in the test;
+ * every property set by the rule is restored after the test.
+ */
+public class SystemProperties extends ExternalResource {
+
+    private final Map<String, String> initial = new LinkedHashMap<>();
+    private final Map<String, String> previous = new LinkedHashMap<>();
+
+    /**
+     * @return properties of the crawl of the {@link ru.shishmakov.site.SyntheticSite local site} without
+     * the rate limits
+     */
+    public static SystemProperties fastCrawl() {
+        return new SystemProperties()
+                .with("rps", 10_000)
+                .with("host.rps", 10_000)
+                .with("rate.limiter", "TOKEN_BUCKET")
+                .with("rate.burst", 100);
+    }
+
+    /**
+     * Set the property before every test
+     */
+    public SystemProperties with(String key, Object value) {
+        initial.put(key, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Set the property until the end of the test
+     */
+    public SystemProperties set(String key, Object value) {
+        if (!previous.containsKey(key)) previous.put(key, System.getProperty(key));
+        System.setProperty(key, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * @return current values of the properties set by the rule, e.g. to pass them to the other JVM
+     */
+    public Map<String, String> values() {
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (String key : previous.keySet()) values.put(key, System.getProperty(key));
+        return values;
+    }
+
+    @Override
+    protected void before() {
+        initial.forEach(this::set);
+    }
+
+    @Override
+    protected void after() {
+        previous.forEach((key, value) -> {
+            if (value == null) System.clearProperty(key);
+            else System.setProperty(key, value);
+        });
+        previous.clear();
+    }
+}
@@ -65,10 +65,10 @@ public class UriTest extends BaseTest {
         String source2 = "https://yandex.ru/maps/213/moscow/?rtext=&rtt=auto&mode=routes";
         URI uri = new URI(source);
         URI uriRelative = new URI("../../moscow");
-        URL url = new URL(source);
-        URL url2 = new URL(source2);
+        URL url = uri.toURL();
         URI uri2 = new URI(source2);
-        final String baseUri = new URL(url.getProtocol(), url.getHost(), url.getPort(), "").toString();
+        URL url2 = uri2.toURL();
+        final String baseUri = new URI(url.getProtocol(), null, url.getHost(), url.getPort(), "", null, null).toString();
 
         logger.info("baseUri: {}", baseUri);
 
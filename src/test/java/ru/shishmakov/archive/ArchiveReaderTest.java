@@ -0,0 +1,133 @@
+package ru.shishmakov.archive;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.core.RatingController;
+import ru.shishmakov.site.SyntheticSite;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Crawl of the {@link SyntheticSite} archived and replayed offline
+ */
+public class ArchiveReaderTest extends BaseTest {
+
+    private static final int DEPTH = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl();
+
+    @Test
+    public void replayArchiveShouldRecountWordsWithOtherTokenizerSettings() throws Exception {
+        final Path dir = folder.newFolder("archive").toPath();
+        final Map<String, Long> expected;
+        try (SyntheticSite site = SyntheticSite.small().build().start()) {
+            crawl(site, dir);
+            expected = site.expectedCounts(DEPTH);
+        }
+        assertEquals("Invalid counts of words", expected, replay());
+
+        // words of the site are three letters long
+        final List<String> legalWords = expected.keySet().stream().sorted().limit(5).collect(Collectors.toList());
+        properties.set("legal.minSymbols", 4).set("legal.words", String.join(",", legalWords));
+        final Map<String, Long> filtered = new HashMap<>();
+        for (String word : legalWords) filtered.put(word, expected.get(word));
+        assertEquals("Invalid counts of legal words", filtered, replay());
+    }
+
+    @Test
+    public void readerShouldFindPagesAndRebuildTornSegment() throws Exception {
+        final Path dir = folder.newFolder("archive").toPath();
+        properties.set("archive.segmentMb", 0);
+        final int pages;
+        final String seedUri;
+        try (SyntheticSite site = SyntheticSite.small().build().start()) {
+            crawl(site, dir);
+            pages = site.expectedPages(DEPTH).size();
+            seedUri = site.getSeedUri();
+        }
+        List<Path> segments = ArchiveReader.listSegments(dir);
+        assertEquals("Every page should be the separate segment", pages, segments.size());
+
+        final Path torn = segments.get(pages - 1);
+        Files.delete(ArchiveReader.indexFile(torn));
+        try (FileChannel channel = FileChannel.open(torn, WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (ArchiveReader reader = ArchiveReader.open(dir)) {
+            assertEquals("Torn record should be dropped", pages - 1, reader.size());
+            assertEquals("Invalid count of scanned records", pages - 1, reader.scan(record -> {
+            }));
+            ArchiveRecord seed = reader.get(seedUri);
+            assertNotNull("Seed page should be archived", seed);
+            assertEquals("Invalid status", 200, seed.getPage().getStatus());
+            assertNull("Unknown page should not be found", reader.get(seedUri + "/unknown"));
+        }
+    }
+
+    @Test
+    public void replayArchiveShouldCountPagesNotModifiedSincePreviousCrawl() throws Exception {
+        recrawlAndReplay(true);
+    }
+
+    @Test
+    public void replayArchiveShouldCountPagesWithSameContentAsPreviousCrawl() throws Exception {
+        recrawlAndReplay(false);
+    }
+
+    /**
+     * Recrawl of the site with the page cache archives the unchanged pages by the records of the previous crawl
+     */
+    private void recrawlAndReplay(boolean etags) throws Exception {
+        final Path dir = folder.newFolder("archive").toPath();
+        properties.set("cache.dir", folder.newFolder("cache"));
+        final Map<String, Long> expected;
+        try (SyntheticSite site = SyntheticSite.small().etags(etags).build().start()) {
+            crawl(site, dir);
+            final List<Path> previous = ArchiveReader.listSegments(dir);
+            crawl(site, dir);
+            final int pages = site.expectedPages(DEPTH).size();
+            assertEquals("Invalid count of 304 answers", etags ? pages : 0, site.getNotModifiedResponses());
+            assertTrue("Segments of the previous crawl should be dropped",
+                    Collections.disjoint(previous, ArchiveReader.listSegments(dir)));
+            try (ArchiveReader reader = ArchiveReader.open(dir)) {
+                assertEquals("Every page should be archived", pages, reader.size());
+            }
+            expected = site.expectedCounts(DEPTH);
+        }
+        properties.set("cache.dir", "");
+        assertEquals("Invalid counts of words", expected, replay());
+    }
+
+    private void crawl(SyntheticSite site, Path dir) throws Exception {
+        properties.set("archive.dir", dir);
+        site.crawlAndCheck(DEPTH);
+    }
+
+    private static Map<String, Long> replay() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            context.getBean(RatingController.class).replayArchive();
+            return SyntheticSite.countedWords(context);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.shishmakov.checkpoint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.core.RatingController;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.site.SyntheticSite;
+import ru.shishmakov.text.NormalizationMode;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ru.shishmakov.site.SyntheticSite.countedWords;
+
+/**
+ * Interrupted crawl of the {@link SyntheticSite} resumed from the checkpoint
+ */
+public class CheckpointerTest extends BaseTest {
+
+    private static final int DEPTH = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl()
+            .with("rate.burst", 1)
+            .with("checkpoint.interval", 1)
+            .with("checkpoint.flush", 100);
+
+    @Test
+    public void resumeCrawlerShouldCountWordsAfterCrashWithTornLog() throws Exception {
+        crashAndResume();
+    }
+
+    @Test
+    public void resumeCrawlerShouldCountWordsAfterCrashOfVirtualThreads() throws Exception {
+        properties.set("crawl.engine", "VIRTUAL");
+        crashAndResume();
+    }
+
+    private void crashAndResume() throws Exception {
+        final Path dir = setUpCheckpoint(100);
+        try (SyntheticSite site = buildSite().start()) {
+            try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+                final long expectedPages = site.expectedPages(DEPTH).size();
+                final CrawlMetrics metrics = context.getBean(CrawlMetrics.class);
+                final AtomicReference<Throwable> error = new AtomicReference<>();
+                final Thread crawler = new Thread(() -> {
+                    try {
+                        context.getBean(RatingController.class).startCrawler(site.getSeedUri(), DEPTH);
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                });
+                crawler.start();
+                while (metrics.get(Counter.PAGES_FETCHED) + metrics.get(Counter.PAGES_FAILED) < expectedPages * 2 / 3) {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                }
+                crawler.interrupt();
+                crawler.join();
+                assertTrue("Crawl should be interrupted", error.get() instanceof InterruptedException);
+            }
+
+            final List<Path> files = listFiles(dir);
+            logger.info("Checkpoint files: {}", files);
+            assertTrue("There should be a snapshot", files.stream().anyMatch(f -> f.toString().contains("snapshot")));
+            tearTail(files.stream().filter(f -> f.getFileName().toString().startsWith("log")).reduce((a, b) -> b).get());
+
+            try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+                context.getBean(RatingController.class).resumeCrawler();
+                assertEquals("Invalid counts of words", site.expectedCounts(DEPTH), countedWords(context));
+            }
+        }
+    }
+
+    @Test
+    public void resumeCrawlerShouldKeepCountsOfCompletedCrawl() throws Exception {
+        final Path dir = setUpCheckpoint(10_000);
+        try (SyntheticSite site = buildSite().start()) {
+            site.crawlAndCheck(DEPTH);
+            final long requests = site.getPageRequests();
+            assertFalse("There should be the final snapshot", listFiles(dir).isEmpty());
+
+            try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+                context.getBean(RatingController.class).resumeCrawler();
+                assertEquals("Invalid counts of words", site.expectedCounts(DEPTH), countedWords(context));
+            }
+            assertEquals("Completed crawl should not fetch pages again", requests, site.getPageRequests());
+        }
+    }
+
+    @Test
+    public void resumeCrawlerShouldRejectCheckpointOfOtherNormalization() throws Exception {
+        setUpCheckpoint(10_000);
+        properties.set("term.normalization", NormalizationMode.LOWER_CASE);
+        try (SyntheticSite site = buildSite().start()) {
+            site.crawlAndCheck(DEPTH);
+            properties.set("term.normalization", NormalizationMode.STEM);
+            try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+                context.getBean(RatingController.class).resumeCrawler();
+                fail("Checkpoint of the other normalization should be rejected");
+            } catch (IllegalStateException e) {
+                assertTrue("Invalid error: " + e.getMessage(), e.getMessage().contains("other settings of the words"));
+            }
+        }
+    }
+
+    private Path setUpCheckpoint(int hostRps) throws Exception {
+        final Path dir = folder.newFolder("checkpoint").toPath();
+        properties.set("host.rps", hostRps).set("checkpoint.dir", dir);
+        return dir;
+    }
+
+    private static SyntheticSite buildSite() {
+        return SyntheticSite.small()
+                .pages(2_000)
+                .fanOut(6)
+                .pageSize(1024)
+                .build();
+    }
+
+    private static List<Path> listFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Cut the last record of the log as if the crash happened in time of its write
+     */
+    private static void tearTail(Path file) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            if (channel.size() > 16) channel.truncate(channel.size() - 3);
+        }
+    }
+}
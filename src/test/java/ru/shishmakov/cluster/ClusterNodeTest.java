@@ -0,0 +1,107 @@
+package ru.shishmakov.cluster;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.Main;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.core.RatingController;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.site.SyntheticSite;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Crawl of the {@link SyntheticSite} by the coordinator of this JVM and the worker nodes of the separate JVMs
+ */
+public class ClusterNodeTest extends BaseTest {
+
+    private static final int DEPTH = 4;
+    private static final int NODES = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl();
+
+    @Test
+    public void startCrawlerShouldCountWordsOfAllNodesByCoordinator() throws Exception {
+        properties.set("cluster.nodes", freeAddresses(NODES)).set("cluster.batchSize", 16);
+        final List<Process> workers = new ArrayList<>();
+        try (SyntheticSite site = SyntheticSite.small().build().start()) {
+            for (int node = 1; node < NODES; node++) workers.add(startWorker(node, site.getSeedUri()));
+            properties.set("cluster.node", 0);
+            final CrawlMetrics metrics = site.crawlAndCheck(DEPTH);
+            logger.info("Pages: {}, requests: {}, fetched by coordinator: {}", site.expectedPages(DEPTH).size(),
+                    site.getPageRequests(), metrics.get(Counter.PAGES_FETCHED));
+            assertEquals("Every page should be fetched by one node", 0, site.getRepeatedRequests());
+            assertTrue("Links should be forwarded", metrics.get(Counter.LINKS_FORWARDED) > 0);
+            assertTrue("Pages should be shared", metrics.get(Counter.PAGES_FETCHED) < site.getPageRequests());
+            for (Process worker : workers) {
+                assertTrue("Worker should finish", worker.waitFor(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            workers.forEach(Process::destroyForcibly);
+        }
+    }
+
+    @Test
+    public void startCrawlerShouldFailIfNodeIsNotAvailable() throws Exception {
+        properties.set("cluster.nodes", freeAddresses(2))
+                .set("cluster.node", 0)
+                .set("cluster.joinTimeout", 500);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            context.getBean(RatingController.class).startCrawler("http://127.0.0.1:1/page/0", DEPTH);
+            fail("Crawl without the worker should fail");
+        } catch (IOException e) {
+            assertTrue("Invalid error: " + e.getMessage(), e.getMessage().startsWith("Node 1 is not available"));
+        }
+    }
+
+    private Process startWorker(int node, String seedUri) throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        properties.values().forEach((key, value) -> command.add("-D" + key + "=" + value));
+        command.add("-Dcluster.node=" + node);
+        command.add(Main.class.getName());
+        command.add(seedUri);
+        command.add(String.valueOf(DEPTH));
+        final File dir = folder.newFolder("node" + node);
+        return new ProcessBuilder(command)
+                .directory(dir)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(dir, "node.out"))
+                .start();
+    }
+
+    private static String freeAddresses(int nodes) throws IOException {
+        final List<String> addresses = new ArrayList<>();
+        final List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < nodes; i++) {
+                final ServerSocket socket = new ServerSocket(0);
+                sockets.add(socket);
+                addresses.add("127.0.0.1:" + socket.getLocalPort());
+            }
+        } finally {
+            for (ServerSocket socket : sockets) socket.close();
+        }
+        return String.join(",", addresses);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.shishmakov.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.archive.ArchiveReader;
+import ru.shishmakov.config.SharedConfig;
+import ru.shishmakov.export.FrequencyTable;
+import ru.shishmakov.export.FrequencyTableWriter;
+import ru.shishmakov.site.SyntheticSite;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sites of the seed file crawled at once with their own visited URLs and counted words
+ */
+public class BatchControllerTest extends BaseTest {
+
+    private static final int DEPTH = 3;
+    private static final int SITES = 4;
+    private static final int TOP = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl()
+            .with("batch.parallelism", 3)
+            .with("top.count", TOP);
+
+    @Test
+    public void crawlShouldWriteTopWordsOfEverySite() throws Exception {
+        final Path archive = folder.newFolder("archive").toPath();
+        final Path export = folder.newFolder("export").toPath();
+        properties.set("archive.dir", archive).set("export.dir", export);
+        final List<SyntheticSite> sites = new ArrayList<>();
+        try {
+            final List<String> seeds = new ArrayList<>();
+            seeds.add("# sites of the batch");
+            for (int i = 0; i < SITES; i++) {
+                final SyntheticSite site = SyntheticSite.small()
+                        .pages(200)
+                        .pageSize(1024)
+                        .vocabulary(1_000, 1.0)
+                        .seed(i + 1)
+                        .build()
+                        .start();
+                sites.add(site);
+                seeds.add(site.getSeedUri() + " " + DEPTH);
+            }
+            seeds.add("");
+            seeds.add("http://[invalid/ " + DEPTH);
+            final Path seedFile = folder.newFile("seeds.txt").toPath();
+            final Path resultFile = folder.getRoot().toPath().resolve("results.tsv");
+            Files.write(seedFile, seeds, StandardCharsets.UTF_8);
+
+            try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SharedConfig.class)) {
+                assertEquals("Invalid count of completed crawls", SITES,
+                        context.getBean(BatchController.class).crawl(seedFile, resultFile));
+            }
+
+            final Map<String, String[]> results = new HashMap<>();
+            for (String line : Files.readAllLines(resultFile, StandardCharsets.UTF_8)) {
+                final String[] fields = line.split("\t", -1);
+                results.put(fields[0], fields);
+            }
+            assertEquals("Every site should have the result", SITES + 1, results.size());
+            assertEquals("Failed crawl should have no pages", "-1", results.get("http://[invalid/")[2]);
+            for (SyntheticSite site : sites) {
+                final String[] result = results.get(site.getSeedUri());
+                assertEquals("Invalid count of visited pages of site: " + site.getSeedUri(),
+                        String.valueOf(site.getPageRequests()), result[2]);
+                assertEquals("Invalid top words of site: " + site.getSeedUri(), expectedTop(site), result[3]);
+            }
+
+            // every site has its own archive and export named by its seed
+            try (Stream<Path> dirs = Files.list(archive)) {
+                assertEquals("Every site should have the archive", SITES, dirs.count());
+            }
+            for (SyntheticSite site : sites) {
+                final String name = new BatchController.Seed(site.getSeedUri(), DEPTH).name();
+                try (ArchiveReader reader = ArchiveReader.open(archive.resolve(name))) {
+                    assertEquals("Invalid count of archived pages", site.expectedPages(DEPTH).size(), reader.size());
+                }
+                final Map<String, Long> exported = new HashMap<>();
+                try (FrequencyTable table = FrequencyTable.open(export.resolve(name)
+                        .resolve(FrequencyTableWriter.FILE_NAME))) {
+                    final FrequencyTable.Cursor cursor = table.cursor();
+                    while (cursor.next()) exported.put(cursor.word(), cursor.count());
+                }
+                assertEquals("Invalid exported words", site.expectedCounts(DEPTH), exported);
+            }
+        } finally {
+            sites.forEach(SyntheticSite::close);
+        }
+    }
+
+    @Test
+    public void nameShouldDependOnUriOnly() {
+        final BatchController.Seed seed = new BatchController.Seed("http://example.com/a", DEPTH);
+        assertEquals("Name should not depend on the depth", seed.name(),
+                new BatchController.Seed("http://example.com/a", DEPTH + 1).name());
+        assertNotEquals("Every uri should have its own name", seed.name(),
+                new BatchController.Seed("http://example.com/b", DEPTH).name());
+        assertTrue("Name should start with the host", seed.name().startsWith("example.com-"));
+    }
+
+    private static String expectedTop(SyntheticSite site) {
+        return site.expectedCounts(DEPTH).entrySet().stream()
+                .map(e -> new Word(e.getKey(), e.getValue()))
+                .sorted()
+                .limit(TOP)
+                .map(w -> w.getWord() + ':' + w.getQuantity())
+                .collect(Collectors.joining(" "));
+    }
+}
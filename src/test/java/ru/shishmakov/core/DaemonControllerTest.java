@@ -0,0 +1,133 @@
+package ru.shishmakov.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.SharedConfig;
+import ru.shishmakov.site.SyntheticSite;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Jobs of the {@link DaemonController} submitted and queried over HTTP
+ */
+public class DaemonControllerTest extends BaseTest {
+
+    private static final int DEPTH = 3;
+    private static final int TOP = 10;
+
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl().with("daemon.port", 0);
+
+    @Test
+    public void daemonShouldServeCountedWordsOfJobs() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SharedConfig.class)) {
+            final InetSocketAddress address = context.getBean(DaemonController.class).start();
+            final String jobs = "http://127.0.0.1:" + address.getPort() + "/jobs";
+            assertTrue("API should be bound to loopback: " + address, address.getAddress().isLoopbackAddress());
+            for (long seed = 1; seed <= 2; seed++) {
+                try (SyntheticSite site = SyntheticSite.small()
+                        .pages(200)
+                        .pageSize(1024)
+                        .vocabulary(1_000, 1.0)
+                        .errorRate(0)
+                        .seed(seed)
+                        .build()
+                        .start()) {
+                    final String created = request("POST", jobs + "?uri=" +
+                            URLEncoder.encode(site.getSeedUri(), "UTF-8") + "&depth=" + DEPTH, 201);
+                    final String job = jobs + '/' + seed;
+                    assertTrue("Invalid job: " + created, created.startsWith("{\"id\":" + seed + ','));
+                    awaitCompleted(job);
+
+                    final Map<String, Long> expected = site.expectedCounts(DEPTH);
+                    final String top = expected.entrySet().stream()
+                            .map(e -> new Word(e.getKey(), e.getValue()))
+                            .sorted()
+                            .limit(TOP)
+                            .map(w -> "{\"word\":\"" + w.getWord() + "\",\"count\":" + w.getQuantity() + '}')
+                            .collect(Collectors.joining(",", "[", "]"));
+                    assertEquals("Invalid top words", top, request("GET", job + "/top?count=" + TOP, 200));
+                    final Map.Entry<String, Long> word = expected.entrySet().iterator().next();
+                    assertEquals("Invalid count of word",
+                            "{\"word\":\"" + word.getKey() + "\",\"count\":" + word.getValue() + '}',
+                            request("GET", job + "/words/" + word.getKey(), 200));
+                    assertEquals("Unknown word should have no count", "{\"word\":\"unknownword\",\"count\":0}",
+                            request("GET", job + "/words/unknownword", 200));
+                }
+            }
+            assertTrue("Jobs should be listed", request("GET", jobs, 200).contains("\"id\":2,"));
+            request("DELETE", jobs + "/1", 204);
+            request("GET", jobs + "/1", 404);
+            request("POST", jobs + "?depth=" + DEPTH, 400);
+        }
+    }
+
+    @Test
+    public void jobOfSiteShouldBeRejectedUntilOtherJobIsFinished() throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SharedConfig.class);
+             SyntheticSite site = SyntheticSite.small()
+                     .pages(50)
+                     .latencyMs(100)
+                     .errorRate(0)
+                     .build()
+                     .start()) {
+            final InetSocketAddress address = context.getBean(DaemonController.class).start();
+            final String jobs = "http://127.0.0.1:" + address.getPort() + "/jobs";
+            final String submit = jobs + "?uri=" + URLEncoder.encode(site.getSeedUri(), "UTF-8") + "&depth=" + DEPTH;
+            request("POST", submit, 201);
+            request("POST", submit, 409);
+            awaitCompleted(jobs + "/1");
+            request("POST", submit, 201);
+            awaitCompleted(jobs + "/2");
+        }
+    }
+
+    @Test
+    public void nameShouldBeSharedByJobsOfSite() {
+        assertEquals("Invalid name of job", "example.com_8080",
+                new CrawlJob(1, "http://example.com:8080/a", 1).name());
+        assertEquals("Jobs of site should share the name", "example.com_8080",
+                new CrawlJob(2, "http://example.com:8080/b", 2).name());
+        assertEquals("Invalid name of job without port", "other.org", new CrawlJob(3, "https://other.org", 1).name());
+    }
+
+    private static void awaitCompleted(String job) throws IOException, InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < end) {
+            final String status = request("GET", job, 200);
+            if (status.contains("\"state\":\"COMPLETED\"")) return;
+            assertTrue("Job should not fail: " + status, !status.contains("\"state\":\"FAILED\""));
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        fail("Job is not completed: " + job);
+    }
+
+    private static String request(String method, String url, int status) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        try {
+            connection.setRequestMethod(method);
+            assertEquals("Invalid status of " + method + ' ' + url, status, connection.getResponseCode());
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                return in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
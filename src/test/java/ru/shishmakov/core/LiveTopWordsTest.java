@@ -0,0 +1,87 @@
+package ru.shishmakov.core;
+
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.count.DictionaryWordCounter;
+import ru.shishmakov.count.StripedWordCounter;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.count.WordHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LiveTopWordsTest extends BaseTest {
+
+    @Test
+    public void offerShouldKeepExactTopOfConcurrentCounts() throws Exception {
+        for (boolean dictionary : new boolean[]{false, true}) {
+            final LiveTopWords live = new LiveTopWords(50, 1_000);
+            final WordCounter counter = dictionary
+                    ? new DictionaryWordCounter(8, live::offer)
+                    : new StripedWordCounter(8, live::offer);
+            final ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                final List<Future<?>> writers = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    final Random random = new Random(t);
+                    writers.add(executor.submit(() -> {
+                        for (int page = 0; page < 500; page++) {
+                            final WordHistogram histogram = new WordHistogram();
+                            for (int i = 0; i < 100; i++) {
+                                // skewed vocabulary, so the ranking is changed while the counts grow
+                                histogram.add(Integer.toString((int) Math.pow(random.nextInt(3_000), 1.5), 36), 1);
+                            }
+                            counter.addAll(histogram);
+                        }
+                        counter.add("single", 1);
+                    }));
+                }
+                for (Future<?> writer : writers) writer.get();
+            } finally {
+                executor.shutdownNow();
+            }
+
+            final List<Word> expected = TopWords.select(counter, 50, ForkJoinPool.commonPool());
+            assertEquals("Invalid live top words of dictionary: " + dictionary, expected, live.current());
+        }
+    }
+
+    @Test
+    public void offerShouldKeepAllWordsUntilRankingIsFull() {
+        final LiveTopWords live = new LiveTopWords(3, 1_000);
+        live.offer("aaa", 1);
+        live.offer("bb", 1);
+        live.offer("aaa", 2);
+        assertEquals("Invalid ranking", List.of(new Word("aaa", 2), new Word("bb", 1)), live.current());
+
+        live.offer("ccc", 1);
+        live.offer("ddd", 3);
+        live.offer("bb", 2);
+        assertEquals("Invalid ranking", List.of(new Word("ddd", 3), new Word("aaa", 2), new Word("bb", 2)),
+                live.current());
+    }
+
+    @Test
+    public void startShouldPublishSnapshotsUntilStop() throws Exception {
+        final LiveTopWords live = new LiveTopWords(2, 20);
+        live.start();
+        live.offer("aaa", 1);
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (live.getSnapshot().isEmpty() && System.nanoTime() < end) TimeUnit.MILLISECONDS.sleep(10);
+        assertEquals("Snapshot should be published", List.of(new Word("aaa", 1)), live.getSnapshot());
+
+        live.offer("bbb", 2);
+        live.stop();
+        assertEquals("Final snapshot should be published", live.current(), live.getSnapshot());
+        assertTrue("Ranking without the interval is disabled", !new LiveTopWords(2, 0).isEnabled());
+    }
+}
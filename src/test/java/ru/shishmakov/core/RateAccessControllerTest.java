@@ -69,7 +69,7 @@ public class RateAccessControllerTest extends BaseTest {
 
     private static ExecutorService buildExecutorService() {
         return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
-                new BasicThreadFactory.Builder()
+                BasicThreadFactory.builder()
                         .namingPattern("request-worker %d")
                         .build());
     }
@@ -0,0 +1,44 @@
+package ru.shishmakov.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.site.SyntheticSite;
+
+/**
+ * End-to-end crawl of the {@link SyntheticSite}
+ */
+public class RatingControllerTest extends BaseTest {
+
+    private static final int DEPTH = 4;
+
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl();
+
+    @Test
+    public void startCrawlerShouldCountWordsOfReachablePagesByDom() throws Exception {
+        crawlAndCheck("DOM", "STRIPED", "FORK_JOIN");
+    }
+
+    @Test
+    public void startCrawlerShouldCountWordsOfReachablePagesByStream() throws Exception {
+        crawlAndCheck("STREAM", "DICTIONARY", "FORK_JOIN");
+    }
+
+    @Test
+    public void startCrawlerShouldCountWordsOfReachablePagesByVirtualThreads() throws Exception {
+        crawlAndCheck("DOM", "STRIPED", "VIRTUAL");
+    }
+
+    private void crawlAndCheck(String parseMode, String counterType, String engine) throws Exception {
+        properties.set("parse.mode", parseMode)
+                .set("counter.type", counterType)
+                .set("crawl.engine", engine);
+        try (SyntheticSite site = SyntheticSite.small().build().start()) {
+            site.crawlAndCheck(DEPTH);
+            logger.info("Pages: {}, requests: {}, words: {}",
+                    site.expectedPages(DEPTH).size(), site.getPageRequests(), site.expectedCounts(DEPTH).size());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.shishmakov.core;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+public class TokenBucketRateLimiterTest extends BaseTest {
+
+    private ExecutorService pool;
+
+    @Before
+    @Override
+    public void setUp() {
+        super.setUp();
+        pool = buildExecutorService();
+    }
+
+    @After
+    public void tearDown() {
+        MoreExecutors.shutdownAndAwaitTermination(pool, 30, SECONDS);
+    }
+
+    @Test
+    public void acquireAccessShouldHaveThresholdTaskCountPerSecond() throws Exception {
+        final int ratePerSecond = 20;
+        final int taskCount = 100;
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(ratePerSecond, 1);
+        Map<Long, Integer> statistics = new ConcurrentHashMap<>();
+        CountDownLatch awaitTasks = new CountDownLatch(taskCount);
+
+        for (int i = 0; i < taskCount; i++) {
+            pool.submit(() -> limiter.acquireAccess(buildTask(statistics, awaitTasks)));
+        }
+        awaitTasks.await();
+        logger.info("Result map: {}", statistics);
+
+        // slots are spread evenly, so the boundary of a second could take one extra slot
+        statistics.forEach((second, tasks) -> assertTrue("Excess rate per second", tasks <= ratePerSecond + 1));
+    }
+
+    @Test
+    public void acquireShouldSupportFractionalRate() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2.5, 1);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Permits were issued faster than the rate: " + elapsedMs, elapsedMs >= 1150);
+        assertTrue("Permits were issued slower than the rate: " + elapsedMs, elapsedMs < 2000);
+    }
+
+    @Test
+    public void tryAcquireShouldIssueBurstAtOnce() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(0.5, 3);
+
+        assertTrue("First permit of burst should be available", limiter.tryAcquire());
+        assertTrue("Second permit of burst should be available", limiter.tryAcquire());
+        assertTrue("Third permit of burst should be available", limiter.tryAcquire());
+        assertFalse("Permit out of burst should not be available", limiter.tryAcquire());
+    }
+
+    private Callable<Void> buildTask(Map<Long, Integer> statistics, CountDownLatch awaitTasks) {
+        return () -> {
+            long currentSec = System.currentTimeMillis() / 1000;
+            statistics.merge(currentSec, 1, (old, inc) -> old + inc);
+            awaitTasks.countDown();
+            return null;
+        };
+    }
+
+    private static ExecutorService buildExecutorService() {
+        return Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+                BasicThreadFactory.builder()
+                        .namingPattern("request-worker %d")
+                        .build());
+    }
+}
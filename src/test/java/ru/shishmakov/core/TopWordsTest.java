@@ -0,0 +1,50 @@
+package ru.shishmakov.core;
+
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.count.StripedWordCounter;
+import ru.shishmakov.count.WordCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class TopWordsTest extends BaseTest {
+
+    @Test
+    public void selectShouldKeepWordsOfEqualCountAndLength() {
+        WordCounter counter = new StripedWordCounter(4);
+        counter.add("aaa", 5);
+        counter.add("bbb", 5);
+        counter.add("ccc", 5);
+        counter.add("dddd", 1);
+
+        List<Word> top = TopWords.select(counter, 3, ForkJoinPool.commonPool());
+        logger.info("Top: {}", top);
+
+        assertEquals("Invalid top words", Arrays.asList(new Word("aaa", 5), new Word("bbb", 5), new Word("ccc", 5)), top);
+    }
+
+    @Test
+    public void selectShouldBeEqualToPrefixOfSortedWords() {
+        final Random random = new Random(7);
+        WordCounter counter = new StripedWordCounter(16);
+        List<Word> all = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            final String word = Integer.toString(i, 36);
+            final long quantity = 1 + random.nextInt(50);
+            counter.add(word, quantity);
+            all.add(new Word(word, quantity));
+        }
+        all.sort(null);
+
+        for (int limit : new int[]{1, 10, 100, 25_000}) {
+            List<Word> top = TopWords.select(counter, limit, ForkJoinPool.commonPool());
+            assertEquals("Invalid top words of limit " + limit, all.subList(0, Math.min(limit, all.size())), top);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.shishmakov.count;
+
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DictionaryWordCounterTest extends BaseTest {
+
+    private static final String[] ALPHABETS = {"abcdefghij", "абвгдеёжзи", "αβγδε", "😀😁"};
+
+    @Test
+    public void termDictionaryShouldAssignDenseIdsAndResolveTerms() {
+        TermDictionary dictionary = new TermDictionary(16);
+        String[] terms = {"crawler", "счётчик", "λέξη", "😀smile", "a-very-long-term-to-take-a-whole-chunk"};
+        for (int i = 0; i < terms.length; i++) {
+            assertEquals("Id should be assigned in order", i, dictionary.add(terms[i]));
+        }
+        for (int i = 0; i < terms.length; i++) {
+            assertEquals("Known term should keep its id", i, dictionary.add(terms[i]));
+            assertEquals("Invalid id of term", i, dictionary.find(terms[i]));
+            assertEquals("Invalid resolved term", terms[i], dictionary.term(i));
+        }
+        assertEquals("Unknown term should be absent", -1, dictionary.find("unknown"));
+        logger.info("Dictionary: {}", dictionary);
+    }
+
+    @Test
+    public void counterShouldBeEqualToStripedCounter() {
+        final Random random = new Random(11);
+        DictionaryWordCounter dictionary = new DictionaryWordCounter(8);
+        StripedWordCounter striped = new StripedWordCounter(8);
+        for (int p = 0; p < 300; p++) {
+            WordHistogram page = new WordHistogram();
+            for (int i = 0; i < 200; i++) {
+                page.add(randomWord(random), 1 + random.nextInt(3));
+            }
+            dictionary.addAll(page);
+            striped.addAll(page);
+        }
+        dictionary.add("single", 7L);
+        striped.add("single", 7L);
+
+        assertEquals("Invalid number of distinct words", striped.size(), dictionary.size());
+        assertEquals("Invalid count of word", 7L, dictionary.count("single"));
+        assertEquals("Unknown word should have no count", 0L, dictionary.count("unknown"));
+        assertEquals("Invalid counts", toMap(striped), toMap(dictionary));
+        logger.info("Counter: {}", dictionary);
+    }
+
+    private static String randomWord(Random random) {
+        final String alphabet = ALPHABETS[random.nextInt(ALPHABETS.length)];
+        final StringBuilder word = new StringBuilder();
+        for (int i = 0, length = 1 + random.nextInt(3); i < length; i++) {
+            final int index = random.nextInt(alphabet.length());
+            if (Character.isSurrogate(alphabet.charAt(index))) {
+                final int start = index - index % 2;
+                word.append(alphabet, start, start + 2);
+            } else {
+                word.append(alphabet.charAt(index));
+            }
+        }
+        return word.toString();
+    }
+
+    private static Map<String, Long> toMap(WordCounter counter) {
+        Map<String, Long> map = new HashMap<>();
+        counter.forEach(map::put);
+        return map;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.shishmakov.count;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+
+public class StripedWordCounterTest extends BaseTest {
+
+    @Test
+    public void histogramShouldGrowAndKeepCounts() {
+        WordHistogram histogram = new WordHistogram(2);
+        for (int i = 0; i < 10_000; i++) {
+            histogram.add("word" + (i % 1_000), 1L);
+        }
+
+        assertEquals("Invalid number of distinct words", 1_000, histogram.size());
+        assertEquals("Invalid count of word", 10L, histogram.get("word999"));
+        assertEquals("Unknown word should have no count", 0L, histogram.get("word1000"));
+
+        histogram.clear();
+        assertEquals("Histogram should be empty after clear", 0, histogram.size());
+        assertEquals("Cleared word should have no count", 0L, histogram.get("word1"));
+    }
+
+    @Test
+    public void addAllShouldMergeHistogramsOfConcurrentWorkers() throws Exception {
+        final int workers = 8;
+        final int pages = 200;
+        StripedWordCounter counter = new StripedWordCounter(4);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    for (int p = 0; p < pages; p++) {
+                        WordHistogram page = new WordHistogram();
+                        for (int i = 0; i < 500; i++) {
+                            page.add("w" + (i % 100), 1L);
+                        }
+                        counter.addAll(page);
+                        counter.add("single", 1L);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            MoreExecutors.shutdownAndAwaitTermination(pool, 10, SECONDS);
+        }
+
+        Map<String, Long> result = new HashMap<>();
+        counter.forEach(result::put);
+        assertEquals("Invalid number of distinct words", 101, counter.size());
+        assertEquals("Invalid number of visited words", 101, result.size());
+        assertEquals("Invalid count of merged word", 5L * workers * pages, counter.count("w42"));
+        assertEquals("Invalid count of single word", (long) workers * pages, result.get("single").longValue());
+    }
+}
@@ -0,0 +1,78 @@
+package ru.shishmakov.dedup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.count.WordHistogram;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.site.SyntheticSite;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Near duplicates are found by SimHash and their words are not counted
+ */
+public class NearDuplicateIndexTest extends BaseTest {
+
+    private static final int DEPTH = 4;
+
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl().with("dedup.enabled", true);
+
+    @Test
+    public void isDuplicateShouldFindPagesWithNearlyTheSameWords() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            final NearDuplicateIndex index = context.getBean(NearDuplicateIndex.class);
+            final Random random = new Random(1);
+            final WordHistogram original = randomPage(random);
+            assertFalse("Original should be indexed", index.isDuplicate("original", original));
+            assertTrue("Same page should be duplicate", index.isDuplicate("copy", original));
+
+            original.add("printable", 1);
+            original.add("version", 1);
+            assertTrue("Page with the banner should be duplicate", index.isDuplicate("print", original));
+
+            for (int i = 0; i < 100; i++) {
+                assertFalse("Other page should not be duplicate", index.isDuplicate("page" + i, randomPage(random)));
+            }
+            final WordHistogram small = new WordHistogram();
+            small.add("word", 1);
+            assertFalse("Small page should not be indexed", index.isDuplicate("small", small));
+            assertFalse("Small page should not be duplicate", index.isDuplicate("small", small));
+            assertEquals("Invalid size", 101, index.size());
+        }
+    }
+
+    @Test
+    public void startCrawlerShouldNotCountPrintViews() throws Exception {
+        try (SyntheticSite site = SyntheticSite.small().printViews(true).build().start()) {
+            final CrawlMetrics metrics = site.crawlAndCheck(DEPTH);
+
+            // every page above the last level links to its print view
+            final int printViews = site.expectedPages(DEPTH - 1).size();
+            assertEquals("Every print view should be requested", printViews, site.getPrintRequests());
+            assertEquals("Every print view should be duplicate", printViews,
+                    metrics.get(Counter.PAGES_DUPLICATE));
+        }
+    }
+
+    /**
+     * @return words of the page with the Zipf's distribution like the natural text
+     */
+    private static WordHistogram randomPage(Random random) {
+        final WordHistogram page = new WordHistogram();
+        for (int i = 0; i < 500; i++) {
+            final int rank = (int) Math.min(1_999, Math.floor(Math.exp(random.nextDouble() * Math.log(2_000))) - 1);
+            page.add("word" + rank, 1);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,148 @@
+package ru.shishmakov.export;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.count.StripedWordCounter;
+import ru.shishmakov.count.WordCounter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FrequencyTableTest extends BaseTest {
+
+    private static final String[] STEMS = {"краул", "crawl", "счёт", "count", "слово", "word", "𝔴𝔬𝔯𝔡"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void openShouldReadAllWordsInOrderOfBytes() throws Exception {
+        final Map<String, Long> words = randomWords(new Random(3), 5_000);
+        final Path file = folder.getRoot().toPath().resolve("words.freq");
+        assertEquals("Invalid count of written words", words.size(), FrequencyTableWriter.write(file, counter(words)));
+
+        final List<String> sorted = new ArrayList<>(words.keySet());
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.getBytes(UTF_8), b.getBytes(UTF_8)));
+        try (FrequencyTable table = FrequencyTable.open(file)) {
+            assertEquals("Invalid size", words.size(), table.size());
+            assertEquals("Invalid total", words.values().stream().mapToLong(Long::longValue).sum(), table.total());
+            final FrequencyTable.Cursor cursor = table.cursor();
+            for (String word : sorted) {
+                assertEquals("Cursor should have the word: " + word, true, cursor.next());
+                assertEquals("Invalid word", word, cursor.word());
+                assertEquals("Invalid count of word: " + word, (long) words.get(word), cursor.count());
+            }
+            assertFalse("Cursor should be at the end", cursor.next());
+
+            for (String word : sorted) {
+                assertEquals("Invalid count of word: " + word, (long) words.get(word), table.count(word));
+            }
+            for (String absent : new String[]{"", "a", sorted.get(0) + "!", "яяяя", "￿"}) {
+                assertEquals("Unknown word should have no count: " + absent,
+                        words.getOrDefault(absent, 0L).longValue(), table.count(absent));
+            }
+        }
+    }
+
+    @Test
+    public void openShouldReadEmptyTable() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("empty.freq");
+        assertEquals("Invalid count of written words", 0, FrequencyTableWriter.write(file, new StripedWordCounter(2)));
+        try (FrequencyTable table = FrequencyTable.open(file)) {
+            assertEquals("Invalid size", 0, table.size());
+            assertFalse("Table should be empty", table.cursor().next());
+            assertEquals("Unknown word should have no count", 0, table.count("word"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addShouldRejectWordsOutOfOrder() throws Exception {
+        try (FrequencyTableWriter writer = new FrequencyTableWriter(folder.newFile().toPath(), 4)) {
+            writer.add("beta", 1);
+            writer.add("alpha", 1);
+        }
+    }
+
+    @Test
+    public void compareShouldFindMostRisingAndFallingWords() throws Exception {
+        final Random random = new Random(11);
+        final Map<String, Long> before = randomWords(random, 3_000);
+        final Map<String, Long> after = new HashMap<>();
+        before.forEach((word, count) -> {
+            if (random.nextInt(10) > 0) after.put(word, Math.max(1, count + random.nextInt(21) - 10));
+        });
+        after.putAll(randomWords(random, 500));
+        final Path beforeFile = folder.getRoot().toPath().resolve("before.freq");
+        final Path afterFile = folder.getRoot().toPath().resolve("after.freq");
+        FrequencyTableWriter.write(beforeFile, counter(before));
+        FrequencyTableWriter.write(afterFile, counter(after));
+
+        final double beforeScale = 1_000_000d / before.values().stream().mapToLong(Long::longValue).sum();
+        final double afterScale = 1_000_000d / after.values().stream().mapToLong(Long::longValue).sum();
+        final Set<String> all = new HashSet<>(before.keySet());
+        all.addAll(after.keySet());
+        final Map<String, Double> changes = all.stream().collect(Collectors.toMap(w -> w,
+                w -> after.getOrDefault(w, 0L) * afterScale - before.getOrDefault(w, 0L) * beforeScale));
+        final Comparator<String> byChange = Comparator.comparing(changes::get);
+        final List<String> rising = all.stream()
+                .filter(w -> changes.get(w) > 0)
+                .sorted(byChange.reversed().thenComparing(Comparator.naturalOrder()))
+                .limit(20)
+                .collect(Collectors.toList());
+        final List<String> falling = all.stream()
+                .filter(w -> changes.get(w) < 0)
+                .sorted(byChange.thenComparing(Comparator.naturalOrder()))
+                .limit(20)
+                .collect(Collectors.toList());
+
+        try (FrequencyTable beforeTable = FrequencyTable.open(beforeFile);
+             FrequencyTable afterTable = FrequencyTable.open(afterFile)) {
+            final FrequencyDiff diff = FrequencyDiff.compare(beforeTable, afterTable, 20);
+            logger.info("Diff: {}\nrising: {}\nfalling: {}", diff, diff.getRising(), diff.getFalling());
+            assertEquals("Invalid rising words", rising, words(diff.getRising()));
+            assertEquals("Invalid falling words", falling, words(diff.getFalling()));
+            assertEquals("Invalid count of added words", all.size() - before.size(), diff.getAdded());
+            assertEquals("Invalid count of removed words", all.size() - after.size(), diff.getRemoved());
+            final FrequencyDiff.Change top = diff.getRising().get(0);
+            assertEquals("Invalid count before", before.getOrDefault(top.getWord(), 0L).longValue(), top.getBefore());
+            assertEquals("Invalid count after", after.getOrDefault(top.getWord(), 0L).longValue(), top.getAfter());
+        }
+    }
+
+    private static List<String> words(List<FrequencyDiff.Change> changes) {
+        return changes.stream().map(FrequencyDiff.Change::getWord).collect(Collectors.toList());
+    }
+
+    private static WordCounter counter(Map<String, Long> words) {
+        final WordCounter counter = new StripedWordCounter(4);
+        words.forEach(counter::add);
+        return counter;
+    }
+
+    /**
+     * @return words with the long shared prefixes and the multi-byte chars
+     */
+    private static Map<String, Long> randomWords(Random random, int size) {
+        final Map<String, Long> words = new HashMap<>();
+        while (words.size() < size) {
+            final String word = STEMS[random.nextInt(STEMS.length)] + Integer.toString(random.nextInt(1 << 20), 36);
+            words.put(word, 1L + random.nextInt(1_000));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,89 @@
+package ru.shishmakov.fetch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.site.SyntheticSite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Links and responses those could not be counted are skipped or aborted
+ */
+public class ContentFilterTest extends BaseTest {
+
+    private static final int DEPTH = 4;
+
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl();
+
+    @Test
+    public void isFetchableShouldSkipExtensionsAndNegativePatterns() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            final ContentFilter filter = context.getBean(ContentFilter.class);
+            assertFalse("Extension should be skipped", filter.isFetchable("http://host/docs/report.PDF"));
+            assertFalse("Extension should be skipped", filter.isFetchable("http://host/docs/report.pdf?v=1#top"));
+            assertTrue("Page should be fetched", filter.isFetchable("http://host/docs/report.html"));
+            assertTrue("Page should be fetched", filter.isFetchable("http://host/docs.zip/"));
+            assertTrue("Page should be fetched", filter.isFetchable("http://host"));
+            assertEquals("Invalid pattern", "host:80/get/*.bin", ContentFilter.pattern("http://Host:80/get/1.bin?x=/y"));
+            assertEquals("Invalid pattern", "host/*", ContentFilter.pattern("http://host?x=/y"));
+
+            filter.reject("http://host/get/1");
+            assertTrue("Pattern should not be negative yet", filter.isFetchable("http://host/get/2"));
+            filter.reject("http://host/get/2");
+            assertFalse("Pattern should be negative", filter.isFetchable("http://host/get/3"));
+            assertTrue("Other extension should be fetched", filter.isFetchable("http://host/get/3.html"));
+
+            filter.accept("http://host/page/1");
+            for (int i = 2; i < 5; i++) filter.reject("http://host/page/" + i);
+            assertTrue("Pattern of accepted page should not be negative", filter.isFetchable("http://host/page/5"));
+
+            assertTrue("Type should be accepted", filter.isAcceptedContentType("TEXT/HTML; charset=utf-8"));
+            assertTrue("Missing type should be accepted", filter.isAcceptedContentType(null));
+            assertFalse("Type should be rejected", filter.isAcceptedContentType("application/pdf"));
+            assertFalse("Type should be rejected", filter.isAcceptedContentType("text/css"));
+        }
+    }
+
+    @Test
+    public void acceptShouldNotPushNegativePatternsOut() {
+        properties.set("fetch.negativeCacheSize", 16);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            final ContentFilter filter = context.getBean(ContentFilter.class);
+            filter.reject("http://host/get/1");
+            filter.reject("http://host/get/2");
+            for (int i = 0; i < 1_000; i++) filter.accept("http://host/dir" + i + "/page");
+            assertFalse("Pattern should stay negative", filter.isFetchable("http://host/get/3"));
+        }
+    }
+
+    @Test
+    public void startCrawlerShouldNotFetchOrReadDownloads() throws Exception {
+        properties.set("fetch.maxBodyKb", 64);
+        try (SyntheticSite site = SyntheticSite.small()
+                .latencyMs(5)
+                .downloads(256)
+                .build()
+                .start()) {
+            final CrawlMetrics metrics = site.crawlAndCheck(DEPTH);
+
+            // every page above the last level links to the downloads
+            final int downloadLinks = site.expectedPages(DEPTH - 1).size();
+            logger.info("Download links: {}, requests: {}", downloadLinks, site.getDownloadRequests());
+            assertEquals("Files should not be requested", 0, site.getFileRequests());
+            assertEquals("Every huge page should be requested", downloadLinks, site.getHugeRequests());
+            assertTrue("Downloads should be skipped by the negative pattern",
+                    site.getDownloadRequests() < downloadLinks);
+            assertEquals("Invalid count of rejected pages", site.getDownloadRequests() + site.getHugeRequests(),
+                    metrics.get(Counter.PAGES_REJECTED));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package ru.shishmakov.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.SharedConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Requests of the {@link HttpFetcher} to the loopback server: the slots of the requests, the aborted
+ * and the stalled bodies
+ */
+public class HttpFetcherTest extends BaseTest {
+
+    private static final byte[] PAGE = "<html><body>word</body></html>".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public SystemProperties properties = new SystemProperties();
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        stopped.countDown();
+        servers.forEach(server -> server.stop(0));
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void fetchShouldLimitRequestsPerHostAndOverall() throws Exception {
+        properties.set("fetch.maxInFlight", 3).set("fetch.maxConnectionsPerHost", 2);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final List<AtomicInteger> hostActive = List.of(new AtomicInteger(), new AtomicInteger());
+        final List<AtomicInteger> hostMaxActive = List.of(new AtomicInteger(), new AtomicInteger());
+        final List<String> hosts = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final AtomicInteger host = hostActive.get(i);
+            final AtomicInteger hostMax = hostMaxActive.get(i);
+            hosts.add(start(exchange -> {
+                hostMax.accumulateAndGet(host.incrementAndGet(), Math::max);
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(100);
+                    respond(exchange, "text/html", PAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    active.decrementAndGet();
+                    host.decrementAndGet();
+                }
+            }));
+        }
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SharedConfig.class)) {
+            final Fetcher fetcher = context.getBean(Fetcher.class);
+            final List<CompletableFuture<Page>> pages = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                for (String host : hosts) pages.add(fetcher.fetch(host + "/page/" + i));
+            }
+            for (CompletableFuture<Page> page : pages) assertEquals("Invalid status", 200, page.get().getStatus());
+        }
+        assertEquals("Invalid requests in flight", 3, maxActive.get());
+        for (AtomicInteger hostMax : hostMaxActive) assertEquals("Invalid requests of host", 2, hostMax.get());
+    }
+
+    @Test
+    public void fetchShouldSendWaitingRequestsInOrderOfArrival() throws Exception {
+        properties.set("fetch.maxInFlight", 1).set("fetch.maxConnectionsPerHost", 1);
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final String host = start(exchange -> {
+            received.add(exchange.getRequestURI().getPath());
+            respond(exchange, "text/html", PAGE);
+        });
+        final List<String> expected = new ArrayList<>();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SharedConfig.class)) {
+            final Fetcher fetcher = context.getBean(Fetcher.class);
+            final List<CompletableFuture<Page>> pages = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                expected.add("/page/" + i);
+                pages.add(fetcher.fetch(host + "/page/" + i));
+            }
+            for (CompletableFuture<Page> page : pages) page.get();
+        }
+        assertEquals("Waiting requests should be sent in order of arrival", expected, received);
+    }
+
+    @Test
+    public void fetchShouldAbortChunkedBodyOverLimit() throws Exception {
+        properties.set("fetch.maxBodyKb", 16);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final String host = start(exchange -> stream(exchange, "text/html", closed));
+        assertRejectedAndClosed(host + "/huge", closed);
+    }
+
+    @Test
+    public void fetchShouldCloseConnectionOfRejectedContentType() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final String host = start(exchange -> stream(exchange, "application/pdf", closed));
+        assertRejectedAndClosed(host + "/report", closed);
+    }
+
+    @Test
+    public void fetchShouldFailStalledBodyAndFreeItsSlot() throws Exception {
+        properties.set("request.timeout", 500).set("fetch.maxInFlight", 1).set("fetch.maxConnectionsPerHost", 1);
+        final String host = start(exchange -> {
+            if (!exchange.getRequestURI().getPath().startsWith("/stalled")) {
+                respond(exchange, "text/html", PAGE);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, PAGE.length * 2);
+            final OutputStream out = exchange.getResponseBody();
+            out.write(PAGE);
+            out.flush();
+            try {
+                stopped.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SharedConfig.class)) {
+            final Fetcher fetcher = context.getBean(Fetcher.class);
+            final CompletableFuture<Page> stalled = fetcher.fetch(host + "/stalled");
+            final CompletableFuture<Page> next = fetcher.fetch(host + "/page");
+            try {
+                stalled.get(10, TimeUnit.SECONDS);
+                fail("Stalled body should fail");
+            } catch (ExecutionException e) {
+                assertTrue("Invalid cause: " + e.getCause(), e.getCause() instanceof HttpTimeoutException);
+            }
+            assertEquals("Next request should take the freed slot", 200, next.get(10, TimeUnit.SECONDS).getStatus());
+        }
+    }
+
+    private void assertRejectedAndClosed(String uri, CountDownLatch closed) throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(SharedConfig.class)) {
+            try {
+                context.getBean(Fetcher.class).fetch(uri).get(10, TimeUnit.SECONDS);
+                fail("Body should be rejected: " + uri);
+            } catch (ExecutionException e) {
+                assertTrue("Invalid cause: " + e.getCause(), e.getCause() instanceof RejectedContentException);
+            }
+            assertTrue("Connection should be closed", closed.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * @return URI of the server bound to loopback
+     */
+    private String start(HttpHandler handler) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Write the endless chunked body until the connection is closed by the client
+     */
+    private void stream(HttpExchange exchange, String contentType, CountDownLatch closed) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, 0);
+        final byte[] chunk = new byte[8192];
+        try {
+            final OutputStream out = exchange.getResponseBody();
+            while (stopped.getCount() > 0) {
+                out.write(chunk);
+                out.flush();
+            }
+        } catch (IOException e) {
+            closed.countDown();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
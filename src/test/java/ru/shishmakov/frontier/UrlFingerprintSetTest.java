@@ -0,0 +1,66 @@
+package ru.shishmakov.frontier;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+public class UrlFingerprintSetTest extends BaseTest {
+
+    @Test
+    public void addIfAbsentShouldAddEachUriOnceAndGrow() {
+        try (UrlFingerprintSet set = new UrlFingerprintSet(4, 0.5, 2, false)) {
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue("New uri should be added", set.addIfAbsent("https://example.com/page/" + i));
+            }
+            for (int i = 0; i < 10_000; i++) {
+                assertFalse("Visited uri should not be added", set.addIfAbsent("https://example.com/page/" + i));
+            }
+            UrlFingerprintSet.Stats stats = set.stats();
+            logger.info("Stats: {}", stats);
+
+            assertEquals("Invalid size", 10_000, set.size());
+            assertTrue("Load factor should be kept", stats.getLoadFactor() <= 0.5);
+            assertTrue("Unknown uri should be absent", !set.contains("https://example.com/page/10000"));
+        }
+    }
+
+    @Test
+    public void addIfAbsentShouldBeAtomicForConcurrentWritersOffHeap() throws Exception {
+        final int threads = 8;
+        final int uris = 20_000;
+        final AtomicInteger added = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (UrlFingerprintSet set = new UrlFingerprintSet(16, 0.7, 4, true)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < uris; i++) {
+                        if (set.addIfAbsent("https://example.com/" + i)) added.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            logger.info("Stats: {}", set.stats());
+
+            assertEquals("Each uri should be claimed once", uris, added.get());
+            assertEquals("Invalid size", uris, set.size());
+            final AtomicInteger visited = new AtomicInteger();
+            set.forEach(f -> visited.incrementAndGet());
+            assertEquals("Invalid number of fingerprints", uris, visited.get());
+        } finally {
+            MoreExecutors.shutdownAndAwaitTermination(pool, 10, SECONDS);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.shishmakov.frontier;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.*;
+
+public class UrlFrontierTest extends BaseTest {
+
+    private static final String PREFIX = "https://example.com/";
+    private static final int PAGES = 2_000;
+
+    @Test
+    public void takeShouldReturnEachUriOnceAtMinimalLevel() throws Exception {
+        // page links to its "children" first and to the next page last: depth-first walk claims pages too deep
+        final IntFunction<int[]> links = page -> new int[]{(page * 3 + 1) % PAGES, (page * 7 + 2) % PAGES, (page + 1) % PAGES};
+        final int maxLevel = 6;
+        final int maxInFlight = 16;
+        final Map<Integer, Integer> taken = new ConcurrentHashMap<>();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxObserved = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try (UrlFingerprintSet visited = new UrlFingerprintSet(16, 0.7, 2, false)) {
+            UrlFrontier frontier = new UrlFrontier(visited, maxLevel, maxInFlight);
+            assertTrue("Seed should be queued", frontier.offer(uri(0), uri(0), 0));
+            assertFalse("Seed should be claimed once", frontier.offer(uri(0), uri(0), 0));
+
+            FrontierItem item;
+            while ((item = frontier.take()) != null) {
+                final FrontierItem next = item;
+                maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                pool.execute(() -> {
+                    final int page = Integer.parseInt(next.getUri().substring(PREFIX.length()));
+                    if (taken.put(page, next.getLevel()) != null) duplicates.incrementAndGet();
+                    for (int link : links.apply(page)) frontier.offer(uri(link), uri(link), next.getLevel() + 1);
+                    inFlight.decrementAndGet();
+                    frontier.complete(next);
+                });
+            }
+            assertEquals("Frontier should be drained", 0, frontier.getQueued());
+            assertEquals("Invalid count of completed items", taken.size(), frontier.getCompleted());
+        } finally {
+            MoreExecutors.shutdownAndAwaitTermination(pool, 5, SECONDS);
+        }
+        assertEquals("Uri should be taken once", 0, duplicates.get());
+        assertTrue("In-flight limit is exceeded: " + maxObserved, maxObserved.get() <= maxInFlight);
+        assertEquals("Levels should be equal to the shortest distances", bfs(links, maxLevel), taken);
+    }
+
+    @Test
+    public void offerShouldRejectTooDeepUriWithoutClaim() throws Exception {
+        try (UrlFingerprintSet visited = new UrlFingerprintSet(16, 0.7, 2, false)) {
+            UrlFrontier frontier = new UrlFrontier(visited, 0, 1);
+            assertTrue("Seed should be queued", frontier.offer(uri(0), uri(0), 0));
+            assertFalse("Too deep uri should be rejected", frontier.offer(uri(1), uri(1), 1));
+            assertFalse("Too deep uri should not be claimed", visited.contains(uri(1)));
+
+            FrontierItem seed = frontier.take();
+            assertEquals("Invalid seed", uri(0), seed.getUri());
+            frontier.complete(seed);
+            assertNull("Frontier should be finished", frontier.take());
+        }
+    }
+
+    private static Map<Integer, Integer> bfs(IntFunction<int[]> links, int maxLevel) {
+        final Map<Integer, Integer> levels = new ConcurrentHashMap<>();
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        levels.put(0, 0);
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            final int page = queue.poll();
+            final int level = levels.get(page);
+            if (level == maxLevel) continue;
+            for (int link : links.apply(page)) {
+                if (levels.putIfAbsent(link, level + 1) == null) queue.add(link);
+            }
+        }
+        return levels;
+    }
+
+    private static String uri(int page) {
+        return PREFIX + page;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.shishmakov.metrics;
+
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest extends BaseTest {
+
+    @Test
+    public void percentileShouldBeCloseToExactValue() {
+        final Random random = new Random(3);
+        final long[] values = new long[100_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // from microseconds to seconds
+            values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 6);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{0.01, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+            final long exact = values[(int) Math.ceil(percentile * values.length) - 1];
+            final long actual = histogram.percentile(percentile);
+            assertTrue("Value should not be less than exact one of " + percentile, actual >= exact);
+            assertTrue("Relative error is too big for " + percentile + ": " + actual + " vs " + exact,
+                    actual - exact <= exact / 32);
+        }
+        assertEquals("Invalid count", values.length, histogram.getCount());
+        logger.info("Histogram: {}", histogram.snapshot());
+    }
+
+    @Test
+    public void bucketsShouldCoverValuesWithoutGaps() {
+        long previous = -1;
+        for (int index = 0; index <= LatencyHistogram.index(Long.MAX_VALUE); index++) {
+            final long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertEquals("Bucket is not adjacent to previous one: " + index, index, LatencyHistogram.index(previous + 1));
+            assertEquals("Invalid bucket of the highest value: " + index, index, LatencyHistogram.index(highest));
+            previous = highest;
+        }
+        assertEquals("Buckets should end at max value", Long.MAX_VALUE, previous);
+    }
+
+    @Test
+    public void metricsShouldBePublishedAsMXBean() throws Exception {
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.setUp();
+        try {
+            metrics.add(Counter.BYTES_DOWNLOADED, 1024);
+            metrics.latency(Phase.FETCH).record(2_000_000);
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = metrics.objectName();
+            assertEquals("Invalid counter", 1024L, server.getAttribute(name, "BytesDownloaded"));
+            CompositeData fetch = (CompositeData) server.getAttribute(name, "Fetch");
+            assertEquals("Invalid count of fetches", 1L, fetch.get("count"));
+            assertEquals("Invalid p50", 2.0, (double) fetch.get("p50Ms"), 0.1);
+        } finally {
+            metrics.tearDown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.shishmakov.parse;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.fetch.Page;
+import ru.shishmakov.text.WordTokenizer;
+import ru.shishmakov.util.CrawlerUtil;
+
+import javax.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = AppConfig.class)
+public class StreamingContentExtractorTest extends BaseTest {
+    private static final String INNER_DOCUMENT_PATH = "src/test/resources/test_html.html";
+    private static final String BASE_URI = "http://jsoup.org/docs/";
+
+    @Inject
+    private CrawlerUtil crawlerUtil;
+    @Inject
+    private WordTokenizer wordTokenizer;
+
+    private final StreamingContentExtractor extractor = new StreamingContentExtractor();
+
+    @Test
+    public void extractShouldBeEqualToDomOnDocument() throws Exception {
+        byte[] html = Files.readAllBytes(Paths.get(INNER_DOCUMENT_PATH));
+        assertSameContent(html);
+    }
+
+    @Test
+    public void extractShouldSkipHeadScriptsAndComments() throws Exception {
+        String html = "<!DOCTYPE html><html><head><title>Head title</title>" +
+                "<script>var hidden = '<p>nothing</p>';</script><style>p {color: red}</style></head>" +
+                "<body><!-- hidden comment --><p>Visible&nbsp;text &amp; more<br>words</p>" +
+                "<a href='/relative?x=1&amp;y=2'>Relative link</a> <a href=https://other.org/page>Absolute</a>" +
+                "<a name=anchor>no href</a><textarea>Typed &lt;text&gt;</textarea>" +
+                "<div>1 < 2 and 3 > 2</div><script type=\"text/javascript\">if (a </b) {}</script>tail text" +
+                "</body></html>";
+        assertSameContent(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void extractShouldStartBodyImplicitlyAndUseBaseHref() throws Exception {
+        String html = "<html><head><base href=\"http://base.org/root/\"><meta charset=utf-8>" +
+                "<title>Заголовок</title></head>Текст без тега body <a href=\"page\">Ссылка</a></html>";
+        assertSameContent(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void assertSameContent(byte[] html) throws Exception {
+        Page page = new Page(BASE_URI, 200, "text/html", null, html);
+        List<String> expectedWords = new ArrayList<>();
+        List<String> expectedLinks = new ArrayList<>();
+        Document doc = Jsoup.parse(page.openBody(), null, BASE_URI);
+        new NodeTraversor(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof TextNode) tokenize(((TextNode) node).getWholeText(), expectedWords);
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                // do nothing
+            }
+        }).traverse(doc.body());
+        crawlerUtil.getStreamHrefLinks(doc).forEach(expectedLinks::add);
+
+        List<String> words = new ArrayList<>();
+        List<String> links = new ArrayList<>();
+        extractor.extract(page, BASE_URI, new PageHandler() {
+            @Override
+            public void text(CharSequence text) {
+                tokenize(text, words);
+            }
+
+            @Override
+            public void link(String uri) {
+                links.add(uri);
+            }
+        });
+        logger.info("Words: {}, links: {}", words, links);
+
+        assertFalse("Document should have words", expectedWords.isEmpty());
+        assertEquals("Words are not equal", expectedWords, words);
+        assertEquals("Links are not equal", expectedLinks, links.stream()
+                .filter(l -> !l.trim().isEmpty())
+                .collect(Collectors.toList()));
+    }
+
+    private void tokenize(CharSequence text, List<String> words) {
+        wordTokenizer.tokenize(text, (buffer, offset, length) -> words.add(new String(buffer, offset, length)));
+    }
+}
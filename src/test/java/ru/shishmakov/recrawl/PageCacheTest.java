@@ -0,0 +1,88 @@
+package ru.shishmakov.recrawl;
+
+import org.aeonbits.owner.ConfigFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.shishmakov.BaseTest;
+import ru.shishmakov.SystemProperties;
+import ru.shishmakov.config.CrawlerConfig;
+import ru.shishmakov.metrics.Counter;
+import ru.shishmakov.metrics.CrawlMetrics;
+import ru.shishmakov.metrics.Phase;
+import ru.shishmakov.site.SyntheticSite;
+import ru.shishmakov.text.NormalizationMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Repeated crawl of the same {@link SyntheticSite} replays unchanged pages from the cache
+ */
+public class PageCacheTest extends BaseTest {
+
+    private static final int DEPTH = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public SystemProperties properties = SystemProperties.fastCrawl();
+
+    @Test
+    public void recrawlShouldReplayPagesNotModified() throws Exception {
+        try (SyntheticSite site = buildSite(true).start()) {
+            crawl(site);
+            final CrawlMetrics metrics = crawl(site);
+            final int pages = site.expectedPages(DEPTH).size();
+            assertEquals("Invalid count of 304 answers", pages, site.getNotModifiedResponses());
+            assertEquals("Invalid count of pages not modified", pages, metrics.get(Counter.PAGES_NOT_MODIFIED));
+            assertEquals("Pages should not be parsed", 0, metrics.latency(Phase.PARSE).getCount());
+        }
+    }
+
+    @Test
+    public void recrawlShouldReplayPagesWithSameContent() throws Exception {
+        try (SyntheticSite site = buildSite(false).start()) {
+            crawl(site);
+            final CrawlMetrics metrics = crawl(site);
+            final int pages = site.expectedPages(DEPTH).size();
+            assertEquals("Invalid count of 304 answers", 0, site.getNotModifiedResponses());
+            assertEquals("Invalid count of unchanged pages", pages, metrics.get(Counter.PAGES_UNCHANGED));
+            assertEquals("Pages should not be parsed", 0, metrics.latency(Phase.PARSE).getCount());
+        }
+    }
+
+    @Test
+    public void recrawlShouldIgnoreCacheOfOtherTokenizerSettings() throws Exception {
+        try (SyntheticSite site = buildSite(true).start()) {
+            crawl(site);
+            properties.set("legal.words", "я, мы, i, am");
+            final CrawlMetrics metrics = crawl(site);
+            final int pages = site.expectedPages(DEPTH).size();
+            assertEquals("Invalid count of 304 answers", 0, site.getNotModifiedResponses());
+            assertEquals("Invalid count of pages not modified", 0, metrics.get(Counter.PAGES_NOT_MODIFIED));
+            assertEquals("All pages should be parsed", pages, metrics.latency(Phase.PARSE).getCount());
+        }
+    }
+
+    @Test
+    public void fingerprintShouldDependOnNormalization() {
+        properties.set("term.normalization", NormalizationMode.LOWER_CASE);
+        final long lowerCase = PageCache.fingerprint(ConfigFactory.create(CrawlerConfig.class, System.getProperties()));
+        properties.set("term.normalization", NormalizationMode.STEM);
+        final long stem = PageCache.fingerprint(ConfigFactory.create(CrawlerConfig.class, System.getProperties()));
+        assertNotEquals("Fingerprint should depend on normalization", lowerCase, stem);
+    }
+
+    /**
+     * @return metrics of the completed crawl
+     */
+    private CrawlMetrics crawl(SyntheticSite site) throws Exception {
+        properties.set("cache.dir", folder.getRoot().toPath().resolve("cache"));
+        return site.crawlAndCheck(DEPTH);
+    }
+
+    private static SyntheticSite buildSite(boolean etags) {
+        return SyntheticSite.small().etags(etags).build();
+    }
+}
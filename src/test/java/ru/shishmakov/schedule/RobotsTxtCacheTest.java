@@ -0,0 +1,54 @@
+package ru.shishmakov.schedule;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RobotsTxtCacheTest {
+    private static final String AGENT = "http-crawler-word-counter";
+
+    @Test
+    public void parseCrawlDelayShouldPreferOwnAgentGroup() {
+        String robots = "User-agent: *\n" +
+                "Disallow: /private\n" +
+                "Crawl-delay: 2\n" +
+                "\n" +
+                "User-agent: Googlebot\n" +
+                "User-agent: http-crawler-word-counter\n" +
+                "Crawl-delay: 0.5 # own delay\n";
+
+        assertEquals("Delay of own agent group should be chosen", 500, RobotsTxtCache.parseCrawlDelayMs(robots, AGENT));
+    }
+
+    @Test
+    public void parseCrawlDelayShouldFallbackToAnyAgentGroup() {
+        String robots = "User-agent: Yandex\n" +
+                "Crawl-delay: 10\n" +
+                "User-agent: *\n" +
+                "Crawl-Delay: 1.5\n";
+
+        assertEquals("Delay of any agent group should be chosen", 1500, RobotsTxtCache.parseCrawlDelayMs(robots, AGENT));
+    }
+
+    @Test
+    public void parseCrawlDelayShouldIgnoreMissingOrIllegalDelay() {
+        assertEquals("Delay should be absent", 0, RobotsTxtCache.parseCrawlDelayMs("User-agent: *\nDisallow:\n", AGENT));
+        assertEquals("Illegal delay should be ignored", 0, RobotsTxtCache.parseCrawlDelayMs("User-agent: *\nCrawl-delay: soon\n", AGENT));
+        assertEquals("Empty file should have no delay", 0, RobotsTxtCache.parseCrawlDelayMs("", AGENT));
+    }
+
+    @Test
+    public void parseCrawlDelayShouldNotMatchShortTokenOfOwnAgent() {
+        String robots = "User-agent: c\n" +
+                "Crawl-delay: 20\n" +
+                "User-agent: counter\n" +
+                "Crawl-delay: 30\n" +
+                "User-agent: *\n" +
+                "Crawl-delay: 1\n";
+
+        assertEquals("Substring of own agent should not match", 1000, RobotsTxtCache.parseCrawlDelayMs(robots, AGENT));
+        assertEquals("Product token of full user agent should match", 0,
+                RobotsTxtCache.parseCrawlDelayMs("User-agent: *\nCrawl-delay: 1\n" +
+                        "User-Agent: HTTP-Crawler-Word-Counter\nDisallow: /private\n", AGENT + "/0.1 (compatible)"));
+    }
+}
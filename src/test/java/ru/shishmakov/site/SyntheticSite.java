@@ -0,0 +1,516 @@
+package ru.shishmakov.site;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.shishmakov.config.AppConfig;
+import ru.shishmakov.core.RatingController;
+import ru.shishmakov.count.WordCounter;
+import ru.shishmakov.metrics.CrawlMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Generated site on the loopback interface for the end-to-end crawls without the real hosts.
+ * <p>
+ * Page {@code /page/i} links to {@code fanOut} random pages and contains words of the vocabulary whose ranks
+ * follow the Zipf's law; anchors of the links are the words too. The content, the failed pages and the slow pages
+ * are defined by the seed, so the site knows the exact counts of words the crawler should find.
+ */
+public class SyntheticSite implements AutoCloseable {
+    private static final String PAGE_PATH = "/page/";
+    private static final String FILE_PATH = "/files/";
+    private static final String DOWNLOAD_PATH = "/download/";
+    private static final String HUGE_PATH = "/huge/";
+    private static final String PRINT_PATH = "/print/";
+    private static final String PRINT_BANNER = "<p>printable version</p>\n";
+    private static final byte[] ROBOTS_TXT = "User-agent: *\nDisallow:\n".getBytes(UTF_8);
+
+    private final Builder config;
+    private final Page[] pages;
+    private final String[] vocabulary;
+    private final AtomicLong pageRequests = new AtomicLong();
+    private final AtomicLong repeatedRequests = new AtomicLong();
+    private final Set<Page> requestedPages = ConcurrentHashMap.newKeySet();
+    private final AtomicLong notModifiedResponses = new AtomicLong();
+    private final AtomicLong fileRequests = new AtomicLong();
+    private final AtomicLong downloadRequests = new AtomicLong();
+    private final AtomicLong hugeRequests = new AtomicLong();
+    private final AtomicLong printRequests = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private SyntheticSite(Builder config) {
+        this.config = config;
+        this.vocabulary = new String[config.vocabulary];
+        for (int rank = 0; rank < vocabulary.length; rank++) {
+            vocabulary[rank] = word(rank);
+        }
+        final double[] distribution = zipf(config.vocabulary, config.zipfExponent);
+        this.pages = new Page[config.pages];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = generate(i, distribution);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return builder of the small site crawled in a second: 300 pages of 2 KB and the vocabulary of 2000 words,
+     * 5% of the pages fail
+     */
+    public static Builder small() {
+        return builder()
+                .pages(300)
+                .fanOut(4)
+                .pageSize(2048)
+                .vocabulary(2_000, 1.0)
+                .errorRate(0.05);
+    }
+
+    /**
+     * Crawl the site to the depth by the new context of the crawler and check the counted words
+     * against {@link #expectedCounts(int)}
+     *
+     * @return metrics of the completed crawl
+     */
+    public CrawlMetrics crawlAndCheck(int depth) throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
+            context.getBean(RatingController.class).startCrawler(getSeedUri(), depth);
+            assertEquals("Invalid counts of words", expectedCounts(depth), countedWords(context));
+            return context.getBean(CrawlMetrics.class);
+        }
+    }
+
+    /**
+     * @return counts of the words of the crawler
+     */
+    public static Map<String, Long> countedWords(ApplicationContext context) {
+        final Map<String, Long> counted = new HashMap<>();
+        context.getBean(WordCounter.class).forEach(counted::put);
+        return counted;
+    }
+
+    public SyntheticSite start() throws IOException {
+        executor = Executors.newCachedThreadPool(BasicThreadFactory.builder()
+                .namingPattern("site-worker %d")
+                .daemon(true)
+                .build());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) server.stop(0);
+        if (executor != null) MoreExecutors.shutdownAndAwaitTermination(executor, 5, SECONDS);
+    }
+
+    /**
+     * @return URI of the first page
+     */
+    public String getSeedUri() {
+        return String.format("http://%s:%d%s0", server.getAddress().getHostString(), server.getAddress().getPort(),
+                PAGE_PATH);
+    }
+
+    public long getPageRequests() {
+        return pageRequests.get();
+    }
+
+    /**
+     * @return number of requests of the pages those were requested already
+     */
+    public long getRepeatedRequests() {
+        return repeatedRequests.get();
+    }
+
+    /**
+     * @return number of answers {@code 304 Not Modified} to the conditional requests
+     */
+    public long getNotModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    /**
+     * @return number of requests of the links {@code /files/i.pdf}
+     */
+    public long getFileRequests() {
+        return fileRequests.get();
+    }
+
+    /**
+     * @return number of requests of the binary downloads {@code /download/i}
+     */
+    public long getDownloadRequests() {
+        return downloadRequests.get();
+    }
+
+    /**
+     * @return number of requests of the chunked HTML pages {@code /huge/i} without words
+     */
+    public long getHugeRequests() {
+        return hugeRequests.get();
+    }
+
+    /**
+     * @return number of requests of the print views {@code /print/i}
+     */
+    public long getPrintRequests() {
+        return printRequests.get();
+    }
+
+    /**
+     * @return sum of sizes of pages in bytes
+     */
+    public long getSiteBytes() {
+        long bytes = 0;
+        for (Page page : pages) bytes += page.body.length;
+        return bytes;
+    }
+
+    /**
+     * Counts of words on the pages those the breadth-first crawl of the given depth visits successfully;
+     * the seed page is the depth {@code 1}
+     */
+    public Map<String, Long> expectedCounts(int depth) {
+        final long[] counts = new long[vocabulary.length];
+        for (int page : expectedPages(depth)) {
+            for (int rank : pages[page].words) counts[rank]++;
+        }
+        final Map<String, Long> expected = new HashMap<>();
+        for (int rank = 0; rank < counts.length; rank++) {
+            if (counts[rank] > 0) expected.put(vocabulary[rank], counts[rank]);
+        }
+        return expected;
+    }
+
+    /**
+     * @return indexes of pages those the crawl of the given depth fetches successfully
+     */
+    public Set<Integer> expectedPages(int depth) {
+        final Set<Integer> visited = new HashSet<>();
+        final Set<Integer> fetched = new TreeSet<>();
+        List<Integer> level = Collections.singletonList(0);
+        visited.add(0);
+        for (int d = 1; d <= depth && !level.isEmpty(); d++) {
+            final List<Integer> next = new ArrayList<>();
+            for (int page : level) {
+                if (pages[page].failed) continue;
+                fetched.add(page);
+                if (d == depth) continue;
+                for (int link : pages[page].links) {
+                    if (visited.add(link)) next.add(link);
+                }
+            }
+            level = next;
+        }
+        return fetched;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final String path = exchange.getRequestURI().getPath();
+            if ("/robots.txt".equals(path)) {
+                send(exchange, 200, "text/plain; charset=utf-8", ROBOTS_TXT);
+                return;
+            }
+            if (path.startsWith(FILE_PATH)) {
+                fileRequests.incrementAndGet();
+                send(exchange, 200, "application/pdf", new byte[config.downloadKb * 1024]);
+                return;
+            }
+            if (path.startsWith(DOWNLOAD_PATH)) {
+                downloadRequests.incrementAndGet();
+                send(exchange, 200, "application/octet-stream", new byte[config.downloadKb * 1024]);
+                return;
+            }
+            if (path.startsWith(HUGE_PATH)) {
+                hugeRequests.incrementAndGet();
+                sendChunked(exchange, config.downloadKb * 1024);
+                return;
+            }
+            if (path.startsWith(PRINT_PATH)) {
+                final Page page = find(PAGE_PATH + path.substring(PRINT_PATH.length()));
+                if (page == null || page.failed) {
+                    send(exchange, 404, "text/plain; charset=utf-8", new byte[0]);
+                    return;
+                }
+                printRequests.incrementAndGet();
+                final String body = new String(page.body, UTF_8).replace("<body>\n", "<body>\n" + PRINT_BANNER);
+                send(exchange, 200, "text/html; charset=utf-8", body.getBytes(UTF_8));
+                return;
+            }
+            final Page page = find(path);
+            if (page == null) {
+                send(exchange, 404, "text/plain; charset=utf-8", new byte[0]);
+                return;
+            }
+            pageRequests.incrementAndGet();
+            if (!requestedPages.add(page)) repeatedRequests.incrementAndGet();
+            TimeUnit.MILLISECONDS.sleep(page.slow ? config.slowLatencyMs : config.latencyMs);
+            if (page.failed) {
+                send(exchange, 500, "text/plain; charset=utf-8", new byte[0]);
+                return;
+            }
+            if (config.etags) {
+                exchange.getResponseHeaders().set("ETag", page.etag);
+                if (page.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+            }
+            send(exchange, 200, "text/html; charset=utf-8", page.body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Page find(String path) {
+        if (!path.startsWith(PAGE_PATH)) return null;
+        try {
+            final int index = Integer.parseInt(path.substring(PAGE_PATH.length()));
+            return index >= 0 && index < pages.length ? pages[index] : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length == 0) return;
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Send the HTML body of spaces without the header {@code Content-Length}; the client could abort it
+     */
+    private static void sendChunked(HttpExchange exchange, int length) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        final byte[] chunk = new byte[4096];
+        Arrays.fill(chunk, (byte) ' ');
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int sent = 0; sent < length; sent += chunk.length) out.write(chunk);
+        } catch (IOException e) {
+            // the client closed the connection
+        }
+    }
+
+    private Page generate(int index, double[] distribution) {
+        final Random random = new Random(config.seed * 1_000_003L + index);
+        final boolean failed = index != 0 && random.nextDouble() < config.errorRate;
+        final boolean slow = random.nextDouble() < config.slowRate;
+        final int[] links = new int[config.fanOut];
+        for (int i = 0; i < links.length; i++) links[i] = random.nextInt(config.pages);
+
+        final List<Integer> words = new ArrayList<>();
+        final StringBuilder html = new StringBuilder(config.pageSize + 256)
+                .append("<!DOCTYPE html>\n<html><body>\n<p>");
+        for (int link : links) {
+            final int rank = sample(distribution, random);
+            words.add(rank);
+            html.append("<a href=\"").append(PAGE_PATH).append(link).append("\">").append(vocabulary[rank]).append("</a> ");
+        }
+        if (config.downloadKb > 0) {
+            html.append("<a href=\"").append(FILE_PATH).append(index).append(".pdf\"></a> ")
+                    .append("<a href=\"").append(DOWNLOAD_PATH).append(index).append("\"></a> ")
+                    .append("<a href=\"").append(HUGE_PATH).append(index).append("\"></a> ");
+        }
+        if (config.printViews) {
+            html.append("<a href=\"").append(PRINT_PATH).append(index).append("\"></a> ");
+        }
+        html.append("</p>\n<p>");
+        while (html.length() < config.pageSize) {
+            final int rank = sample(distribution, random);
+            words.add(rank);
+            html.append(vocabulary[rank]).append(words.size() % 16 == 0 ? "</p>\n<p>" : " ");
+        }
+        html.append("</p>\n</body></html>\n");
+        return new Page(html.toString().getBytes(UTF_8), links, words.stream().mapToInt(Integer::intValue).toArray(),
+                failed, slow);
+    }
+
+    private static int sample(double[] distribution, Random random) {
+        final int index = Arrays.binarySearch(distribution, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, distribution.length - 1);
+    }
+
+    /**
+     * @return cumulative distribution of ranks
+     */
+    private static double[] zipf(int size, double exponent) {
+        final double[] distribution = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            distribution[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) distribution[rank] /= sum;
+        return distribution;
+    }
+
+    /**
+     * @return lowercase latin word of three letters at least, the crawler counts it as is
+     */
+    private static String word(int rank) {
+        final StringBuilder word = new StringBuilder();
+        for (int value = rank + 26 * 26; value > 0; value /= 26) {
+            word.append((char) ('a' + value % 26));
+        }
+        return word.toString();
+    }
+
+    private static final class Page {
+        private final byte[] body;
+        private final int[] links;
+        private final int[] words;
+        private final boolean failed;
+        private final boolean slow;
+        private final String etag;
+
+        private Page(byte[] body, int[] links, int[] words, boolean failed, boolean slow) {
+            this.body = body;
+            this.etag = '"' + Integer.toHexString(Arrays.hashCode(body)) + '"';
+            this.links = links;
+            this.words = words;
+            this.failed = failed;
+            this.slow = slow;
+        }
+    }
+
+    public static final class Builder {
+        private int pages = 1_000;
+        private int fanOut = 8;
+        private int pageSize = 8 * 1024;
+        private int vocabulary = 10_000;
+        private double zipfExponent = 1.0;
+        private long latencyMs = 0;
+        private double slowRate = 0;
+        private long slowLatencyMs = 200;
+        private double errorRate = 0;
+        private boolean etags = true;
+        private int downloadKb = 0;
+        private boolean printViews = false;
+        private long seed = 1;
+
+        private Builder() {
+        }
+
+        public Builder pages(int pages) {
+            checkArgument(pages > 0, "pages should be positive: %s", pages);
+            this.pages = pages;
+            return this;
+        }
+
+        public Builder fanOut(int fanOut) {
+            checkArgument(fanOut >= 0, "fan-out should be not negative: %s", fanOut);
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * @param pageSize approximate size of the page in bytes
+         */
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public Builder vocabulary(int vocabulary, double zipfExponent) {
+            checkArgument(vocabulary > 0, "vocabulary should be positive: %s", vocabulary);
+            this.vocabulary = vocabulary;
+            this.zipfExponent = zipfExponent;
+            return this;
+        }
+
+        public Builder latencyMs(long latencyMs) {
+            this.latencyMs = latencyMs;
+            return this;
+        }
+
+        /**
+         * @param slowRate      share of the pages those answer with the slow latency
+         * @param slowLatencyMs latency of the slow pages
+         */
+        public Builder slow(double slowRate, long slowLatencyMs) {
+            this.slowRate = slowRate;
+            this.slowLatencyMs = slowLatencyMs;
+            return this;
+        }
+
+        /**
+         * @param errorRate share of the pages those answer with the status 500; the seed page never fails
+         */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param etags {@code true} to send the header {@code ETag} and answer {@code 304 Not Modified}
+         *              to the matching {@code If-None-Match}
+         */
+        public Builder etags(boolean etags) {
+            this.etags = etags;
+            return this;
+        }
+
+        /**
+         * @param downloadKb size of the links without words added to every page: the file {@code /files/i.pdf},
+         *                   the binary download {@code /download/i} and the chunked HTML page {@code /huge/i};
+         *                   {@code 0} to skip them
+         */
+        public Builder downloads(int downloadKb) {
+            checkArgument(downloadKb >= 0, "size of downloads should be not negative: %s", downloadKb);
+            this.downloadKb = downloadKb;
+            return this;
+        }
+
+        /**
+         * @param printViews {@code true} to link every page to its print view {@code /print/i}: the same content
+         *                   with the banner of two more words
+         */
+        public Builder printViews(boolean printViews) {
+            this.printViews = printViews;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticSite build() {
+            return new SyntheticSite(this);
+        }
+    }
+}
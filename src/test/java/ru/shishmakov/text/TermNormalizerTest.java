@@ -0,0 +1,100 @@
+package ru.shishmakov.text;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import ru.shishmakov.BaseTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class TermNormalizerTest extends BaseTest {
+
+    private static final Set<String> KEPT_WORDS = ImmutableSet.of("она", "они", "you", "are");
+
+    private final TermNormalizer stemmer = new TermNormalizer(NormalizationMode.STEM, 16, KEPT_WORDS);
+
+    @Test
+    public void normalizeShouldStemRussianWords() {
+        assertStems("книг", "книги", "книга", "Книгой", "книгами");
+        assertStems("бегущ", "бегущий");
+        assertStems("красив", "красивейший");
+        assertStems("говор", "говорила");
+        assertStems("возможн", "возможность");
+        assertStems("елк", "ёлки");
+    }
+
+    @Test
+    public void normalizeShouldStemEnglishWords() {
+        assertStems("run", "running");
+        assertStems("cri", "cries");
+        assertStems("tie", "ties");
+        assertStems("caress", "caresses");
+        assertStems("hop", "hopping");
+        assertStems("happi", "happy", "happiness");
+        assertStems("hope", "hopeful");
+        assertStems("general", "generalization");
+        assertStems("relat", "relational");
+        assertStems("communic", "communication");
+    }
+
+    @Test
+    public void normalizeShouldOnlyLowerCaseKeptAndMixedWords() {
+        assertStems("она", "Она");
+        assertStems("you", "YOU");
+        assertStems("wordсчёт", "WordСчёт");
+        assertStems("crawler2", "Crawler2");
+    }
+
+    @Test
+    public void normalizeShouldOnlyLowerCaseInLowerCaseMode() {
+        final TermNormalizer normalizer = new TermNormalizer(NormalizationMode.LOWER_CASE, 16, KEPT_WORDS);
+        for (String word : Arrays.asList("Книгами", "ёлки", "Running", "happiness")) {
+            assertEquals("Invalid word", word.toLowerCase(), normalizer.normalize(word));
+        }
+    }
+
+    @Test
+    public void normalizeShouldBeEqualWithAndWithoutCache() {
+        final TermNormalizer uncached = new TermNormalizer(NormalizationMode.STEM, 0, KEPT_WORDS);
+        final TermNormalizer tiny = new TermNormalizer(NormalizationMode.STEM, 2, KEPT_WORDS);
+        final String[] forms = {"книги", "книгой", "красивейший", "бегущий", "running", "cries", "hopeful",
+                "generalization", "Happiness", "она", "word2"};
+        final Random random = new Random(5);
+        final List<String> expected = new ArrayList<>();
+        final List<String> cached = new ArrayList<>();
+        final List<String> evicted = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            final String form = forms[random.nextInt(forms.length)];
+            expected.add(uncached.normalize(form));
+            cached.add(normalizeSlice(stemmer, form));
+            evicted.add(normalizeSlice(tiny, form));
+        }
+        assertEquals("Cached stems should be equal", expected, cached);
+        assertEquals("Evicted stems should be equal", expected, evicted);
+    }
+
+    private void assertStems(String stem, String... forms) {
+        for (String form : forms) {
+            assertEquals("Invalid stem of word: " + form, stem, stemmer.normalize(form));
+            assertEquals("Invalid stem of slice: " + form, stem, normalizeSlice(stemmer, form));
+        }
+    }
+
+    /**
+     * @return normalized word in the middle of the larger buffer
+     */
+    private static String normalizeSlice(TermNormalizer normalizer, String word) {
+        final char[] buffer = ("##" + word + "##").toCharArray();
+        final String[] result = new String[1];
+        normalizer.normalize(buffer, 2, word.length(), (chars, offset, length) -> {
+            assertEquals("Slice should stay in place", 2, offset);
+            result[0] = new String(chars, offset, length);
+        });
+        return result[0];
+    }
+}
@@ -0,0 +1,89 @@
+package ru.shishmakov.text;
+
+import org.aeonbits.owner.ConfigFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.TextNode;
+import org.junit.Test;
+import ru.shishmakov.config.CrawlerConfig;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.SPACE;
+import static org.apache.commons.lang3.StringUtils.split;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class WordTokenizerTest {
+    private static final String INNER_DOCUMENT_PATH = "src/test/resources/test_html.html";
+
+    private final CrawlerConfig config = ConfigFactory.create(CrawlerConfig.class);
+    private final Pattern illegalCharacters = Pattern.compile(config.illegalCharactersPattern());
+    private final WordTokenizer tokenizer = new WordTokenizer(illegalCharacters,
+            config.minAcceptableCountSymbols(), config.acceptableWords());
+
+    @Test
+    public void tokenizeShouldSplitTextAndDropIllegalCharacters() {
+        assertEquals("Invalid tokens", Arrays.asList("Hello", "world", "он", "foobar", "okay"),
+                tokenize("  Hello,\tworld!  он is\u00A0foo.bar «okay» \u0001"));
+    }
+
+    @Test
+    public void tokenizeShouldBeEqualToRegexPipelineOnDocument() throws Exception {
+        Document doc = Jsoup.parse(new File(INNER_DOCUMENT_PATH), "UTF-8");
+        List<String> texts = doc.body().textNodes().stream().map(TextNode::getWholeText).collect(Collectors.toList());
+        doc.body().getAllElements().forEach(e -> e.textNodes().forEach(t -> texts.add(t.getWholeText())));
+
+        assertFalse("Document should have text", texts.isEmpty());
+        texts.forEach(t -> assertEquals("Tokens differ for text: " + t, legacyTokenize(t), tokenize(t)));
+    }
+
+    @Test
+    public void tokenizeShouldBeEqualToRegexPipelineOnRandomText() {
+        final char[] alphabet = "abcXYZ яблоко,.!?«»()[]{}|/\\+:;'\"\t\n\r\u00A0\u0001\u0007 \u001F-_".toCharArray();
+        final Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            char[] chars = new char[random.nextInt(24)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String text = new String(chars);
+            assertEquals("Tokens differ for text: " + text, legacyTokenize(text), tokenize(text));
+        }
+    }
+
+    @Test
+    public void lowerCaseShouldBeEqualToStringLowerCase() {
+        for (String word : Arrays.asList("Hello", "ПРИВЕТ", "ÄÖÜ", "straße", "MIXed123")) {
+            char[] chars = word.toCharArray();
+            if (LowerCase.toLowerCase(chars, 0, chars.length)) {
+                assertEquals("Invalid lower case", word.toLowerCase(), new String(chars));
+            }
+        }
+        char[] special = "İSTANBUL".toCharArray();
+        assertFalse("Dotted capital I requires String#toLowerCase", LowerCase.toLowerCase(special, 0, special.length));
+    }
+
+    private List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenizer.tokenize(text, (buffer, offset, length) -> tokens.add(new String(buffer, offset, length)));
+        return tokens;
+    }
+
+    /**
+     * Former implementation of {@code CrawlerUtil#getText} for one text node
+     */
+    private List<String> legacyTokenize(String text) {
+        return Arrays.stream(split(StringUtils.normalizeSpace(illegalCharacters.matcher(text).replaceAll("")), SPACE))
+                .filter(StringUtils::isNotBlank)
+                .filter(t -> t.length() >= config.minAcceptableCountSymbols() || config.acceptableWords().contains(t))
+                .collect(Collectors.toList());
+    }
+}